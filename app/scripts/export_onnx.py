@@ -0,0 +1,55 @@
+import os
+import sys
+
+import torch
+
+from upscale_image import _create_model, DEEP_MODELS
+
+sys.path.insert(0, os.path.join(os.path.dirname(os.path.abspath(__file__)), 'weights'))
+from changes_layers_names import rename_layers
+
+# Экспорт весов ESPCN/EDSR/SRGAN в ONNX для бэкенда ONNX Runtime в JVM (app.inference.backend=onnx).
+# Файл называется <МОДЕЛЬ>_<масштаб>x.onnx и кладется в app.onnx.models-path (по умолчанию weights/onnx).
+# Высота и ширина входа динамические: Java подает изображение тайлами разного размера.
+# Пример: python export_onnx.py espcn 2 weights/ESPCN_2x.pth.tar
+
+OPSET_VERSION = 17
+# Размер пробного входа для трассировки; на результат не влияет.
+SAMPLE_SIZE = 64
+
+
+def export(model_name, scale, weights_path, output_dir):
+    """
+    Загружает веса через rename_layers (как changes_layers_names.py) и сохраняет модель в ONNX.
+    """
+    model = _create_model(model_name, scale, 'cpu')
+    model.load_state_dict(rename_layers(torch.load(weights_path, map_location='cpu')))
+    model.eval()
+
+    in_channels = 1 if model_name == 'espcn' else 3
+    sample = torch.rand(1, in_channels, SAMPLE_SIZE, SAMPLE_SIZE)
+    os.makedirs(output_dir, exist_ok=True)
+    output_path = os.path.join(output_dir, f"{model_name.upper()}_{scale}x.onnx")
+
+    with torch.no_grad():
+        torch.onnx.export(
+            model, sample, output_path,
+            input_names=['input'], output_names=['output'],
+            dynamic_axes={'input': {2: 'height', 3: 'width'}, 'output': {2: 'height', 3: 'width'}},
+            opset_version=OPSET_VERSION,
+        )
+    print(f"Модель {model_name} x{scale} сохранена в {output_path}", file=sys.stderr)
+    return output_path
+
+
+if __name__ == "__main__":
+    if len(sys.argv) not in (4, 5):
+        print("Использование: python export_onnx.py <модель> <масштаб> <путь_к_весам> [папка_для_onnx]", file=sys.stderr)
+        sys.exit(1)
+
+    model_name = sys.argv[1].lower()
+    if model_name not in DEEP_MODELS:
+        print(f"Неизвестная модель: {model_name}. Доступны: {', '.join(DEEP_MODELS)}", file=sys.stderr)
+        sys.exit(1)
+    default_dir = os.path.join(os.path.dirname(os.path.abspath(__file__)), 'weights', 'onnx')
+    export(model_name, int(sys.argv[2]), sys.argv[3], sys.argv[4] if len(sys.argv) > 4 else default_dir)
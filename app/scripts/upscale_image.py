@@ -1,27 +1,73 @@
 import sys
 import os
+import time
+import struct
 import torch
 import cv2
 import numpy as np
+from collections import OrderedDict
+from contextlib import contextmanager
 
 
 from ESPCN import ESPCN
 from EDSR import EDSR
 from SRGAN import *
 
-def _load_model(model_name, scale, model_path, device):
+INTERPOLATION_METHODS = ['bilinear', 'bicubic']
+DEEP_MODELS = ['espcn', 'edsr', 'srgan']
+# Результаты больше этого числа пикселей при потайловой обработке собираются в файле, а не в памяти.
+LARGE_OUTPUT_PIXELS = 16_000_000
+# Диапазон входных значений RGB-моделей: EDSR обучена на 0..255, SRGAN на 0..1.
+RGB_INPUT_RANGE = {'edsr': 255.0, 'srgan': 1.0}
+# Несжатое изображение из общей памяти (app.worker.transfer=shared-memory, см. RawImageFile.java):
+# заголовок "UPX1", ширина, высота, число каналов (little-endian int32), затем uint8 по строкам:
+# BGR или, для ESPCN, только яркость Y.
+RAW_SUFFIX = '.bgr'
+RAW_HEADER = struct.Struct('<4siii')
+RAW_MAGIC = b'UPX1'
+
+# Время этапов текущего задания в секундах: model_load, decode, inference, encode.
+_stage_timings = {}
+
+
+def reset_stage_timings():
     """
-    Загружает и инициализирует указанную модель, а также загружает ее веса.
+    Начинает замер этапов нового задания и возвращает словарь, в который он будет записан.
+    """
+    global _stage_timings
+    _stage_timings = {}
+    return _stage_timings
+
+
+@contextmanager
+def stage(name):
+    """
+    Добавляет время выполнения блока к этапу name текущего задания.
+    """
+    start = time.perf_counter()
+    try:
+        yield
+    finally:
+        _stage_timings[name] = _stage_timings.get(name, 0.0) + time.perf_counter() - start
+
+
+def _create_model(model_name, scale, device):
+    """
+    Создает указанную модель без весов.
     """
-    model = None
     if model_name.lower() == 'espcn':
-        model = ESPCN(upscale_factor=scale).to(device)
+        return ESPCN(upscale_factor=scale).to(device)
     elif model_name.lower() == 'edsr':
-        model = EDSR(upscale_factor=scale).to(device)
+        return EDSR(upscale_factor=scale).to(device)
     elif model_name.lower() == 'srgan':
-        model = SRResNet(upscale=scale).to(device)
-    else:
-        raise ValueError(f"Неизвестное имя модели: {model_name}.")
+        return SRResNet(upscale=scale).to(device)
+    raise ValueError(f"Неизвестное имя модели: {model_name}.")
+
+def _load_model(model_name, scale, model_path, device):
+    """
+    Загружает и инициализирует указанную модель, а также загружает ее веса.
+    """
+    model = _create_model(model_name, scale, device)
 
     checkpoint = torch.load(model_path, map_location=device)
 
@@ -43,78 +89,469 @@ def _process_image_interpolation(input_path, output_path, scale, interpolation_m
     Масштабирует изображение с использованием классических методов интерполяции OpenCV.
     """
     print(f"Выполняется масштабирование методом интерполяции...", file=sys.stderr)
-    lr_image = cv2.imread(input_path)
-    if lr_image is None:
-        raise FileNotFoundError(f"Не удалось прочитать изображение: {input_path}")
+    lr_image = _read_image(input_path)
 
     h, w, _ = lr_image.shape
     new_w, new_h = w * scale, h * scale
 
-    sr_image = cv2.resize(lr_image, (new_w, new_h), interpolation=interpolation_method)
+    with stage('inference'):
+        sr_image = cv2.resize(lr_image, (new_w, new_h), interpolation=interpolation_method)
 
-    cv2.imwrite(output_path, sr_image)
+    with stage('encode'):
+        _write_image(output_path, sr_image)
     method_name = "Bilinear" if interpolation_method == cv2.INTER_LINEAR else "Bicubic"
     print(f"Изображение успешно увеличено ({method_name}) и сохранено в {output_path}", file=sys.stderr)
 
-def _process_image_espcn(model, input_path, output_path, device):
+def _espcn_prepare(bgr_image):
     """
-    Обрабатывает изображение с использованием модели ESPCN.
+    Разделяет BGR-изображение на Y, Cr, Cb (float32, 0..1). В ESPCN подается только Y.
+    Если Java передала через общую память только яркость (один канал), Cr и Cb равны None:
+    цвет Java восстанавливает сама из бикубического увеличения.
     """
-    lr_image = cv2.imread(input_path).astype(np.float32) / 255.0
-    ycrcb_image = cv2.cvtColor(lr_image, cv2.COLOR_BGR2YCrCb)
-    y_channel, cr_channel, cb_channel = cv2.split(ycrcb_image)
-
-    input_tensor = torch.from_numpy(y_channel).to(device).view(1, 1, y_channel.shape[0], y_channel.shape[1])
-    with torch.no_grad():
-        sr_y_tensor = model(input_tensor)
+    if bgr_image.shape[2] == 1:
+        return bgr_image[:, :, 0].astype(np.float32) / 255.0, None, None
+    ycrcb_image = cv2.cvtColor(bgr_image.astype(np.float32) / 255.0, cv2.COLOR_BGR2YCrCb)
+    return cv2.split(ycrcb_image)
 
-    sr_y = sr_y_tensor.squeeze().cpu().numpy()
+def _espcn_finish(sr_y, cr_channel, cb_channel):
+    """
+    Собирает результат ESPCN: увеличенный Y и бикубически увеличенные Cr/Cb -> BGR uint8.
+    Без Cr/Cb возвращает только яркость (H, W, 1) uint8 для Java.
+    """
     sr_y = np.clip(sr_y, 0.0, 1.0)
+    if cr_channel is None:
+        return np.rint(sr_y * 255.0).astype(np.uint8)[:, :, np.newaxis]
     h_upscaled, w_upscaled = sr_y.shape
     sr_cr = cv2.resize(cr_channel, (w_upscaled, h_upscaled), interpolation=cv2.INTER_CUBIC)
     sr_cb = cv2.resize(cb_channel, (w_upscaled, h_upscaled), interpolation=cv2.INTER_CUBIC)
     sr_ycrcb = cv2.merge([sr_y, sr_cr, sr_cb])
-    final_output_bgr = cv2.cvtColor(sr_ycrcb, cv2.COLOR_YCrCb2BGR)
+    final_output_bgr = cv2.cvtColor(sr_ycrcb, cv2.COLOR_YCrCb2BGR) * 255.0
+    return np.rint(np.clip(final_output_bgr, 0.0, 255.0)).astype(np.uint8)
 
-    cv2.imwrite(output_path, final_output_bgr * 255.0)
+def _rgb_prepare(bgr_image, input_range):
+    """
+    Готовит вход RGB-модели (H, W, 3) float32 в диапазоне 0..input_range.
+    """
+    lr_image = bgr_image.astype(np.float32)
+    if input_range != 255.0:
+        lr_image /= 255.0 / input_range
+    return cv2.cvtColor(lr_image, cv2.COLOR_BGR2RGB)
 
-def _process_image_edsr(model, input_path, output_path, device):
+def _rgb_postprocess(output_rgb, input_range):
     """
-    Обрабатывает изображение с использованием модели EDSR.
+    Переводит выход RGB-модели (H, W, 3) в диапазоне 0..input_range в BGR uint8.
     """
-    lr_image = cv2.imread(input_path).astype(np.float32)
-    rgb_image = cv2.cvtColor(lr_image, cv2.COLOR_BGR2RGB)
+    output_rgb = np.clip(output_rgb * (255.0 / input_range), 0.0, 255.0)
+    return cv2.cvtColor(np.rint(output_rgb).astype(np.uint8), cv2.COLOR_RGB2BGR)
 
-    input_tensor = torch.from_numpy(rgb_image.transpose(2, 0, 1)).unsqueeze(0).to(device)
-    with torch.no_grad():
-        output_tensor = model(input_tensor)
+def _is_raw(path):
+    return path.endswith(RAW_SUFFIX)
 
-    final_output_rgb = output_tensor.squeeze(0).permute(1, 2, 0).cpu().numpy()
-    final_output_rgb = np.clip(final_output_rgb, 0.0, 255.0)
-    final_output_bgr = cv2.cvtColor(final_output_rgb, cv2.COLOR_RGB2BGR)
+def _map_raw(path, mode, shape=None):
+    """
+    Отображает raw-файл в память как массив (H, W, C) uint8 без копирования.
+    shape проверяет, что Java выделила результат нужного размера.
+    """
+    with open(path, 'rb') as f:
+        magic, width, height, channels = RAW_HEADER.unpack(f.read(RAW_HEADER.size))
+    if magic != RAW_MAGIC:
+        raise ValueError(f"Файл {path} не является raw-изображением")
+    if shape is not None and tuple(shape) != (height, width, channels):
+        raise ValueError(f"Размер результата {tuple(shape)} не совпадает с выделенным {(height, width, channels)}")
+    return np.memmap(path, dtype=np.uint8, mode=mode, offset=RAW_HEADER.size, shape=(height, width, channels))
 
-    cv2.imwrite(output_path, final_output_bgr)
-    print(f"Изображение успешно увеличено (EDSR) и сохранено в {output_path}", file=sys.stderr)
+def _read_image(input_path):
+    if _is_raw(input_path):
+        return _map_raw(input_path, 'r')
+    with stage('decode'):
+        image = cv2.imread(input_path)
+    if image is None:
+        raise FileNotFoundError(f"Не удалось прочитать изображение: {input_path}")
+    return image
 
-def _process_image_srgan(model, input_path, output_path, device):
+def _write_image(output_path, image):
     """
-    Обрабатывает изображение с использованием модели SRGAN.
+    Сохраняет результат через OpenCV или, для raw-файла, копирует пиксели в общую память:
+    кодирует такой результат уже Java.
     """
-    lr_image = cv2.imread(input_path).astype(np.float32) / 255.0
-    rgb_image = cv2.cvtColor(lr_image, cv2.COLOR_BGR2RGB)
+    if not _is_raw(output_path):
+        cv2.imwrite(output_path, image)
+        return
+    if not isinstance(image, np.memmap):
+        target = _map_raw(output_path, 'r+', image.shape)
+        target[:] = image
+        image = target
+    image.flush()
 
-    input_tensor = torch.from_numpy(rgb_image.transpose(2, 0, 1)).unsqueeze(0).to(device)
-    with torch.no_grad():
-        output_tensor = model(input_tensor)
+def _process_image_espcn(model, input_path, output_path, device):
+    """
+    Обрабатывает изображение с использованием модели ESPCN.
+    """
+    y_channel, cr_channel, cb_channel = _espcn_prepare(_read_image(input_path))
+
+    with stage('inference'):
+        input_tensor = torch.from_numpy(y_channel).to(device).view(1, 1, y_channel.shape[0], y_channel.shape[1])
+        with torch.no_grad():
+            sr_y_tensor = model(input_tensor)
+        sr_y = sr_y_tensor.squeeze().cpu().numpy()
+
+    with stage('encode'):
+        _write_image(output_path, _espcn_finish(sr_y, cr_channel, cb_channel))
+
+def _allocate_output(shape, output_path):
+    """
+    Выделяет буфер результата uint8. Для больших изображений буфер отображается на временный файл,
+    чтобы результат не держался целиком в оперативной памяти. Raw-результат тайлы пишут прямо в общую память.
+    """
+    if _is_raw(output_path):
+        return _map_raw(output_path, 'r+', shape), None
+    if shape[0] * shape[1] <= LARGE_OUTPUT_PIXELS:
+        return np.empty(shape, dtype=np.uint8), None
+    buffer_path = output_path + ".tiles"
+    return np.memmap(buffer_path, dtype=np.uint8, mode='w+', shape=shape), buffer_path
 
-    final_output_rgb = output_tensor.squeeze(0).permute(1, 2, 0).cpu().numpy()
-    final_output_bgr = cv2.cvtColor(final_output_rgb, cv2.COLOR_RGB2BGR)
 
-    cv2.imwrite(output_path, final_output_bgr * 255.0)
-    print(f"Изображение успешно увеличено (SRGAN) и сохранено в {output_path}", file=sys.stderr)
+def _upscale_tiled(model, image, scale, tile_size, tile_pad, device, output, postprocess, progress=None):
+    """
+    Прогоняет изображение (H, W, C) через модель по тайлам tile_size x tile_size с перекрытием tile_pad.
+    Перекрытие отрезается от результата каждого тайла, поэтому на стыках не появляются швы.
+    progress(done, total) вызывается после каждого тайла.
+    """
+    h, w, _ = image.shape
+    tiles_y = (h + tile_size - 1) // tile_size
+    tiles_x = (w + tile_size - 1) // tile_size
+
+    for tile_index, (y0, x0) in enumerate((y, x) for y in range(0, h, tile_size) for x in range(0, w, tile_size)):
+        y1, x1 = min(y0 + tile_size, h), min(x0 + tile_size, w)
+        pad_y0, pad_x0 = max(y0 - tile_pad, 0), max(x0 - tile_pad, 0)
+        pad_y1, pad_x1 = min(y1 + tile_pad, h), min(x1 + tile_pad, w)
+
+        tile = np.ascontiguousarray(image[pad_y0:pad_y1, pad_x0:pad_x1].transpose(2, 0, 1))
+        with stage('inference'):
+            input_tensor = torch.from_numpy(tile).unsqueeze(0).to(device)
+            with torch.no_grad():
+                output_tensor = model(input_tensor)
+            tile_output = output_tensor.squeeze(0).permute(1, 2, 0).cpu().numpy()
+
+        crop_y0, crop_x0 = (y0 - pad_y0) * scale, (x0 - pad_x0) * scale
+        crop_y1, crop_x1 = crop_y0 + (y1 - y0) * scale, crop_x0 + (x1 - x0) * scale
+        output[y0 * scale:y1 * scale, x0 * scale:x1 * scale] = postprocess(tile_output[crop_y0:crop_y1, crop_x0:crop_x1])
+        print(f"Обработан тайл {tile_index + 1}/{tiles_y * tiles_x}", file=sys.stderr)
+        if progress is not None:
+            progress(tile_index + 1, tiles_y * tiles_x)
+
+
+def _process_image_rgb_model(model, input_path, output_path, device, scale, tile_size, tile_pad,
+                             input_range, model_label, progress=None):
+    """
+    Общая обработка RGB-моделей (EDSR, SRGAN): целиком или по тайлам, если задан tile_size.
+    """
+    rgb_image = _rgb_prepare(_read_image(input_path), input_range)
+
+    def postprocess(output_rgb):
+        return _rgb_postprocess(output_rgb, input_range)
+
+    if tile_size and tile_size > 0:
+        h, w, c = rgb_image.shape
+        output, buffer_path = _allocate_output((h * scale, w * scale, c), output_path)
+        _upscale_tiled(model, rgb_image, scale, tile_size, tile_pad, device, output, postprocess, progress)
+        with stage('encode'):
+            _write_image(output_path, output)
+        del output
+        if buffer_path is not None:
+            os.remove(buffer_path)
+    else:
+        with stage('inference'):
+            input_tensor = torch.from_numpy(rgb_image.transpose(2, 0, 1)).unsqueeze(0).to(device)
+            with torch.no_grad():
+                output_tensor = model(input_tensor)
+            output_rgb = output_tensor.squeeze(0).permute(1, 2, 0).cpu().numpy()
+        with stage('encode'):
+            _write_image(output_path, postprocess(output_rgb))
+
+    print(f"Изображение успешно увеличено ({model_label}) и сохранено в {output_path}", file=sys.stderr)
+
+def _process_image_edsr(model, input_path, output_path, device, scale, tile_size=0, tile_pad=0, progress=None):
+    """
+    Обрабатывает изображение с использованием модели EDSR (вход в диапазоне 0..255).
+    """
+    _process_image_rgb_model(model, input_path, output_path, device, scale, tile_size, tile_pad,
+                             RGB_INPUT_RANGE['edsr'], "EDSR", progress)
+
+def _process_image_srgan(model, input_path, output_path, device, scale, tile_size=0, tile_pad=0, progress=None):
+    """
+    Обрабатывает изображение с использованием модели SRGAN (вход в диапазоне 0..1).
+    """
+    _process_image_rgb_model(model, input_path, output_path, device, scale, tile_size, tile_pad,
+                             RGB_INPUT_RANGE['srgan'], "SRGAN", progress)
+
+
+def process_image(model_name, model, input_path, output_path, scale, device, tile_size=0, tile_pad=0,
+                  progress=None):
+    """
+    Обрабатывает изображение уже загруженной моделью (или интерполяцией, если model равна None).
+    tile_size > 0 включает потайловую обработку для EDSR и SRGAN.
+    progress(done, total) получает ход потайловой обработки.
+    """
+    model_name_lower = model_name.lower()
+
+    if model_name_lower == 'bilinear':
+        _process_image_interpolation(input_path, output_path, scale, cv2.INTER_LINEAR)
+    elif model_name_lower == 'bicubic':
+        _process_image_interpolation(input_path, output_path, scale, cv2.INTER_CUBIC)
+    elif model_name_lower == 'espcn':
+        _process_image_espcn(model, input_path, output_path, device)
+    elif model_name_lower == 'edsr':
+        _process_image_edsr(model, input_path, output_path, device, scale, tile_size, tile_pad, progress)
+    elif model_name_lower == 'srgan':
+        _process_image_srgan(model, input_path, output_path, device, scale, tile_size, tile_pad, progress)
+    else:
+        raise ValueError(f"Неизвестное имя модели/метода: {model_name}. "
+                         f"Поддерживаются: {', '.join(INTERPOLATION_METHODS + DEEP_MODELS)}.")
+
+
+def _resize_array(image, width, height, interpolation):
+    """
+    cv2.resize, который сохраняет ось каналов у одноканальных изображений (только яркость для ESPCN).
+    """
+    resized = cv2.resize(image, (width, height), interpolation=interpolation)
+    return resized if resized.ndim == 3 else resized[:, :, np.newaxis]
+
+
+def upscale_array(model_name, model, image, scale, device, tile_size=0, tile_pad=0, progress=None):
+    """
+    Увеличивает изображение (H, W, C) uint8 в памяти, без чтения и записи файлов: этап цепочки.
+    """
+    model_name_lower = model_name.lower()
+    h, w, _ = image.shape
+
+    if model_name_lower in INTERPOLATION_METHODS:
+        interpolation = cv2.INTER_LINEAR if model_name_lower == 'bilinear' else cv2.INTER_CUBIC
+        with stage('inference'):
+            return _resize_array(image, w * scale, h * scale, interpolation)
+
+    if model_name_lower == 'espcn':
+        y_channel, cr_channel, cb_channel = _espcn_prepare(image)
+        with stage('inference'):
+            input_tensor = torch.from_numpy(y_channel).to(device).view(1, 1, h, w)
+            with torch.no_grad():
+                sr_y = model(input_tensor).squeeze().cpu().numpy()
+        return _espcn_finish(sr_y, cr_channel, cb_channel)
+
+    if model_name_lower in RGB_INPUT_RANGE:
+        input_range = RGB_INPUT_RANGE[model_name_lower]
+        rgb_image = _rgb_prepare(image, input_range)
+
+        def postprocess(output_rgb):
+            return _rgb_postprocess(output_rgb, input_range)
+
+        if tile_size and tile_size > 0:
+            output = np.empty((h * scale, w * scale, 3), dtype=np.uint8)
+            _upscale_tiled(model, rgb_image, scale, tile_size, tile_pad, device, output, postprocess, progress)
+            return output
+        with stage('inference'):
+            input_tensor = torch.from_numpy(rgb_image.transpose(2, 0, 1)).unsqueeze(0).to(device)
+            with torch.no_grad():
+                output_tensor = model(input_tensor)
+            output_rgb = output_tensor.squeeze(0).permute(1, 2, 0).cpu().numpy()
+        return postprocess(output_rgb)
+
+    raise ValueError(f"Неизвестное имя модели/метода: {model_name}. "
+                     f"Поддерживаются: {', '.join(INTERPOLATION_METHODS + DEEP_MODELS)}.")
+
+
+class StageCache:
+    """
+    Результаты этапов цепочек в памяти воркера. Когда их общий размер превышает max_bytes,
+    вытесняются давно не использованные.
+    """
+
+    def __init__(self, max_bytes):
+        self.max_bytes = max_bytes
+        self._entries = OrderedDict()
+        self._bytes = 0
+
+    def get(self, key):
+        image = self._entries.get(key)
+        if image is not None:
+            self._entries.move_to_end(key)
+        return image
+
+    def put(self, key, image):
+        if image.nbytes > self.max_bytes:
+            return
+        previous = self._entries.pop(key, None)
+        if previous is not None:
+            self._bytes -= previous.nbytes
+        self._entries[key] = image
+        self._bytes += image.nbytes
+        while self._bytes > self.max_bytes:
+            _, evicted = self._entries.popitem(last=False)
+            self._bytes -= evicted.nbytes
+
+
+def process_plan(stages, get_model, input_path, output_path, scale, device, tile_size=0, tile_pad=0,
+                 stage_cache=None, cache_key=None, progress=None):
+    """
+    Выполняет цепочку этапов [(модель, масштаб, путь к весам)]: каждый этап увеличивает в памяти результат
+    предыдущего, а записывается только итог, приведенный к размеру входа x scale (INTER_AREA, если этапы
+    дали больше, иначе INTER_CUBIC). tile_size относится к первому этапу.
+    Результаты этапов кладутся в stage_cache под (cache_key, число каналов, первые этапы цепочки),
+    поэтому цепочка с теми же первыми этапами начинается после них.
+    get_model(модель, масштаб, путь к весам) возвращает загруженную модель, progress(done, total) - ход по этапам.
+    """
+    image = _read_image(input_path)
+    h, w, channels = image.shape
+    keys = [(cache_key, channels, tuple((name, stage_scale) for name, stage_scale, _ in stages[:i + 1]))
+            for i in range(len(stages))]
+    use_cache = stage_cache is not None and cache_key
+
+    start = 0
+    if use_cache:
+        for i in range(len(stages), 0, -1):
+            cached = stage_cache.get(keys[i - 1])
+            if cached is not None:
+                print(f"Этапы 1..{i} взяты из кэша этапов", file=sys.stderr)
+                image, start = cached, i
+                break
+
+    for i in range(start, len(stages)):
+        model_name, stage_scale, weights_path = stages[i]
+        model = get_model(model_name, stage_scale, weights_path) if model_name.lower() in DEEP_MODELS else None
+        image = upscale_array(model_name, model, image, stage_scale, device,
+                              tile_size if i == 0 else 0, tile_pad)
+        if use_cache:
+            stage_cache.put(keys[i], image)
+        print(f"Этап {i + 1}/{len(stages)}: {model_name} x{stage_scale}", file=sys.stderr)
+        if progress is not None:
+            progress(i + 1, len(stages))
+
+    if image.shape[:2] != (h * scale, w * scale):
+        interpolation = cv2.INTER_AREA if image.shape[0] > h * scale else cv2.INTER_CUBIC
+        with stage('inference'):
+            image = _resize_array(image, w * scale, h * scale, interpolation)
+
+    with stage('encode'):
+        _write_image(output_path, image)
+    print(f"Изображение увеличено цепочкой из {len(stages)} этапов и сохранено в {output_path}", file=sys.stderr)
+
+
+def _run_batch(model_name, model, pending, device):
+    """
+    Прогоняет через модель одним тензором группу изображений одинакового размера.
+    pending: список (item, prepared), где prepared - результат _espcn_prepare или _rgb_prepare.
+    """
+    if model_name == 'espcn':
+        batch = np.stack([prepared[0][np.newaxis] for _, prepared in pending])
+    else:
+        batch = np.stack([prepared.transpose(2, 0, 1) for _, prepared in pending])
+
+    with stage('inference'):
+        with torch.no_grad():
+            outputs = model(torch.from_numpy(np.ascontiguousarray(batch)).to(device)).cpu().numpy()
+
+    with stage('encode'):
+        for (item, prepared), output in zip(pending, outputs):
+            if model_name == 'espcn':
+                result = _espcn_finish(output[0], prepared[1], prepared[2])
+            else:
+                result = _rgb_postprocess(output.transpose(1, 2, 0), RGB_INPUT_RANGE[model_name])
+            _write_image(item['outputPath'], result)
+    print(f"Обработан пакет из {len(pending)} изображений {outputs.shape[2]}x{outputs.shape[3]}", file=sys.stderr)
+
+
+def process_batch(model_name, model, items, scale, device, max_batch_size, progress=None):
+    """
+    Обрабатывает группу изображений одной моделью подряд. Изображения одинакового размера
+    объединяются в один тензор (до max_batch_size штук). Возвращает список (код, ошибка) по элементам.
+    progress(index, done, total) сообщает ход обработки элемента с номером index.
+    """
+    model_name = model_name.lower()
+    results = [None] * len(items)
+    pending_by_shape = {}
+
+    def report(index, done, total):
+        if progress is not None:
+            progress(index, done, total)
+
+    def flush(shape):
+        pending = pending_by_shape.pop(shape)
+        try:
+            _run_batch(model_name, model, [(item, prepared) for _, item, prepared in pending], device)
+            for index, _, _ in pending:
+                results[index] = (0, None)
+                report(index, 1, 1)
+        except Exception as e:
+            print(f"Ошибка пакетной обработки: {e}", file=sys.stderr)
+            for index, _, _ in pending:
+                results[index] = (1, str(e))
+
+    for index, item in enumerate(items):
+        try:
+            tile_size = int(item.get('tileSize') or 0)
+            if model_name not in DEEP_MODELS or tile_size > 0 or max_batch_size <= 1:
+                process_image(model_name, model, item['inputPath'], item['outputPath'], scale, device,
+                              tile_size, int(item.get('tilePad') or 0),
+                              lambda done, total, index=index: report(index, done, total))
+                results[index] = (0, None)
+                report(index, 1, 1)
+                continue
+
+            image = _read_image(item['inputPath'])
+            if model_name == 'espcn':
+                prepared = _espcn_prepare(image)
+            else:
+                prepared = _rgb_prepare(image, RGB_INPUT_RANGE[model_name])
+            shape = image.shape
+            pending_by_shape.setdefault(shape, []).append((index, item, prepared))
+            if len(pending_by_shape[shape]) >= max_batch_size:
+                flush(shape)
+        except Exception as e:
+            print(f"Ошибка обработки {item.get('inputPath')}: {e}", file=sys.stderr)
+            results[index] = (1, str(e))
+
+    for shape in list(pending_by_shape):
+        flush(shape)
+    return results
+
+
+class UnsupportedFormatError(ValueError):
+    """
+    Формат вывода не поддерживается сборкой OpenCV (например, AVIF без libavif).
+    """
+
+
+def _quality_flag(image_format):
+    flags = {
+        'jpeg': cv2.IMWRITE_JPEG_QUALITY,
+        'webp': cv2.IMWRITE_WEBP_QUALITY,
+        'avif': getattr(cv2, 'IMWRITE_AVIF_QUALITY', None),
+    }
+    if image_format == 'png':
+        return None
+    if flags.get(image_format) is None:
+        raise UnsupportedFormatError(f"Формат {image_format} не поддерживается этой сборкой OpenCV")
+    return flags[image_format]
+
+
+def encode_image(input_path, output_path, image_format, quality):
+    """
+    Перекодирует готовый результат в другой формат (png, jpeg, webp, avif) с заданным качеством.
+    Формат файла OpenCV определяет по расширению output_path.
+    """
+    flag = _quality_flag(image_format)
+    image = _read_image(input_path)
+    params = [flag, int(quality)] if flag is not None else []
+    with stage('encode'):
+        try:
+            written = cv2.imwrite(output_path, image, params)
+        except cv2.error as e:
+            raise UnsupportedFormatError(f"OpenCV не может записать {image_format}: {e}")
+    if not written:
+        raise UnsupportedFormatError(f"OpenCV не может записать {image_format}")
 
 
-def upscale_image(input_path, output_path, model_path, model_name, scale):
+def upscale_image(input_path, output_path, model_path, model_name, scale, tile_size=0, tile_pad=0):
     """
     Масштабирует изображение, выбирая метод в зависимости от имени.
     """
@@ -122,23 +559,12 @@ def upscale_image(input_path, output_path, model_path, model_name, scale):
         device = torch.device("cuda" if torch.cuda.is_available() else "cpu")
         model_name_lower = model_name.lower()
 
-        if model_name_lower == 'bilinear':
-            _process_image_interpolation(input_path, output_path, scale, cv2.INTER_LINEAR)
-        elif model_name_lower == 'bicubic':
-            _process_image_interpolation(input_path, output_path, scale, cv2.INTER_CUBIC)
-        elif model_name_lower in ['espcn', 'edsr', 'srgan']:
+        model = None
+        if model_name_lower in DEEP_MODELS:
             print(f"Используется устройство: {device}", file=sys.stderr)
             model = _load_model(model_name_lower, scale, model_path, device)
 
-            if model_name_lower == 'espcn':
-                _process_image_espcn(model, input_path, output_path, device)
-            elif model_name_lower == 'edsr':
-                _process_image_edsr(model, input_path, output_path, device)
-            elif model_name_lower == 'srgan':
-                _process_image_srgan(model, input_path, output_path, device)
-        else:
-            raise ValueError(f"Неизвестное имя модели/метода: {model_name}. "
-                             f"Поддерживаются: espcn, edsr, srgan, bilinear, bicubic.")
+        process_image(model_name_lower, model, input_path, output_path, scale, device, tile_size, tile_pad)
 
         return 0
 
@@ -155,8 +581,8 @@ def upscale_image(input_path, output_path, model_path, model_name, scale):
         return 1
 
 if __name__ == "__main__":
-    if len(sys.argv) != 6:
-        print("Использование: python upscale_image.py <путь_входного_изображения> <путь_выходного_изображения> <путь_весов_модели> <имя_модели> <масштаб>", file=sys.stderr)
+    if len(sys.argv) not in (6, 7, 8):
+        print("Использование: python upscale_image.py <путь_входного_изображения> <путь_выходного_изображения> <путь_весов_модели> <имя_модели> <масштаб> [размер_тайла] [перекрытие_тайлов]", file=sys.stderr)
         sys.exit(1)
 
     input_image_path = sys.argv[1]
@@ -164,6 +590,9 @@ if __name__ == "__main__":
     model_weights_path = sys.argv[3]
     model_name = sys.argv[4]
     scale = int(sys.argv[5])
+    tile_size = int(sys.argv[6]) if len(sys.argv) > 6 else 0
+    tile_pad = int(sys.argv[7]) if len(sys.argv) > 7 else 0
 
-    exit_code = upscale_image(input_image_path, output_image_path, model_weights_path, model_name, scale)
+    exit_code = upscale_image(input_image_path, output_image_path, model_weights_path, model_name, scale,
+                              tile_size, tile_pad)
     sys.exit(exit_code)
\ No newline at end of file
@@ -0,0 +1,208 @@
+import os
+import sys
+import json
+import argparse
+import tempfile
+import traceback
+import cv2
+import numpy as np
+import torch
+
+from upscale_image import (_load_model, process_image, process_batch, process_plan, encode_image,
+                           reset_stage_timings, stage, StageCache, UnsupportedFormatError, DEEP_MODELS)
+
+# Протокол: одна JSON-строка задания на stdin -> одна JSON-строка ответа на stdout.
+# Перед ответом воркер может отправить строки {"progress": {"item", "done", "total"}} с ходом обработки.
+# После запуска (импорт torch и т.д.) воркер один раз отправляет {"ready": true}.
+# В ответ добавляется "timings": время этапов задания в секундах.
+# Задание с полем "format" перекодирует готовый результат; код 2 означает, что формат не поддерживается.
+# Задание с полем "warmup" заранее загружает модели и прогоняет через них пробное изображение.
+# Задание с полем "stages" выполняет цепочку этапов (например ESPCN x4, затем BICUBIC x2 для x8) в памяти;
+# результаты этапов хранятся в кэше размером --stage-cache-bytes под ключом "cacheKey".
+# Пути с суффиксом .bgr - несжатые изображения в общей памяти: вход отображается без декодирования,
+# результат пишется в заранее выделенный Java файл, а кодирует его уже Java. Для ESPCN в таких файлах
+# только яркость: вход и результат с одним каналом.
+# Всё остальное (логи, вывод библиотек) уходит в stderr, чтобы не ломать протокол.
+_protocol_out = sys.stdout
+sys.stdout = sys.stderr
+
+_models = {}
+_stage_cache = None
+
+UNSUPPORTED_FORMAT_EXIT_CODE = 2
+# Сторона пробного изображения для прогрева: достаточно, чтобы инициализировать ядра, и быстро на CPU.
+WARMUP_IMAGE_SIZE = 64
+
+
+def _get_model(model_name, scale, model_path, device):
+    """
+    Возвращает модель из кэша, загружая ее при первом обращении к паре (модель, масштаб).
+    """
+    key = (model_name, scale, model_path)
+    model = _models.get(key)
+    if model is None:
+        print(f"Загрузка модели {model_name} x{scale} из {model_path}", file=sys.stderr)
+        with stage('model_load'):
+            model = _load_model(model_name, scale, model_path, device)
+        _models[key] = model
+    return model
+
+
+def _run_job(job, device):
+    """
+    Выполняет одно задание и возвращает код завершения, как upscale_image().
+    """
+    input_path = job.get('inputPath')
+    model_path = job.get('weightsPath') or ', '.join(str(s.get('weightsPath')) for s in job.get('stages') or [])
+
+    try:
+        output_path = job['outputPath']
+        scale = int(job['scale'])
+        tile_size = int(job.get('tileSize') or 0)
+        tile_pad = int(job.get('tilePad') or 0)
+
+        if job.get('stages'):
+            stages = [(s['model'].lower(), int(s['scale']), s.get('weightsPath')) for s in job['stages']]
+            process_plan(stages, lambda name, stage_scale, path: _get_model(name, stage_scale, path, device),
+                         input_path, output_path, scale, device, tile_size, tile_pad, _stage_cache,
+                         job.get('cacheKey'), lambda done, total: _report_progress(0, done, total))
+            return 0, None
+
+        model_name = job['model'].lower()
+        model = None
+        if model_name in DEEP_MODELS:
+            model = _get_model(model_name, scale, model_path, device)
+
+        process_image(model_name, model, input_path, output_path, scale, device, tile_size, tile_pad,
+                      lambda done, total: _report_progress(0, done, total))
+        return 0, None
+
+    except FileNotFoundError:
+        message = f"Файл не найден по пути {input_path} или {model_path}"
+        print(f"Ошибка: {message}", file=sys.stderr)
+        return 1, message
+    except ValueError as e:
+        print(f"Ошибка параметров: {e}", file=sys.stderr)
+        return 1, str(e)
+    except Exception as e:
+        print(f"Произошла ошибка во время увеличения изображения: {e}", file=sys.stderr)
+        traceback.print_exc(file=sys.stderr)
+        return 1, str(e)
+
+
+def _run_batch_job(job, device):
+    """
+    Выполняет пакетное задание: все элементы обрабатываются одной загруженной моделью.
+    """
+    items = job.get('items') or []
+    try:
+        model_name = job['model'].lower()
+        scale = int(job['scale'])
+        max_batch_size = int(job.get('maxBatchSize') or 1)
+
+        model = None
+        if model_name in DEEP_MODELS:
+            model = _get_model(model_name, scale, job.get('weightsPath'), device)
+
+        results = process_batch(model_name, model, items, scale, device, max_batch_size, _report_progress)
+    except Exception as e:
+        print(f"Произошла ошибка во время пакетной обработки: {e}", file=sys.stderr)
+        traceback.print_exc(file=sys.stderr)
+        results = [(1, str(e))] * len(items)
+
+    return [{"exitCode": exit_code, "error": error} for exit_code, error in results]
+
+
+def _run_encode_job(job):
+    """
+    Перекодирует результат в формат job["format"] с качеством job["quality"].
+    """
+    try:
+        encode_image(job['inputPath'], job['outputPath'], job['format'].lower(), job.get('quality') or 0)
+        return 0, None
+    except UnsupportedFormatError as e:
+        print(f"Ошибка кодирования: {e}", file=sys.stderr)
+        return UNSUPPORTED_FORMAT_EXIT_CODE, str(e)
+    except Exception as e:
+        print(f"Произошла ошибка во время кодирования: {e}", file=sys.stderr)
+        traceback.print_exc(file=sys.stderr)
+        return 1, str(e)
+
+
+def _run_warmup_job(job, device):
+    """
+    Загружает модели из job["warmup"] в кэш и прогоняет через каждую пробное изображение,
+    чтобы первое настоящее задание не платило за загрузку весов и инициализацию ядер.
+    """
+    try:
+        with tempfile.TemporaryDirectory() as tmp_dir:
+            sample_path = os.path.join(tmp_dir, 'warmup.png')
+            sample = np.random.randint(0, 256, (WARMUP_IMAGE_SIZE, WARMUP_IMAGE_SIZE, 3), dtype=np.uint8)
+            cv2.imwrite(sample_path, sample)
+
+            for item in job['warmup']:
+                model_name = item['model'].lower()
+                scale = int(item['scale'])
+                model = None
+                if model_name in DEEP_MODELS:
+                    model = _get_model(model_name, scale, item.get('weightsPath'), device)
+                output_path = os.path.join(tmp_dir, f"{model_name}_{scale}x.png")
+                process_image(model_name, model, sample_path, output_path, scale, device)
+        return 0, None
+    except Exception as e:
+        print(f"Произошла ошибка во время прогрева моделей: {e}", file=sys.stderr)
+        traceback.print_exc(file=sys.stderr)
+        return 1, str(e)
+
+
+def _reply(response):
+    _protocol_out.write(json.dumps(response, ensure_ascii=False) + "\n")
+    _protocol_out.flush()
+
+
+def _report_progress(item, done, total):
+    """
+    Сообщает ход обработки элемента задания (для одиночного задания item = 0).
+    """
+    _reply({"progress": {"item": item, "done": done, "total": total}})
+
+
+def main():
+    global _stage_cache
+    parser = argparse.ArgumentParser()
+    parser.add_argument('--stage-cache-bytes', type=int, default=0)
+    args, _ = parser.parse_known_args()
+    _stage_cache = StageCache(args.stage_cache_bytes) if args.stage_cache_bytes > 0 else None
+
+    device = torch.device("cuda" if torch.cuda.is_available() else "cpu")
+    print(f"Воркер запущен, используется устройство: {device}", file=sys.stderr)
+    _reply({"ready": True})
+
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+
+        try:
+            job = json.loads(line)
+        except json.JSONDecodeError as e:
+            _reply({"exitCode": 1, "error": f"Некорректное задание: {e}"})
+            continue
+
+        timings = reset_stage_timings()
+        if 'items' in job:
+            results = _run_batch_job(job, device)
+            _reply({"results": results, "timings": timings})
+        elif 'format' in job:
+            exit_code, error = _run_encode_job(job)
+            _reply({"exitCode": exit_code, "error": error, "timings": timings})
+        elif 'warmup' in job:
+            exit_code, error = _run_warmup_job(job, device)
+            _reply({"exitCode": exit_code, "error": error, "timings": timings})
+        else:
+            exit_code, error = _run_job(job, device)
+            _reply({"exitCode": exit_code, "error": error, "timings": timings})
+
+
+if __name__ == "__main__":
+    main()
@@ -1,38 +1,49 @@
+import sys
+
 import torch
 
-# Замените на путь к вашему .pth файлу
-# Если вы распаковали, используйте extracted_pth_file
-# Если это был изначально .pth, используйте pth_tar_path
-weights_path = 'SRGAN_4x.pth (1).tar'
 
-# Загружаем state_dict
-# map_location='cpu' полезно, если веса были сохранены на GPU,
-# а вы загружаете их на CPU, чтобы избежать ошибок с устройством.
-state_dict = torch.load(weights_path, map_location='cpu')
+def rename_layers(state_dict):
+    """
+    Достает state_dict из чекпойнта и убирает префикс '_orig_mod.', который добавляет torch.compile,
+    чтобы веса загружались в обычную (не скомпилированную) модель.
+    """
+    if 'model_state_dict' in state_dict:
+        state_dict = state_dict['model_state_dict']
+    elif 'state_dict' in state_dict: # Часто используется в других фреймворках, например, mmcv
+        state_dict = state_dict['state_dict']
+
+    new_state_dict = {}
+    for key, value in state_dict.items():
+        new_key = key
+
+        # Пример 1: Замена префикса
+        if new_key.startswith('_orig_mod.'):
+            new_key = new_key.replace('_orig_mod.', '')
+
+        new_state_dict[new_key] = value
+    return new_state_dict
 
-if 'model_state_dict' in state_dict:
-    state_dict = state_dict['model_state_dict']
-elif 'state_dict' in state_dict: # Часто используется в других фреймворках, например, mmcv
-    state_dict = state_dict['state_dict']
 
-print("Оригинальные ключи (названия слоев) в state_dict:")
-for key in state_dict.keys():
-    print(key)
+if __name__ == '__main__':
+    # Путь к исходному .pth/.pth.tar файлу и путь для переименованных весов
+    weights_path = sys.argv[1] if len(sys.argv) > 1 else 'SRGAN_4x.pth (1).tar'
+    output_path = sys.argv[2] if len(sys.argv) > 2 else 'SRGAN_4x.pth'
 
-new_state_dict = {}
-for key, value in state_dict.items():
-    new_key = key
+    # Загружаем state_dict
+    # map_location='cpu' полезно, если веса были сохранены на GPU,
+    # а вы загружаете их на CPU, чтобы избежать ошибок с устройством.
+    state_dict = torch.load(weights_path, map_location='cpu')
 
-    # Пример 1: Замена префикса
-    if new_key.startswith('_orig_mod.'):
-        new_key = new_key.replace('_orig_mod.', '')
+    print("Оригинальные ключи (названия слоев) в state_dict:")
+    for key in state_dict.keys():
+        print(key)
 
-    new_state_dict[new_key] = value
+    new_state_dict = rename_layers(state_dict)
 
-print("\nНовые ключи (названия слоев) в state_dict:")
-for key in new_state_dict.keys():
-    print(key)
+    print("\nНовые ключи (названия слоев) в state_dict:")
+    for key in new_state_dict.keys():
+        print(key)
 
-output_path = 'SRGAN_4x.pth'
-torch.save(new_state_dict, output_path)
-print(f"\nПереименованные веса сохранены в '{output_path}'.")
\ No newline at end of file
+    torch.save(new_state_dict, output_path)
+    print(f"\nПереименованные веса сохранены в '{output_path}'.")
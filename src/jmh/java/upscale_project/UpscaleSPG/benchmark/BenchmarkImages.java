@@ -0,0 +1,61 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.springframework.mock.web.MockMultipartFile;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Deterministic sample images, so results of different commits are measured on the same pixels.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Smooth gradients with mild noise: compresses roughly like a photo, unlike pure noise or flat colour.
+     */
+    static BufferedImage sample(Resolution resolution) {
+        int width = resolution.width();
+        int height = resolution.height();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(9) - 4;
+                pixels[i++] = (byte) clamp(x * 255 / width + noise);
+                pixels[i++] = (byte) clamp(y * 255 / height + noise);
+                pixels[i++] = (byte) clamp((x + y) * 127 / (width + height) + 64 + noise);
+            }
+        }
+        return image;
+    }
+
+    static byte[] png(BufferedImage image) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static MockMultipartFile upload(byte[] png) {
+        return new MockMultipartFile("file", "sample.png", "image/png", png);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
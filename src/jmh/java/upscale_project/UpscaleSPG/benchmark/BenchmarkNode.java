@@ -0,0 +1,70 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import upscale_project.UpscaleSPG.UpscaleSpgApplication;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A full application context on a private in-memory database and a temporary upload directory.
+ * Settings passed to the benchmark JVM as system properties (for example {@code app.python.executable.path})
+ * still apply.
+ */
+final class BenchmarkNode implements AutoCloseable {
+
+    private final Path storage;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkNode(Path storage, ConfigurableApplicationContext context) {
+        this.storage = storage;
+        this.context = context;
+    }
+
+    static BenchmarkNode start(String... args) {
+        try {
+            Path storage = Files.createTempDirectory("upscale-jmh");
+            List<String> allArgs = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.datasource.url=jdbc:h2:mem:jmh-" + UUID.randomUUID(),
+                    "--app.upload.path=" + storage,
+                    "--app.cache.enabled=false",
+                    "--logging.level.root=WARN"));
+            allArgs.addAll(List.of(args));
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(UpscaleSpgApplication.class)
+                    .run(allArgs.toArray(String[]::new));
+            return new BenchmarkNode(storage, context);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A node that only stores uploads: jobs stay UPLOADED, nothing is processed.
+     */
+    static BenchmarkNode startUploadOnly() {
+        return start("--app.jobs.shared-queue=true", "--app.node.processing-enabled=false");
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    Path getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(storage);
+    }
+}
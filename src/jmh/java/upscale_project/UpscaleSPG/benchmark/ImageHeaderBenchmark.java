@@ -0,0 +1,67 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.processing.ImageHeaderReader;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of a 20-50 MP image from {@link ImageHeaderReader} against a full {@link ImageIO#read}: the header
+ * read should not grow with the pixel count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageHeaderBenchmark {
+
+    @Param({"5472x3648", "8192x6144"})
+    public String resolution;
+
+    @Param({"png", "jpg"})
+    public String format;
+
+    private Path sampleFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sampleFile = Files.createTempFile("upscale-jmh-header", "." + format);
+        ImageIO.write(BenchmarkImages.sample(Resolution.parse(resolution)), format, sampleFile.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(sampleFile);
+    }
+
+    @Benchmark
+    public Resolution readHeader() throws IOException {
+        return ImageHeaderReader.readResolution(sampleFile);
+    }
+
+    @Benchmark
+    public BufferedImage decodeFully() throws IOException {
+        return ImageIO.read(sampleFile.toFile());
+    }
+}
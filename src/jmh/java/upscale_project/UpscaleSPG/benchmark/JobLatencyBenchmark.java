@@ -0,0 +1,82 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+import upscale_project.UpscaleSPG.service.ImageService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload-to-PROCESSED latency of one job per {@link UpscalingMethod} and scale on a fixed sample image.
+ * ESPCN, EDSR and SRGAN need the Python environment, for example:
+ * {@code -Djmh.args="JobLatencyBenchmark -p method=ESPCN,EDSR -jvmArgsAppend -Dapp.python.executable.path=.venv/bin/python"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JobLatencyBenchmark {
+
+    @Param({"BILINEAR", "BICUBIC"})
+    public String method;
+
+    @Param({"2", "4"})
+    public int scale;
+
+    @Param({"512x384"})
+    public String resolution;
+
+    private BenchmarkNode node;
+    private ImageService imageService;
+    private ImageRepository imageRepository;
+    private MockMultipartFile upload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        node = BenchmarkNode.start("--app.jobs.max-attempts=1");
+        imageService = node.getBean(ImageService.class);
+        imageRepository = node.getBean(ImageRepository.class);
+        upload = BenchmarkImages.upload(BenchmarkImages.png(BenchmarkImages.sample(Resolution.parse(resolution))));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        node.close();
+    }
+
+    @Benchmark
+    public Image processJob() throws InterruptedException {
+        Long id = imageService.processImageUpload(upload, UpscalingMethod.valueOf(method), scale);
+        while (true) {
+            Image image = imageRepository.findById(id).orElseThrow();
+            if (image.getStatus() == ImageStatus.PROCESSED) {
+                return image;
+            }
+            if (image.getStatus() == ImageStatus.ERROR) {
+                throw new IllegalStateException("Job " + id + " failed: " + image.getLastError());
+            }
+            Thread.sleep(1);
+        }
+    }
+}
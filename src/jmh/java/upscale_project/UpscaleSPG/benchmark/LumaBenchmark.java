@@ -0,0 +1,57 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.processing.LumaPlane;
+
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ESPCN colour work in the JVM: {@link LumaPlane#extract} on the original and {@link LumaPlane#replace} on the
+ * upscaled image. Forks inherit {@code --add-modules jdk.incubator.vector} from the jmh profile; to measure the
+ * scalar fallback, replace the inherited arguments: {@code -Djmh.args="LumaBenchmark -jvmArgs -Xmx2g"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LumaBenchmark {
+
+    @Param({"2048x1536"})
+    public String resolution;
+
+    private byte[] bgr;
+    private byte[] luma;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bgr = ((DataBufferByte) BenchmarkImages.sample(Resolution.parse(resolution)).getRaster().getDataBuffer()).getData();
+        luma = LumaPlane.extract(bgr);
+    }
+
+    @Benchmark
+    public byte[] extract() {
+        return LumaPlane.extract(bgr);
+    }
+
+    @Benchmark
+    public byte[] replace() {
+        LumaPlane.replace(bgr, luma);
+        return bgr;
+    }
+}
@@ -0,0 +1,66 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-JVM raster work: {@link InterpolationEngine#resize} without file I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RasterBenchmark {
+
+    @Param({"BILINEAR", "BICUBIC"})
+    public String method;
+
+    @Param({"2", "4"})
+    public int scale;
+
+    @Param({"1024x768"})
+    public String resolution;
+
+    // 0 uses all cores, 1 measures the single-threaded kernel.
+    @Param({"0", "1"})
+    public int parallelism;
+
+    private InterpolationEngine engine;
+    private BufferedImage source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new InterpolationEngine(parallelism, 64);
+        source = BenchmarkImages.sample(Resolution.parse(resolution));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage resize() {
+        return engine.resize(source, scale, UpscalingMethod.valueOf(method));
+    }
+}
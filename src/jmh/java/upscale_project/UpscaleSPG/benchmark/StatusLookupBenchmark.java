@@ -0,0 +1,68 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import upscale_project.UpscaleSPG.model.ImageMetadataResponse;
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.service.ImageService;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ImageService#getImageStatus(Long)} over a table of stored jobs, as hit by clients polling for status.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class StatusLookupBenchmark {
+
+    @Param({"1000"})
+    public int images;
+
+    private BenchmarkNode node;
+    private ImageService imageService;
+    private Long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        node = BenchmarkNode.startUploadOnly();
+        imageService = node.getBean(ImageService.class);
+        MockMultipartFile upload = BenchmarkImages.upload(
+                BenchmarkImages.png(BenchmarkImages.sample(new Resolution(64, 48))));
+        firstId = imageService.processImageUpload(upload, UpscalingMethod.BICUBIC, 2);
+        for (int i = 1; i < images; i++) {
+            imageService.processImageUpload(upload, UpscalingMethod.BICUBIC, 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        node.close();
+    }
+
+    @Benchmark
+    public ImageMetadataResponse getImageStatus() {
+        return imageService.getImageStatus(firstId + ThreadLocalRandom.current().nextInt(images));
+    }
+}
@@ -0,0 +1,83 @@
+package upscale_project.UpscaleSPG.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.ImageHeaderReader;
+import upscale_project.UpscaleSPG.service.ImageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Upload path of {@link ImageService}: streaming the file to disk with hashing, header-only metadata and the
+ * database insert. Runs on an upload-only node, so no processing competes for the CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"1024x768", "4000x3000"})
+    public String resolution;
+
+    private BenchmarkNode node;
+    private ImageService imageService;
+    private MockMultipartFile upload;
+    private Path sampleFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        node = BenchmarkNode.startUploadOnly();
+        imageService = node.getBean(ImageService.class);
+        byte[] png = BenchmarkImages.png(BenchmarkImages.sample(Resolution.parse(resolution)));
+        upload = BenchmarkImages.upload(png);
+        sampleFile = Files.createTempFile("upscale-jmh-sample", ".png");
+        Files.write(sampleFile, png);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteUploads() throws IOException {
+        try (Stream<Path> files = Files.list(node.getStorage())) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        node.close();
+        Files.deleteIfExists(sampleFile);
+    }
+
+    @Benchmark
+    public Long upload() {
+        return imageService.processImageUpload(upload, UpscalingMethod.BICUBIC, 2);
+    }
+
+    @Benchmark
+    public Resolution readMetadata() throws IOException {
+        return ImageHeaderReader.readResolution(sampleFile);
+    }
+}
@@ -1,23 +1,33 @@
 package upscale_project.UpscaleSPG.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import upscale_project.UpscaleSPG.exception.ImageNotFoundException;
 import upscale_project.UpscaleSPG.exception.ImageProcessingException;
 import upscale_project.UpscaleSPG.exception.InvalidImageException;
+import upscale_project.UpscaleSPG.model.BatchStatusResponse;
+import upscale_project.UpscaleSPG.model.BatchUploadResponse;
+import upscale_project.UpscaleSPG.model.CacheStatsResponse;
 import upscale_project.UpscaleSPG.model.ImageMetadataResponse;
 import upscale_project.UpscaleSPG.model.UpscalingMethod;
 import upscale_project.UpscaleSPG.model.UploadResponse;
 import upscale_project.UpscaleSPG.service.ImageService;
 
+import java.io.IOException;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/images")
 public class ImageController {
@@ -25,23 +35,29 @@ public class ImageController {
     private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
 
     private final ImageService imageService;
+    private final FileDownloadWriter fileDownloadWriter;
 
     @Autowired
-    public ImageController(ImageService imageService) {
+    public ImageController(ImageService imageService, FileDownloadWriter fileDownloadWriter) {
         this.imageService = imageService;
+        this.fileDownloadWriter = fileDownloadWriter;
     }
 
     @PostMapping
     public ResponseEntity<?> uploadImage(
             @RequestParam("file") @NonNull MultipartFile file,
             @RequestParam("model") String model,
-            @RequestParam("scale") int scale
+            @RequestParam("scale") int scale,
+            @RequestParam(value = "maxLatencyMs", required = false) Long maxLatencyMs,
+            @RequestAttribute(value = UploadAdmissionFilter.CLIENT_ID_ATTRIBUTE, required = false) String clientId
     ) {
-        logger.info("Received image upload request: model={}, scale={}", model, scale);
-        
+        logger.info("Received image upload request: model={}, scale={}, maxLatencyMs={}", model, scale, maxLatencyMs);
+        validateMaxLatency(maxLatencyMs);
+
         try {
             UpscalingMethod upscalingMethod = UpscalingMethod.valueOf(model.toUpperCase());
-            Long savedImageId = imageService.processImageUpload(file, upscalingMethod, scale);
+            Long savedImageId = imageService.processImageUpload(file, upscalingMethod, scale, maxLatencyMs,
+                    clientId);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(new UploadResponse(savedImageId));
         } catch (IllegalArgumentException e) {
@@ -53,6 +69,38 @@ public class ImageController {
         }
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<BatchUploadResponse> uploadBatch(
+            @RequestParam(value = "files", required = false) List<MultipartFile> files,
+            @RequestParam(value = "archive", required = false) MultipartFile archive,
+            @RequestParam("model") String model,
+            @RequestParam("scale") int scale,
+            @RequestParam(value = "maxLatencyMs", required = false) Long maxLatencyMs,
+            @RequestAttribute(value = UploadAdmissionFilter.CLIENT_ID_ATTRIBUTE, required = false) String clientId
+    ) {
+        logger.info("Received batch upload request: files={}, archive={}, model={}, scale={}",
+                files != null ? files.size() : 0, archive != null, model, scale);
+        validateMaxLatency(maxLatencyMs);
+
+        UpscalingMethod upscalingMethod;
+        try {
+            upscalingMethod = UpscalingMethod.valueOf(model.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid upscaling model: {}", model);
+            throw new InvalidImageException("Invalid upscaling model: " + model);
+        }
+
+        BatchUploadResponse response = imageService.processBatchUpload(
+                files != null ? files : List.of(), archive, upscalingMethod, scale, maxLatencyMs, clientId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<BatchStatusResponse> getBatchStatus(@PathVariable("batchId") String batchId) {
+        logger.info("Fetching status for batch ID: {}", batchId);
+        return ResponseEntity.ok(imageService.getBatchStatus(batchId));
+    }
+
     @GetMapping("/{id}/status")
     public ResponseEntity<?> getImageStatus(@PathVariable("id") Long id) {
         logger.info("Fetching status for image ID: {}", id);
@@ -60,10 +108,43 @@ public class ImageController {
         return ResponseEntity.ok(response);
     }
 
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ImageMetadataResponse> cancelImage(@PathVariable("id") Long id) {
+        logger.info("Cancelling image ID: {}", id);
+        return ResponseEntity.ok(imageService.cancelImage(id));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToImageEvents(@PathVariable("id") Long id) {
+        logger.info("Opening progress stream for image ID: {}", id);
+        return imageService.subscribeToProgress(id);
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsResponse> getCacheStats() {
+        return ResponseEntity.ok(imageService.getCacheStats());
+    }
+
     @GetMapping("/{id}/result")
-    public ResponseEntity<Resource> getProcessedImage(@PathVariable("id") Long id) {
-        logger.info("Fetching processed image for ID: {}", id);
-        return imageService.getProcessedImageFile(id);
-    
+    public void getProcessedImage(@PathVariable("id") Long id,
+                                  @RequestParam(value = "format", required = false) String format,
+                                  @RequestParam(value = "quality", required = false) Integer quality,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Fetching processed image for ID: {} (format={}, quality={})", id, format, quality);
+        fileDownloadWriter.write(imageService.getProcessedImageFile(id, format, quality, accept), request, response);
+    }
+
+    @GetMapping("/{id}/preview")
+    public void getPreviewImage(@PathVariable("id") Long id, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        logger.info("Fetching preview image for ID: {}", id);
+        fileDownloadWriter.write(imageService.getPreviewImageFile(id), request, response);
+    }
+
+    private static void validateMaxLatency(Long maxLatencyMs) {
+        if (maxLatencyMs != null && maxLatencyMs <= 0) {
+            throw new InvalidImageException("maxLatencyMs must be positive: " + maxLatencyMs);
+        }
     }
 }
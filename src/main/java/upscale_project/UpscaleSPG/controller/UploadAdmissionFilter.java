@@ -0,0 +1,71 @@
+package upscale_project.UpscaleSPG.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import upscale_project.UpscaleSPG.exception.RateLimitExceededException;
+import upscale_project.UpscaleSPG.service.AdmissionService;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Applies the per-client request limit of {@link AdmissionService} to upload requests before the multipart body
+ * is parsed, so a rejected request is never written to disk, not even to the container's temporary files. The
+ * client is the value of the {@code app.admission.client-header} header when one is configured and sent (for a
+ * trusted gateway that authenticates clients), otherwise the remote address. The controller reads it from the
+ * {@link #CLIENT_ID_ATTRIBUTE} request attribute for the per-image checks.
+ */
+@Component
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    public static final String CLIENT_ID_ATTRIBUTE = "upscale.admission.clientId";
+
+    private static final Set<String> UPLOAD_PATHS = Set.of("/api/v1/images", "/api/v1/images/batch");
+
+    private final AdmissionService admissionService;
+    private final String clientHeader;
+
+    @Autowired
+    public UploadAdmissionFilter(AdmissionService admissionService,
+                                 @Value("${app.admission.client-header}") String clientHeader) {
+        this.admissionService = admissionService;
+        this.clientHeader = clientHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod())
+                || !UPLOAD_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientId = clientHeader.isBlank() ? null : request.getHeader(clientHeader);
+        if (clientId == null || clientId.isBlank()) {
+            clientId = request.getRemoteAddr();
+        }
+        try {
+            admissionService.admitRequest(clientId);
+        } catch (RateLimitExceededException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+        request.setAttribute(CLIENT_ID_ATTRIBUTE, clientId);
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,7 @@
+package upscale_project.UpscaleSPG.exception;
+
+public class ImageAlreadyFinishedException extends RuntimeException {
+    public ImageAlreadyFinishedException(String message) {
+        super(message);
+    }
+}
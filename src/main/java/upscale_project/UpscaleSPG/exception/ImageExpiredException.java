@@ -0,0 +1,7 @@
+package upscale_project.UpscaleSPG.exception;
+
+public class ImageExpiredException extends RuntimeException {
+    public ImageExpiredException(String message) {
+        super(message);
+    }
+}
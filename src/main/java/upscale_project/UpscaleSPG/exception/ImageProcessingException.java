@@ -1,11 +1,29 @@
 package upscale_project.UpscaleSPG.exception;
 
 public class ImageProcessingException extends RuntimeException {
+
+    public static final int NO_EXIT_CODE = -1;
+
+    private final int exitCode;
+
     public ImageProcessingException(String message, Throwable cause) {
         super(message, cause);
+        this.exitCode = NO_EXIT_CODE;
     }
 
     public ImageProcessingException(String message) {
+        this(message, NO_EXIT_CODE);
+    }
+
+    public ImageProcessingException(String message, int exitCode) {
         super(message);
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * Returns the exit code reported by the upscaling worker, or {@link #NO_EXIT_CODE} if the failure happened elsewhere.
+     */
+    public int getExitCode() {
+        return exitCode;
     }
 }
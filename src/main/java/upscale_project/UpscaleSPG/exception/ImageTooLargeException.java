@@ -0,0 +1,7 @@
+package upscale_project.UpscaleSPG.exception;
+
+public class ImageTooLargeException extends RuntimeException {
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package upscale_project.UpscaleSPG.exception;
+
+public class JobQueueFullException extends RuntimeException {
+    public JobQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package upscale_project.UpscaleSPG.exception;
+
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns how long the client has to wait before the same request would be admitted.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,7 @@
+package upscale_project.UpscaleSPG.exception;
+
+public class UploadsDisabledException extends RuntimeException {
+    public UploadsDisabledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,33 @@
+package upscale_project.UpscaleSPG.model;
+
+import java.util.Map;
+
+public class BatchStatusResponse {
+    private final String batchId;
+    private final long total;
+    private final Map<ImageStatus, Long> statusCounts;
+    private final int progressPercent;
+
+    public BatchStatusResponse(String batchId, long total, Map<ImageStatus, Long> statusCounts, int progressPercent) {
+        this.batchId = batchId;
+        this.total = total;
+        this.statusCounts = statusCounts;
+        this.progressPercent = progressPercent;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<ImageStatus, Long> getStatusCounts() {
+        return statusCounts;
+    }
+
+    public int getProgressPercent() {
+        return progressPercent;
+    }
+}
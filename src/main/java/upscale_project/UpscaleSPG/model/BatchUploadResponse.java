@@ -0,0 +1,21 @@
+package upscale_project.UpscaleSPG.model;
+
+import java.util.List;
+
+public class BatchUploadResponse {
+    private final String batchId;
+    private final List<Long> imageIds;
+
+    public BatchUploadResponse(String batchId, List<Long> imageIds) {
+        this.batchId = batchId;
+        this.imageIds = imageIds;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public List<Long> getImageIds() {
+        return imageIds;
+    }
+}
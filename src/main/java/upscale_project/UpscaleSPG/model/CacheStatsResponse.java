@@ -0,0 +1,37 @@
+package upscale_project.UpscaleSPG.model;
+
+public class CacheStatsResponse {
+    private final long hits;
+    private final long misses;
+    private final int entries;
+    private final long sizeBytes;
+    private final long maxSizeBytes;
+
+    public CacheStatsResponse(long hits, long misses, int entries, long sizeBytes, long maxSizeBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = entries;
+        this.sizeBytes = sizeBytes;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+}
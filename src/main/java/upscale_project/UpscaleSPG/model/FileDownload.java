@@ -0,0 +1,21 @@
+package upscale_project.UpscaleSPG.model;
+
+import java.nio.file.Path;
+
+/**
+ * A file to send to the client. {@code immutable} files never change under their URL, so they are served
+ * with validators and a long-lived {@code Cache-Control}; the others are marked as not cacheable.
+ * {@code entityTag} is the strong ETag to send, or null to derive one from the size and modification time of the
+ * file. {@code variesByAccept} marks a file chosen by the {@code Accept} header, so caches keep one copy per header.
+ */
+public record FileDownload(Path path, String contentType, String fileName, boolean immutable, String entityTag,
+                           boolean variesByAccept) {
+
+    public FileDownload(Path path, String contentType, String fileName, boolean immutable) {
+        this(path, contentType, fileName, immutable, null, false);
+    }
+
+    public FileDownload varyingByAccept() {
+        return new FileDownload(path, contentType, fileName, immutable, entityTag, true);
+    }
+}
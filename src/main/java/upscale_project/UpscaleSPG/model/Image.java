@@ -1,15 +1,31 @@
 package upscale_project.UpscaleSPG.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import upscale_project.UpscaleSPG.repository.ImageStatusListener;
 
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(ImageStatusListener.class)
+@Table(indexes = {
+        @Index(name = "idx_image_content_hash", columnList = "contentHash"),
+        @Index(name = "idx_image_batch_id", columnList = "batchId"),
+        @Index(name = "idx_image_status", columnList = "status"),
+        @Index(name = "idx_image_coalesced_with", columnList = "coalescedWith"),
+        @Index(name = "idx_image_processed_file_path", columnList = "processedFilePath"),
+        @Index(name = "idx_image_process_end_time", columnList = "processEndTime")
+})
 public class Image {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,7 +45,22 @@ public class Image {
     private String upscaledResolution;
     private Long originalFileSize;
     private Long upscaledFileSize;
-
+    private String contentHash;
+    private String batchId;
+    private int attempts;
+    @Column(length = 2000)
+    private String lastError;
+    private String leaseOwner;
+    private LocalDateTime leaseExpiresAt;
+    private LocalDateTime nextAttemptAt;
+    private String processedBy;
+    private Long coalescedWith;
+    @Enumerated(EnumType.STRING)
+    private UpscalingMethod requestedModel;
+    private Long maxLatencyMs;
+    private LocalDateTime expiredAt;
+    @Version
+    private Long version;
 
     public Image() {
     }
@@ -156,4 +187,108 @@ public class Image {
     public void setUpscaledFileSize(Long upscaledFileSize) {
         this.upscaledFileSize = upscaledFileSize;
     }
-}
\ No newline at end of file
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getProcessedBy() {
+        return processedBy;
+    }
+
+    public void setProcessedBy(String processedBy) {
+        this.processedBy = processedBy;
+    }
+
+    public Long getCoalescedWith() {
+        return coalescedWith;
+    }
+
+    public void setCoalescedWith(Long coalescedWith) {
+        this.coalescedWith = coalescedWith;
+    }
+
+    public UpscalingMethod getRequestedModel() {
+        return requestedModel;
+    }
+
+    public void setRequestedModel(UpscalingMethod requestedModel) {
+        this.requestedModel = requestedModel;
+    }
+
+    public Long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    public void setMaxLatencyMs(Long maxLatencyMs) {
+        this.maxLatencyMs = maxLatencyMs;
+    }
+
+    public LocalDateTime getExpiredAt() {
+        return expiredAt;
+    }
+
+    public void setExpiredAt(LocalDateTime expiredAt) {
+        this.expiredAt = expiredAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -3,6 +3,8 @@ package upscale_project.UpscaleSPG.model;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 
+import java.util.List;
+
 public class ImageMetadataResponse {
     @Enumerated(EnumType.STRING)
     private ImageStatus status;
@@ -14,6 +16,17 @@ public class ImageMetadataResponse {
     private UpscalingMethod model;
     private int scale;
     private String originalFileName;
+    private int queueDepth;
+    private int queuePosition = -1;
+    private long queueWaitMs;
+    private int attempts;
+    private String lastError;
+    private boolean previewAvailable;
+    @Enumerated(EnumType.STRING)
+    private UpscalingMethod requestedModel;
+    private Long maxLatencyMs;
+    private boolean expired;
+    private List<String> plan;
 
     public ImageMetadataResponse(ImageStatus status, String originalResolution, String upscaledResolution,
                                  long originalFileSize, long upscaledFileSize, UpscalingMethod model, int scale, String originalFileName) {
@@ -58,4 +71,93 @@ public class ImageMetadataResponse {
     public String getOriginalFileName() {
         return originalFileName;
     }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(int queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    public long getQueueWaitMs() {
+        return queueWaitMs;
+    }
+
+    public void setQueueWaitMs(long queueWaitMs) {
+        this.queueWaitMs = queueWaitMs;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public boolean isPreviewAvailable() {
+        return previewAvailable;
+    }
+
+    public void setPreviewAvailable(boolean previewAvailable) {
+        this.previewAvailable = previewAvailable;
+    }
+
+    /**
+     * AUTO when the server chose {@link #getModel()} itself, otherwise the same as the model.
+     */
+    public UpscalingMethod getRequestedModel() {
+        return requestedModel;
+    }
+
+    public void setRequestedModel(UpscalingMethod requestedModel) {
+        this.requestedModel = requestedModel;
+    }
+
+    public Long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    public void setMaxLatencyMs(Long maxLatencyMs) {
+        this.maxLatencyMs = maxLatencyMs;
+    }
+
+    /**
+     * True once the retention policy or the disk quota has deleted the files of the image.
+     */
+    public boolean isExpired() {
+        return expired;
+    }
+
+    public void setExpired(boolean expired) {
+        this.expired = expired;
+    }
+
+    /**
+     * Stages the image is upscaled in, e.g. {@code ["ESPCN x4", "BICUBIC x2"]} for ESPCN x8.
+     */
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    public void setPlan(List<String> plan) {
+        this.plan = plan;
+    }
 }
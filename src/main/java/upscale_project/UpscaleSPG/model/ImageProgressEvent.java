@@ -0,0 +1,46 @@
+package upscale_project.UpscaleSPG.model;
+
+public class ImageProgressEvent {
+    private final Long imageId;
+    private final ImageStatus status;
+    private final int progressPercent;
+    private final int queuePosition;
+    private final int queueDepth;
+    private boolean previewAvailable;
+
+    public ImageProgressEvent(Long imageId, ImageStatus status, int progressPercent, int queuePosition, int queueDepth) {
+        this.imageId = imageId;
+        this.status = status;
+        this.progressPercent = progressPercent;
+        this.queuePosition = queuePosition;
+        this.queueDepth = queueDepth;
+    }
+
+    public Long getImageId() {
+        return imageId;
+    }
+
+    public ImageStatus getStatus() {
+        return status;
+    }
+
+    public int getProgressPercent() {
+        return progressPercent;
+    }
+
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public boolean isPreviewAvailable() {
+        return previewAvailable;
+    }
+
+    public void setPreviewAvailable(boolean previewAvailable) {
+        this.previewAvailable = previewAvailable;
+    }
+}
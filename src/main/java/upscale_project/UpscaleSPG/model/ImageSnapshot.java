@@ -0,0 +1,28 @@
+package upscale_project.UpscaleSPG.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable copy of the fields of an {@link Image} that status, preview and result requests read.
+ */
+public record ImageSnapshot(long id, long version, ImageStatus status, String originalFileName, String originalFilePath,
+                            String processedFilePath, UpscalingMethod modelUsed, int scaleFactor,
+                            String originalResolution, String upscaledResolution, Long originalFileSize,
+                            Long upscaledFileSize, LocalDateTime uploadTime, LocalDateTime processStartTime,
+                            int attempts, String lastError, Long coalescedWith, UpscalingMethod requestedModel,
+                            Long maxLatencyMs, LocalDateTime expiredAt, String contentHash) {
+
+    public static ImageSnapshot of(Image image) {
+        return new ImageSnapshot(image.getId(), image.getVersion() != null ? image.getVersion() : 0,
+                image.getStatus(), image.getOriginalFileName(), image.getOriginalFilePath(),
+                image.getProcessedFilePath(), image.getModelUsed(), image.getScaleFactor(),
+                image.getOriginalResolution(), image.getUpscaledResolution(), image.getOriginalFileSize(),
+                image.getUpscaledFileSize(), image.getUploadTime(), image.getProcessStartTime(),
+                image.getAttempts(), image.getLastError(), image.getCoalescedWith(), image.getRequestedModel(),
+                image.getMaxLatencyMs(), image.getExpiredAt(), image.getContentHash());
+    }
+
+    public boolean isFinished() {
+        return status.isFinished();
+    }
+}
@@ -1,8 +1,23 @@
 package upscale_project.UpscaleSPG.model;
 
+import java.util.List;
+
 public enum ImageStatus {
     UPLOADED,
     PROCESSING,
     PROCESSED,
-    ERROR
+    ERROR,
+    // Cancelled by the client, see DELETE /api/v1/images/{id}.
+    CANCELLED,
+    // Stopped after running longer than app.jobs.deadline.<method>.
+    TIMED_OUT;
+
+    public static final List<ImageStatus> FINISHED = List.of(PROCESSED, ERROR, CANCELLED, TIMED_OUT);
+
+    /**
+     * Whether no job will change the image any more.
+     */
+    public boolean isFinished() {
+        return this != UPLOADED && this != PROCESSING;
+    }
 }
@@ -0,0 +1,68 @@
+package upscale_project.UpscaleSPG.model;
+
+/**
+ * Formats a processed result can be downloaded in. Declaration order is also the preference between formats a
+ * client accepts equally: cheaper encoders first.
+ */
+public enum OutputFormat {
+    PNG("png", "image/png", 0),
+    JPEG("jpg", "image/jpeg", 90),
+    WEBP("webp", "image/webp", 85),
+    AVIF("avif", "image/avif", 60);
+
+    private final String extension;
+    private final String mediaType;
+    private final int defaultQuality;
+
+    OutputFormat(String extension, String mediaType, int defaultQuality) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+        this.defaultQuality = defaultQuality;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public int getDefaultQuality() {
+        return defaultQuality;
+    }
+
+    public boolean isLossy() {
+        return this != PNG;
+    }
+
+    /**
+     * Returns the format for a name such as {@code webp} or {@code jpg}, or null if it is not one of ours.
+     */
+    public static OutputFormat fromName(String name) {
+        String lowerCaseName = name.toLowerCase();
+        if (lowerCaseName.equals("jpeg")) {
+            return JPEG;
+        }
+        for (OutputFormat format : values()) {
+            if (format.extension.equals(lowerCaseName) || format.name().equalsIgnoreCase(lowerCaseName)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public static OutputFormat fromFileName(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex >= 0 ? fromName(fileName.substring(dotIndex + 1)) : null;
+    }
+
+    public static OutputFormat fromMediaType(String mediaType) {
+        for (OutputFormat format : values()) {
+            if (format.mediaType.equalsIgnoreCase(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
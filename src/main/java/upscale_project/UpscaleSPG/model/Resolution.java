@@ -0,0 +1,29 @@
+package upscale_project.UpscaleSPG.model;
+
+public record Resolution(int width, int height) {
+
+    public static Resolution parse(String resolution) {
+        if (resolution == null) {
+            return null;
+        }
+        int separator = resolution.indexOf('x');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return new Resolution(Integer.parseInt(resolution.substring(0, separator)),
+                    Integer.parseInt(resolution.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long pixels() {
+        return (long) width * height;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height;
+    }
+}
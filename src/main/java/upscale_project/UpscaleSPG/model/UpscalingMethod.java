@@ -1,9 +1,21 @@
 package upscale_project.UpscaleSPG.model;
 
 public enum UpscalingMethod {
-    BILINEAR,
-    BICUBIC,
-    ESPCN,
-    EDSR,
-    SRGAN
+    BILINEAR(1),
+    BICUBIC(2),
+    ESPCN(4),
+    EDSR(60),
+    SRGAN(40),
+    // Resolved to one of the methods above when the image is uploaded, see AutoMethodSelector. Never stored or queued.
+    AUTO(0);
+
+    private final int costWeight;
+
+    UpscalingMethod(int costWeight) {
+        this.costWeight = costWeight;
+    }
+
+    public int getCostWeight() {
+        return costWeight;
+    }
 }
@@ -0,0 +1,100 @@
+package upscale_project.UpscaleSPG.processing;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Decoding of originals and encoding of results in the JVM, shared by the in-JVM engines and the shared-memory
+ * transfer to the Python workers, so a result is written the same way whichever engine produced it.
+ */
+public final class ImageCodec {
+
+    /**
+     * JPEG quality of {@code cv2.imwrite}, so results do not change when the encode moves out of the worker.
+     */
+    private static final float JPEG_QUALITY = 0.95f;
+
+    private ImageCodec() {
+    }
+
+    /**
+     * Decodes an image file into a {@link BufferedImage#TYPE_3BYTE_BGR} raster, or returns {@code null} if no
+     * ImageIO reader recognises it.
+     */
+    public static BufferedImage readBgr(Path input) throws IOException {
+        BufferedImage image = ImageIO.read(input.toFile());
+        return image != null ? toBgr(image) : null;
+    }
+
+    /**
+     * Returns a writer for the extension of {@code output}, or {@code null} if ImageIO has none. The writer is
+     * disposed by {@link #write(ImageWriter, BufferedImage, Path)}.
+     */
+    public static ImageWriter findWriter(Path output) {
+        String fileName = output.getFileName().toString();
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(fileName.substring(fileName.lastIndexOf('.') + 1));
+        return writers.hasNext() ? writers.next() : null;
+    }
+
+    public static boolean canWrite(Path output) {
+        ImageWriter writer = findWriter(output);
+        if (writer == null) {
+            return false;
+        }
+        writer.dispose();
+        return true;
+    }
+
+    public static void write(ImageWriter writer, BufferedImage image, Path output) throws IOException {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed() && isJpeg(writer)) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+        }
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output.toFile())) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static boolean isJpeg(ImageWriter writer) {
+        return Arrays.stream(writer.getOriginatingProvider().getFormatNames()).anyMatch("jpeg"::equalsIgnoreCase);
+    }
+
+    /**
+     * Converts to interleaved BGR. Alpha is dropped rather than blended over black, as {@code cv2.imread} does.
+     */
+    static BufferedImage toBgr(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        int width = image.getWidth();
+        BufferedImage bgr = new BufferedImage(width, image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        if (image.getColorModel().hasAlpha()) {
+            int[] row = new int[width];
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                bgr.setRGB(0, y, width, 1, row, 0, width);
+            }
+            return bgr;
+        }
+        Graphics2D g = bgr.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return bgr;
+    }
+}
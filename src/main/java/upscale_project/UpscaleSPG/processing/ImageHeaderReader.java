@@ -0,0 +1,133 @@
+package upscale_project.UpscaleSPG.processing;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Reads image dimensions from the file header through {@link ImageReader#getWidth(int)} /
+ * {@link ImageReader#getHeight(int)} without decoding pixel data, so the cost does not grow with the image size.
+ */
+public final class ImageHeaderReader {
+
+    private ImageHeaderReader() {
+    }
+
+    /**
+     * Returns the resolution of the first image in the file, or {@code null} if no ImageIO reader recognises it.
+     */
+    public static Resolution readResolution(Path file) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file.toFile())) {
+            return stream != null ? readResolution(stream) : null;
+        }
+    }
+
+    /**
+     * Same as {@link #readResolution(Path)} for an image that has not been stored yet. Reads only as far into
+     * {@code input} as the header goes, buffering in memory rather than in ImageIO's temporary files, and does
+     * not close it.
+     */
+    public static Resolution readResolution(InputStream input) throws IOException {
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(input)) {
+            return readResolution(stream);
+        }
+    }
+
+    /**
+     * Same as {@link #readResolution(InputStream)}, reading at most {@code maxBytes} of {@code input}. Throws
+     * {@link EOFException} when the header does not end within them, as in TIFFs whose directory is at the end
+     * of the file.
+     */
+    public static Resolution readResolution(InputStream input, int maxBytes) throws IOException {
+        BoundedInputStream bounded = new BoundedInputStream(input, maxBytes);
+        try {
+            return readResolution(bounded);
+        } catch (IOException e) {
+            if (bounded.remaining == 0) {
+                throw new EOFException("Image header does not end within the first " + maxBytes + " bytes.");
+            }
+            throw e;
+        }
+    }
+
+    private static Resolution readResolution(ImageInputStream stream) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(stream, true, true);
+            return new Resolution(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Ends the stream after {@code remaining} bytes, without closing the underlying one.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(InputStream input, long limit) {
+            super(input);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
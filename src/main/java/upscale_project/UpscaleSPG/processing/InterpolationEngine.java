@@ -0,0 +1,432 @@
+package upscale_project.UpscaleSPG.processing;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * In-JVM replacement for {@code cv2.resize} with {@code INTER_LINEAR} and {@code INTER_CUBIC}, and with
+ * {@code INTER_AREA} for shrinking.
+ * <p>
+ * Works on the interleaved BGR bytes of a {@link BufferedImage#TYPE_3BYTE_BGR} raster and reproduces
+ * OpenCV's 8-bit fixed-point pipeline (half-pixel centers, replicated borders, 11-bit coefficients,
+ * cubic kernel with A = -0.75). Output differs from OpenCV 4.x by at most {@value #BILINEAR_TOLERANCE}
+ * per channel for bilinear, {@value #BICUBIC_TOLERANCE} for bicubic and {@value #AREA_TOLERANCE} for area.
+ */
+@Component
+public class InterpolationEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterpolationEngine.class);
+
+    public static final int BILINEAR_TOLERANCE = 1;
+    public static final int BICUBIC_TOLERANCE = 1;
+    public static final int AREA_TOLERANCE = 1;
+
+    private static final int COEF_BITS = 11;
+    private static final int COEF_SCALE = 1 << COEF_BITS;
+    private static final float CUBIC_A = -0.75f;
+
+    private final ForkJoinPool pool;
+    private final int bandRows;
+
+    public InterpolationEngine(@Value("${app.interpolation.parallelism}") int parallelism,
+                               @Value("${app.interpolation.band-rows}") int bandRows) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.bandRows = bandRows;
+    }
+
+    public static boolean supports(UpscalingMethod method) {
+        return method == UpscalingMethod.BILINEAR || method == UpscalingMethod.BICUBIC;
+    }
+
+    public BufferedImage resize(BufferedImage source, int scale, UpscalingMethod method) {
+        return resize(source, scale, 1, method);
+    }
+
+    /**
+     * Resizes by {@code scale / divisor}, for example 3 / 4 to bring a 4x result down to 3x. Output sides are
+     * rounded down. Shrinking averages the covered source pixels like {@code INTER_AREA} whatever the method,
+     * as the workers do when the stages of a plan overshoot its scale.
+     */
+    public BufferedImage resize(BufferedImage source, int scale, int divisor, UpscalingMethod method) {
+        if (!supports(method)) {
+            throw new IllegalArgumentException("Interpolation engine does not support method " + method);
+        }
+
+        BufferedImage src = ImageCodec.toBgr(source);
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int dstWidth = (int) ((long) srcWidth * scale / divisor);
+        int dstHeight = (int) ((long) srcHeight * scale / divisor);
+
+        BufferedImage dst = new BufferedImage(dstWidth, dstHeight, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] srcPixels = ((DataBufferByte) src.getRaster().getDataBuffer()).getData();
+        byte[] dstPixels = ((DataBufferByte) dst.getRaster().getDataBuffer()).getData();
+
+        long start = System.nanoTime();
+        if (scale < divisor) {
+            pool.invoke(new AreaBandTask(srcPixels, srcWidth, dstPixels, dstWidth, AreaTaps.compute(srcWidth, dstWidth),
+                    AreaTaps.compute(srcHeight, dstHeight), 0, dstHeight));
+            logger.debug("Shrunk {}x{} -> {}x{} by area in {} ms.", srcWidth, srcHeight, dstWidth, dstHeight,
+                    (System.nanoTime() - start) / 1_000_000);
+            return dst;
+        }
+
+        Kernel kernel = method == UpscalingMethod.BILINEAR ? Kernel.LINEAR : Kernel.CUBIC;
+        Taps xTaps = Taps.compute(kernel, srcWidth, dstWidth);
+        Taps yTaps = Taps.compute(kernel, srcHeight, dstHeight);
+
+        pool.invoke(new BandTask(kernel, srcPixels, srcWidth, srcHeight, dstPixels, dstWidth,
+                xTaps, yTaps, 0, dstHeight));
+        logger.debug("Resized {}x{} -> {}x{} with {} in {} ms.", srcWidth, srcHeight, dstWidth, dstHeight,
+                method, (System.nanoTime() - start) / 1_000_000);
+        return dst;
+    }
+
+    /**
+     * Runs {@link #resize} on the engine's pool, so the caller can do other work meanwhile.
+     */
+    public CompletableFuture<BufferedImage> resizeAsync(BufferedImage source, int scale, UpscalingMethod method) {
+        return CompletableFuture.supplyAsync(() -> resize(source, scale, method), pool);
+    }
+
+    /**
+     * Resizes an image file into another file, adding decode, resize and encode times to {@code timings}.
+     * Returns {@code false} when ImageIO cannot read the input or has no writer for the output extension,
+     * so the caller can fall back to OpenCV.
+     */
+    public boolean resizeFile(Path input, Path output, int scale, UpscalingMethod method, StageTimings timings)
+            throws IOException {
+        return resizeFile(input, output, scale, 1, method, timings);
+    }
+
+    /**
+     * Like {@link #resizeFile(Path, Path, int, UpscalingMethod, StageTimings)}, by {@code scale / divisor}.
+     */
+    public boolean resizeFile(Path input, Path output, int scale, int divisor, UpscalingMethod method,
+                              StageTimings timings) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage source = ImageCodec.readBgr(input);
+        timings.add(StageTimings.DECODE, System.nanoTime() - start);
+        if (source == null) {
+            return false;
+        }
+
+        ImageWriter writer = ImageCodec.findWriter(output);
+        if (writer == null) {
+            return false;
+        }
+
+        start = System.nanoTime();
+        BufferedImage result = resize(source, scale, divisor, method);
+        timings.add(StageTimings.INFERENCE, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        ImageCodec.write(writer, result, output);
+        timings.add(StageTimings.ENCODE, System.nanoTime() - start);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private enum Kernel {
+        LINEAR(2),
+        CUBIC(4);
+
+        final int size;
+
+        Kernel(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * Source index and fixed-point weights of every kernel tap for one axis, indices already clamped.
+     */
+    private record Taps(int size, int[] index, short[] weight) {
+
+        static Taps compute(Kernel kernel, int srcLength, int dstLength) {
+            int size = kernel.size;
+            int[] index = new int[dstLength * size];
+            short[] weight = new short[dstLength * size];
+            double inverseScale = (double) srcLength / dstLength;
+            float[] coefficients = new float[size];
+
+            for (int d = 0; d < dstLength; d++) {
+                float f = (float) ((d + 0.5) * inverseScale - 0.5);
+                int s = (int) Math.floor(f);
+                f -= s;
+
+                if (kernel == Kernel.LINEAR) {
+                    if (s < 0) {
+                        f = 0;
+                        s = 0;
+                    }
+                    if (s >= srcLength - 1) {
+                        f = 0;
+                        s = srcLength - 1;
+                    }
+                    coefficients[0] = 1.f - f;
+                    coefficients[1] = f;
+                } else {
+                    cubicCoefficients(f, coefficients);
+                }
+
+                for (int k = 0; k < size; k++) {
+                    int tap = s + k - (size / 2 - 1);
+                    index[d * size + k] = Math.min(Math.max(tap, 0), srcLength - 1);
+                    weight[d * size + k] = (short) Math.rint(coefficients[k] * COEF_SCALE);
+                }
+            }
+            return new Taps(size, index, weight);
+        }
+
+        private static void cubicCoefficients(float x, float[] coefficients) {
+            coefficients[0] = ((CUBIC_A * (x + 1) - 5 * CUBIC_A) * (x + 1) + 8 * CUBIC_A) * (x + 1) - 4 * CUBIC_A;
+            coefficients[1] = ((CUBIC_A + 2) * x - (CUBIC_A + 3)) * x * x + 1;
+            coefficients[2] = ((CUBIC_A + 2) * (1 - x) - (CUBIC_A + 3)) * (1 - x) * (1 - x) + 1;
+            coefficients[3] = 1.f - coefficients[0] - coefficients[1] - coefficients[2];
+        }
+    }
+
+    /**
+     * Source pixels each output pixel of one axis covers and the share of it they cover, as computed by
+     * OpenCV's {@code computeResizeAreaTab}. The taps of output {@code d} are {@code from[d]} to
+     * {@code from[d + 1]} exclusive.
+     */
+    private record AreaTaps(int[] from, int[] index, float[] weight) {
+
+        static AreaTaps compute(int srcLength, int dstLength) {
+            double cell = 1. / ((double) dstLength / srcLength);
+            int maxTaps = (int) Math.ceil(cell) + 1;
+            int[] from = new int[dstLength + 1];
+            int[] index = new int[dstLength * maxTaps];
+            float[] weight = new float[dstLength * maxTaps];
+            int k = 0;
+
+            for (int d = 0; d < dstLength; d++) {
+                from[d] = k;
+                double start = d * cell;
+                double end = start + cell;
+                double cellWidth = Math.min(cell, srcLength - start);
+                int first = (int) Math.ceil(start);
+                int last = Math.min((int) Math.floor(end), srcLength - 1);
+                first = Math.min(first, last);
+
+                if (first - start > 1e-3) {
+                    index[k] = first - 1;
+                    weight[k++] = (float) ((first - start) / cellWidth);
+                }
+                for (int s = first; s < last; s++) {
+                    index[k] = s;
+                    weight[k++] = (float) (1. / cellWidth);
+                }
+                if (end - last > 1e-3) {
+                    index[k] = last;
+                    weight[k++] = (float) (Math.min(Math.min(end - last, 1.), cellWidth) / cellWidth);
+                }
+            }
+            from[dstLength] = k;
+            return new AreaTaps(from, index, weight);
+        }
+    }
+
+    private final class AreaBandTask extends RecursiveAction {
+
+        private static final int CHANNELS = 3;
+
+        private final byte[] src;
+        private final int srcWidth;
+        private final byte[] dst;
+        private final int dstWidth;
+        private final AreaTaps xTaps;
+        private final AreaTaps yTaps;
+        private final int fromRow;
+        private final int toRow;
+
+        AreaBandTask(byte[] src, int srcWidth, byte[] dst, int dstWidth, AreaTaps xTaps, AreaTaps yTaps,
+                     int fromRow, int toRow) {
+            this.src = src;
+            this.srcWidth = srcWidth;
+            this.dst = dst;
+            this.dstWidth = dstWidth;
+            this.xTaps = xTaps;
+            this.yTaps = yTaps;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > bandRows) {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(
+                        new AreaBandTask(src, srcWidth, dst, dstWidth, xTaps, yTaps, fromRow, middle),
+                        new AreaBandTask(src, srcWidth, dst, dstWidth, xTaps, yTaps, middle, toRow)
+                );
+                return;
+            }
+            shrinkBand();
+        }
+
+        private void shrinkBand() {
+            int rowLength = dstWidth * CHANNELS;
+            float[] sum = new float[rowLength];
+            for (int dy = fromRow; dy < toRow; dy++) {
+                Arrays.fill(sum, 0f);
+                for (int k = yTaps.from()[dy]; k < yTaps.from()[dy + 1]; k++) {
+                    addRow(yTaps.index()[k], yTaps.weight()[k], sum);
+                }
+                int offset = dy * rowLength;
+                for (int x = 0; x < rowLength; x++) {
+                    dst[offset + x] = (byte) Math.min(Math.max((int) Math.rint(sum[x]), 0), 255);
+                }
+            }
+        }
+
+        private void addRow(int sy, float rowWeight, float[] sum) {
+            int rowOffset = sy * srcWidth * CHANNELS;
+            for (int dx = 0; dx < dstWidth; dx++) {
+                for (int c = 0; c < CHANNELS; c++) {
+                    float value = 0;
+                    for (int k = xTaps.from()[dx]; k < xTaps.from()[dx + 1]; k++) {
+                        value += (src[rowOffset + xTaps.index()[k] * CHANNELS + c] & 0xFF) * xTaps.weight()[k];
+                    }
+                    sum[dx * CHANNELS + c] += value * rowWeight;
+                }
+            }
+        }
+    }
+
+    private final class BandTask extends RecursiveAction {
+
+        private static final int CHANNELS = 3;
+
+        private final Kernel kernel;
+        private final byte[] src;
+        private final int srcWidth;
+        private final int srcHeight;
+        private final byte[] dst;
+        private final int dstWidth;
+        private final Taps xTaps;
+        private final Taps yTaps;
+        private final int fromRow;
+        private final int toRow;
+
+        BandTask(Kernel kernel, byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth,
+                 Taps xTaps, Taps yTaps, int fromRow, int toRow) {
+            this.kernel = kernel;
+            this.src = src;
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.dst = dst;
+            this.dstWidth = dstWidth;
+            this.xTaps = xTaps;
+            this.yTaps = yTaps;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > bandRows) {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(
+                        new BandTask(kernel, src, srcWidth, srcHeight, dst, dstWidth, xTaps, yTaps, fromRow, middle),
+                        new BandTask(kernel, src, srcWidth, srcHeight, dst, dstWidth, xTaps, yTaps, middle, toRow)
+                );
+                return;
+            }
+            resizeBand();
+        }
+
+        private void resizeBand() {
+            int taps = yTaps.size();
+            int firstSrcRow = yTaps.index()[fromRow * taps];
+            int lastSrcRow = yTaps.index()[(toRow - 1) * taps + taps - 1];
+            int rowLength = dstWidth * CHANNELS;
+
+            int[][] horizontal = new int[lastSrcRow - firstSrcRow + 1][];
+            for (int sy = firstSrcRow; sy <= lastSrcRow; sy++) {
+                horizontal[sy - firstSrcRow] = resizeRow(sy);
+            }
+
+            int[][] rows = new int[taps][];
+            for (int dy = fromRow; dy < toRow; dy++) {
+                for (int k = 0; k < taps; k++) {
+                    rows[k] = horizontal[yTaps.index()[dy * taps + k] - firstSrcRow];
+                }
+                int offset = dy * rowLength;
+                if (kernel == Kernel.LINEAR) {
+                    verticalLinear(rows, yTaps.weight()[dy * taps], yTaps.weight()[dy * taps + 1], offset, rowLength);
+                } else {
+                    verticalCubic(rows, dy * taps, offset, rowLength);
+                }
+            }
+        }
+
+        private int[] resizeRow(int sy) {
+            int taps = xTaps.size();
+            int[] index = xTaps.index();
+            short[] weight = xTaps.weight();
+            int[] row = new int[dstWidth * CHANNELS];
+            int rowOffset = sy * srcWidth * CHANNELS;
+
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int tapBase = dx * taps;
+                for (int c = 0; c < CHANNELS; c++) {
+                    int sum = 0;
+                    for (int k = 0; k < taps; k++) {
+                        sum += (src[rowOffset + index[tapBase + k] * CHANNELS + c] & 0xFF) * weight[tapBase + k];
+                    }
+                    row[dx * CHANNELS + c] = sum;
+                }
+            }
+            return row;
+        }
+
+        private void verticalLinear(int[][] rows, short b0, short b1, int offset, int length) {
+            int[] s0 = rows[0];
+            int[] s1 = rows[1];
+            for (int x = 0; x < length; x++) {
+                int value = (((b0 * (s0[x] >> 4)) >> 16) + ((b1 * (s1[x] >> 4)) >> 16) + 2) >> 2;
+                dst[offset + x] = (byte) clamp(value);
+            }
+        }
+
+        private void verticalCubic(int[][] rows, int tapBase, int offset, int length) {
+            short[] weight = yTaps.weight();
+            long b0 = weight[tapBase];
+            long b1 = weight[tapBase + 1];
+            long b2 = weight[tapBase + 2];
+            long b3 = weight[tapBase + 3];
+            int shift = COEF_BITS * 2;
+            long delta = 1L << (shift - 1);
+            for (int x = 0; x < length; x++) {
+                long sum = rows[0][x] * b0 + rows[1][x] * b1 + rows[2][x] * b2 + rows[3][x] * b3;
+                dst[offset + x] = (byte) clamp((int) ((sum + delta) >> shift));
+            }
+        }
+
+        private static int clamp(int value) {
+            return value < 0 ? 0 : Math.min(value, 255);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package upscale_project.UpscaleSPG.processing;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Luma of interleaved BGR rasters for ESPCN, which upscales only the Y channel. Y uses OpenCV's 14-bit fixed-point
+ * {@code BGR2YCrCb} coefficients, so {@link #extract} returns exactly what {@code cv2.cvtColor} gives for 8-bit
+ * input. {@link #replace} puts the upscaled Y into the bicubic upscale of the image: with Cr and Cb unchanged, all
+ * three channels move by the same amount as Y, so the chroma never has to be converted and upscaled on its own.
+ * <p>
+ * Both loops run on the JDK Vector API ({@link LumaVectors}) when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, and on the scalar code here otherwise.
+ */
+public final class LumaPlane {
+
+    static final int SHIFT = 14;
+    static final int HALF = 1 << (SHIFT - 1);
+    static final int R_TO_Y = 4899;
+    static final int G_TO_Y = 9617;
+    static final int B_TO_Y = 1868;
+
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    static {
+        LoggerFactory.getLogger(LumaPlane.class).info("Luma conversion uses {}.",
+                VECTORIZED ? "the Vector API" : "scalar code (start with --add-modules jdk.incubator.vector to vectorize)");
+    }
+
+    private LumaPlane() {
+    }
+
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Returns the Y plane of a {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR} raster, one byte per pixel.
+     */
+    public static byte[] extract(byte[] bgr) {
+        byte[] luma = new byte[bgr.length / 3];
+        int done = VECTORIZED ? LumaVectors.extract(bgr, luma) : 0;
+        extract(bgr, luma, done);
+        return luma;
+    }
+
+    /**
+     * Replaces the luma of every pixel of {@code bgr} with {@code luma}, keeping its chroma.
+     */
+    public static void replace(byte[] bgr, byte[] luma) {
+        if (luma.length * 3 != bgr.length) {
+            throw new IllegalArgumentException("Luma plane of " + luma.length + " pixels does not match "
+                    + bgr.length / 3 + " BGR pixels");
+        }
+        int done = VECTORIZED ? LumaVectors.replace(bgr, luma) : 0;
+        replace(bgr, luma, done);
+    }
+
+    static void extract(byte[] bgr, byte[] luma, int from) {
+        for (int i = from, p = from * 3; i < luma.length; i++, p += 3) {
+            luma[i] = (byte) (((bgr[p + 2] & 0xFF) * R_TO_Y + (bgr[p + 1] & 0xFF) * G_TO_Y
+                    + (bgr[p] & 0xFF) * B_TO_Y + HALF) >> SHIFT);
+        }
+    }
+
+    static void replace(byte[] bgr, byte[] luma, int from) {
+        for (int i = from, p = from * 3; i < luma.length; i++, p += 3) {
+            int b = bgr[p] & 0xFF;
+            int g = bgr[p + 1] & 0xFF;
+            int r = bgr[p + 2] & 0xFF;
+            int delta = ((luma[i] & 0xFF) << SHIFT) - (r * R_TO_Y + g * G_TO_Y + b * B_TO_Y) + HALF;
+            bgr[p] = toByte(((b << SHIFT) + delta) >> SHIFT);
+            bgr[p + 1] = toByte(((g << SHIFT) + delta) >> SHIFT);
+            bgr[p + 2] = toByte(((r << SHIFT) + delta) >> SHIFT);
+        }
+    }
+
+    private static byte toByte(int value) {
+        return (byte) Math.max(0, Math.min(255, value));
+    }
+}
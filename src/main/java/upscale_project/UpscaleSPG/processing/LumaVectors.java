@@ -0,0 +1,88 @@
+package upscale_project.UpscaleSPG.processing;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import static upscale_project.UpscaleSPG.processing.LumaPlane.B_TO_Y;
+import static upscale_project.UpscaleSPG.processing.LumaPlane.G_TO_Y;
+import static upscale_project.UpscaleSPG.processing.LumaPlane.HALF;
+import static upscale_project.UpscaleSPG.processing.LumaPlane.R_TO_Y;
+import static upscale_project.UpscaleSPG.processing.LumaPlane.SHIFT;
+
+/**
+ * Vector API kernels of {@link LumaPlane}, eight pixels per step. A step loads 32 bytes, moves the 24 bytes of its
+ * pixels into one int lane each ({@code B | G << 8 | R << 16}, one byte shuffle) and takes the channels apart with
+ * shifts, so the arithmetic is the same fixed-point code as the scalar loop in int lanes. Results go back through
+ * the inverse shuffle and a masked store of the step's 24 bytes: a full 32-byte store would overlap the next load
+ * and stall store forwarding. Only loaded when {@code jdk.incubator.vector} is in the boot layer. Each method
+ * returns the number of pixels it processed; the caller finishes the remainder with the scalar loop.
+ */
+final class LumaVectors {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_256;
+    private static final VectorSpecies<Byte> LUMA_BYTES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    private static final int PIXELS = INTS.length();
+    private static final int CHANNELS = 3;
+
+    private static final VectorShuffle<Byte> TO_PIXELS = VectorShuffle.fromOp(BYTES,
+            lane -> lane % 4 < CHANNELS ? lane / 4 * CHANNELS + lane % 4 : 0);
+    private static final VectorShuffle<Byte> FROM_PIXELS = VectorShuffle.fromOp(BYTES,
+            lane -> lane < PIXELS * CHANNELS ? lane / CHANNELS * 4 + lane % CHANNELS : 0);
+    private static final VectorMask<Byte> STEP = VectorMask.fromLong(BYTES, (1L << PIXELS * CHANNELS) - 1);
+
+    private LumaVectors() {
+    }
+
+    static int extract(byte[] bgr, byte[] luma) {
+        int bound = steps(bgr.length) * PIXELS;
+        for (int i = 0; i < bound; i += PIXELS) {
+            IntVector pixels = ByteVector.fromArray(BYTES, bgr, i * CHANNELS).rearrange(TO_PIXELS).reinterpretAsInts();
+            IntVector b = pixels.and(0xFF);
+            IntVector g = pixels.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+            IntVector r = pixels.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+            IntVector y = r.mul(R_TO_Y).add(g.mul(G_TO_Y)).add(b.mul(B_TO_Y)).add(HALF)
+                    .lanewise(VectorOperators.ASHR, SHIFT);
+            ((ByteVector) y.convertShape(VectorOperators.I2B, LUMA_BYTES, 0)).intoArray(luma, i);
+        }
+        return bound;
+    }
+
+    // Written out without helper methods: a vector passed to a call that is not inlined gets boxed.
+    static int replace(byte[] bgr, byte[] luma) {
+        int bound = steps(bgr.length) * PIXELS;
+        for (int i = 0; i < bound; i += PIXELS) {
+            int offset = i * CHANNELS;
+            IntVector pixels = ByteVector.fromArray(BYTES, bgr, offset).rearrange(TO_PIXELS).reinterpretAsInts();
+            IntVector b = pixels.and(0xFF);
+            IntVector g = pixels.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+            IntVector r = pixels.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+            IntVector y = ((IntVector) ByteVector.fromArray(LUMA_BYTES, luma, i)
+                    .convertShape(VectorOperators.B2I, INTS, 0))
+                    .and(0xFF);
+            IntVector delta = y.lanewise(VectorOperators.LSHL, SHIFT)
+                    .sub(r.mul(R_TO_Y).add(g.mul(G_TO_Y)).add(b.mul(B_TO_Y)))
+                    .add(HALF);
+            b = b.lanewise(VectorOperators.LSHL, SHIFT).add(delta).lanewise(VectorOperators.ASHR, SHIFT).max(0).min(255);
+            g = g.lanewise(VectorOperators.LSHL, SHIFT).add(delta).lanewise(VectorOperators.ASHR, SHIFT).max(0).min(255);
+            r = r.lanewise(VectorOperators.LSHL, SHIFT).add(delta).lanewise(VectorOperators.ASHR, SHIFT).max(0).min(255);
+            b.or(g.lanewise(VectorOperators.LSHL, 8))
+                    .or(r.lanewise(VectorOperators.LSHL, 16))
+                    .reinterpretAsBytes()
+                    .rearrange(FROM_PIXELS)
+                    .intoArray(bgr, offset, STEP);
+        }
+        return bound;
+    }
+
+    /**
+     * Number of whole steps whose 32-byte load stays inside an array of {@code length} bytes.
+     */
+    private static int steps(int length) {
+        return length < BYTES.length() ? 0 : (length - BYTES.length()) / (PIXELS * CHANNELS) + 1;
+    }
+}
@@ -0,0 +1,320 @@
+package upscale_project.UpscaleSPG.processing;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.exception.ImageProcessingException;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * In-JVM inference of ESPCN, EDSR and SRGAN with ONNX Runtime on the CPU, used instead of the Python workers when
+ * {@code app.inference.backend=onnx} and the exported model {@code <app.onnx.models-path>/<MODEL>_<scale>x.onnx}
+ * exists (see {@code app/scripts/export_onnx.py}). One session per (model, scale) is created on first use and
+ * shared by all jobs. Pixels go from the decoded raster into direct float buffers that back the input and output
+ * tensors, tile by tile with {@code app.tiling.pad} pixels of overlap, so memory stays bounded for large images.
+ * <p>
+ * ESPCN only upscales luma. Its output replaces the luma of the bicubic upscale: with Cr and Cb fixed every RGB
+ * channel moves by the same amount as Y, which matches the Python pipeline that resizes Cr/Cb bicubically.
+ */
+@Component
+public class OnnxInferenceEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnnxInferenceEngine.class);
+
+    public static final String BACKEND = "onnx";
+
+    private static final int WARMUP_IMAGE_SIZE = 64;
+
+    private final InterpolationEngine interpolationEngine;
+    private final boolean enabled;
+    private final Path modelsPath;
+    private final int intraOpThreads;
+    private final int defaultTileSize;
+    private final int tilePad;
+    private final Map<String, OrtSession> sessions = new ConcurrentHashMap<>();
+    private OrtEnvironment environment;
+
+    @Autowired
+    public OnnxInferenceEngine(InterpolationEngine interpolationEngine,
+                               @Value("${app.inference.backend}") String backend,
+                               @Value("${app.onnx.models-path}") String modelsPath,
+                               @Value("${app.onnx.intra-op-threads}") int intraOpThreads,
+                               @Value("${app.onnx.tile-size}") int defaultTileSize,
+                               @Value("${app.tiling.pad}") int tilePad) {
+        this.interpolationEngine = interpolationEngine;
+        this.enabled = BACKEND.equalsIgnoreCase(backend);
+        this.modelsPath = Paths.get(modelsPath);
+        this.intraOpThreads = intraOpThreads;
+        this.defaultTileSize = defaultTileSize;
+        this.tilePad = tilePad;
+    }
+
+    /**
+     * Whether jobs of the method and scale run here: the ONNX backend is selected and the model was exported.
+     */
+    public boolean supports(UpscalingMethod method, int scale) {
+        return enabled && ModelSpec.of(method) != null && Files.isRegularFile(getModelPath(method, scale));
+    }
+
+    /**
+     * Upscales an image file into another file, adding model load, decode, inference and encode times to
+     * {@code timings}. {@code tileSize} is the tile side chosen by the tiling policy, 0 for the default.
+     * Returns {@code false} when ImageIO cannot read the input or has no writer for the output extension,
+     * so the caller can fall back to the Python workers.
+     */
+    public boolean upscaleFile(Path input, Path output, UpscalingMethod method, int scale, int tileSize,
+                               StageTimings timings, IntConsumer progressPercent) throws IOException {
+        ImageWriter writer = ImageCodec.findWriter(output);
+        if (writer == null) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        BufferedImage source = ImageCodec.readBgr(input);
+        timings.add(StageTimings.DECODE, System.nanoTime() - start);
+        if (source == null) {
+            writer.dispose();
+            return false;
+        }
+
+        OrtSession session = getSession(method, scale, timings);
+        start = System.nanoTime();
+        BufferedImage result = upscale(session, source, method, scale, tileSize, progressPercent);
+        timings.add(StageTimings.INFERENCE, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        ImageCodec.write(writer, result, output);
+        timings.add(StageTimings.ENCODE, System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Creates the session of the model and runs a small sample through it, so the first job does not pay for it.
+     */
+    public void warmUp(UpscalingMethod method, int scale) {
+        long start = System.nanoTime();
+        BufferedImage sample = new BufferedImage(WARMUP_IMAGE_SIZE, WARMUP_IMAGE_SIZE, BufferedImage.TYPE_3BYTE_BGR);
+        upscale(getSession(method, scale, new StageTimings()), sample, method, scale, 0, percent -> {
+        });
+        logger.info("Warmed up ONNX {} x{} in {} ms.", method, scale, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (OrtSession session : sessions.values()) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                logger.warn("Could not close ONNX session: {}", e.getMessage());
+            }
+        }
+        sessions.clear();
+    }
+
+    private OrtSession getSession(UpscalingMethod method, int scale, StageTimings timings) {
+        return sessions.computeIfAbsent(method + "_" + scale, key -> {
+            long start = System.nanoTime();
+            Path modelPath = getModelPath(method, scale);
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                if (intraOpThreads > 0) {
+                    options.setIntraOpNumThreads(intraOpThreads);
+                }
+                OrtSession session = getEnvironment().createSession(modelPath.toString(), options);
+                timings.add(StageTimings.MODEL_LOAD, System.nanoTime() - start);
+                logger.info("Loaded ONNX model {} in {} ms.", modelPath, (System.nanoTime() - start) / 1_000_000);
+                return session;
+            } catch (OrtException e) {
+                throw new ImageProcessingException("Failed to load ONNX model " + modelPath + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private synchronized OrtEnvironment getEnvironment() {
+        if (environment == null) {
+            environment = OrtEnvironment.getEnvironment();
+        }
+        return environment;
+    }
+
+    private Path getModelPath(UpscalingMethod method, int scale) {
+        return modelsPath.resolve(method + "_" + scale + "x.onnx");
+    }
+
+    private BufferedImage upscale(OrtSession session, BufferedImage source, UpscalingMethod method, int scale,
+                                  int tileSize, IntConsumer progressPercent) {
+        ModelSpec spec = ModelSpec.of(method);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int tile = tileSize > 0 ? tileSize : defaultTileSize;
+        int pad = Math.min(tilePad, tile);
+
+        // ESPCN corrects the luma of the bicubic upscale in place; RGB models fill an empty image.
+        BufferedImage result = spec.channels() == 1
+                ? interpolationEngine.resize(source, scale, UpscalingMethod.BICUBIC)
+                : new BufferedImage(width * scale, height * scale, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] src = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+        byte[] dst = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+
+        int maxTileWidth = Math.min(width, tile + 2 * pad);
+        int maxTileHeight = Math.min(height, tile + 2 * pad);
+        FloatBuffer input = allocate(spec.channels() * maxTileWidth * maxTileHeight);
+        FloatBuffer output = allocate(spec.channels() * maxTileWidth * maxTileHeight * scale * scale);
+        String inputName = session.getInputNames().iterator().next();
+        String outputName = session.getOutputNames().iterator().next();
+
+        int tilesX = (width + tile - 1) / tile;
+        int tilesY = (height + tile - 1) / tile;
+        int done = 0;
+        for (int y0 = 0; y0 < height; y0 += tile) {
+            for (int x0 = 0; x0 < width; x0 += tile) {
+                Tile t = new Tile(x0, y0, Math.min(x0 + tile, width), Math.min(y0 + tile, height), pad, width, height);
+                FloatBuffer in = input.slice(0, spec.channels() * t.paddedWidth() * t.paddedHeight());
+                FloatBuffer out = output.slice(0, in.capacity() * scale * scale);
+                fillInput(spec, src, width, t, in);
+                run(session, inputName, in, new long[]{1, spec.channels(), t.paddedHeight(), t.paddedWidth()},
+                        outputName, out, new long[]{1, spec.channels(), (long) t.paddedHeight() * scale, (long) t.paddedWidth() * scale});
+                writeOutput(spec, out, t, scale, dst, width * scale);
+                progressPercent.accept(++done * 100 / (tilesX * tilesY));
+            }
+        }
+        return result;
+    }
+
+    private FloatBuffer allocate(int floats) {
+        return ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private void run(OrtSession session, String inputName, FloatBuffer in, long[] inputShape,
+                     String outputName, FloatBuffer out, long[] outputShape) {
+        OrtEnvironment env = getEnvironment();
+        // Tensors created from direct buffers use them as storage; the output is pinned, so ONNX Runtime
+        // writes the result straight into our buffer.
+        try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, in, inputShape);
+             OnnxTensor outputTensor = OnnxTensor.createTensor(env, out, outputShape)) {
+            session.run(Map.of(inputName, inputTensor), Map.of(outputName, outputTensor)).close();
+        } catch (OrtException e) {
+            throw new ImageProcessingException("ONNX inference failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the padded tile of the BGR source into {@code in} as NCHW floats: luma for ESPCN (like OpenCV's
+     * BGR2YCrCb on 0..1 input), RGB planes in the model's input range otherwise.
+     */
+    private static void fillInput(ModelSpec spec, byte[] src, int width, Tile t, FloatBuffer in) {
+        int plane = t.paddedWidth() * t.paddedHeight();
+        float toRange = spec.inputRange() / 255f;
+        int i = 0;
+        for (int y = t.padY0(); y < t.padY1(); y++) {
+            int p = (y * width + t.padX0()) * 3;
+            for (int x = t.padX0(); x < t.padX1(); x++, p += 3, i++) {
+                float b = src[p] & 0xFF;
+                float g = src[p + 1] & 0xFF;
+                float r = src[p + 2] & 0xFF;
+                if (spec.channels() == 1) {
+                    in.put(i, (0.299f * r + 0.587f * g + 0.114f * b) / 255f);
+                } else {
+                    in.put(i, r * toRange);
+                    in.put(plane + i, g * toRange);
+                    in.put(2 * plane + i, b * toRange);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the tile's output without its padding into the BGR result.
+     */
+    private static void writeOutput(ModelSpec spec, FloatBuffer out, Tile t, int scale, byte[] dst, int dstWidth) {
+        int outWidth = t.paddedWidth() * scale;
+        int plane = outWidth * t.paddedHeight() * scale;
+        float toBytes = 255f / spec.inputRange();
+        int cropX = (t.x0() - t.padX0()) * scale;
+        int cropY = (t.y0() - t.padY0()) * scale;
+        for (int y = t.y0() * scale; y < t.y1() * scale; y++) {
+            int o = (cropY + y - t.y0() * scale) * outWidth + cropX;
+            int p = (y * dstWidth + t.x0() * scale) * 3;
+            for (int x = t.x0() * scale; x < t.x1() * scale; x++, o++, p += 3) {
+                if (spec.channels() == 1) {
+                    int b = dst[p] & 0xFF;
+                    int g = dst[p + 1] & 0xFF;
+                    int r = dst[p + 2] & 0xFF;
+                    float delta = clamp(out.get(o)) * 255f - (0.299f * r + 0.587f * g + 0.114f * b);
+                    dst[p] = toByte(b + delta);
+                    dst[p + 1] = toByte(g + delta);
+                    dst[p + 2] = toByte(r + delta);
+                } else {
+                    dst[p] = toByte(out.get(2 * plane + o) * toBytes);
+                    dst[p + 1] = toByte(out.get(plane + o) * toBytes);
+                    dst[p + 2] = toByte(out.get(o) * toBytes);
+                }
+            }
+        }
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+
+    private static byte toByte(float value) {
+        return (byte) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    /**
+     * Input layout of a model: 1 channel (luma in 0..1) or 3 channels (RGB in 0..inputRange), as in
+     * {@code upscale_image.py}.
+     */
+    private record ModelSpec(int channels, float inputRange) {
+
+        static ModelSpec of(UpscalingMethod method) {
+            return switch (method) {
+                case ESPCN -> new ModelSpec(1, 1f);
+                case EDSR -> new ModelSpec(3, 255f);
+                case SRGAN -> new ModelSpec(3, 1f);
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Tile {@code [x0, x1) x [y0, y1)} of the source and the padded area that is fed to the model.
+     */
+    private record Tile(int x0, int y0, int x1, int y1, int padX0, int padY0, int padX1, int padY1) {
+
+        Tile(int x0, int y0, int x1, int y1, int pad, int width, int height) {
+            this(x0, y0, x1, y1, Math.max(x0 - pad, 0), Math.max(y0 - pad, 0),
+                    Math.min(x1 + pad, width), Math.min(y1 + pad, height));
+        }
+
+        int paddedWidth() {
+            return padX1 - padX0;
+        }
+
+        int paddedHeight() {
+            return padY1 - padY0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package upscale_project.UpscaleSPG.processing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time spent in each stage of one upscaling job, in nanoseconds. Stage names match the keys of the
+ * {@code "timings"} object that the Python worker adds to its replies.
+ */
+public final class StageTimings {
+
+    public static final String QUEUE_WAIT = "queue_wait";
+    public static final String SPAWN = "spawn";
+    public static final String MODEL_LOAD = "model_load";
+    public static final String DECODE = "decode";
+    public static final String INFERENCE = "inference";
+    public static final String ENCODE = "encode";
+    // ESPCN luma split and merge in the JVM, plus any wait for the bicubic upscale that runs during inference.
+    public static final String CHROMA = "chroma";
+    public static final String METADATA = "metadata";
+    public static final String PREVIEW = "preview";
+
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+
+    public void add(String stage, long stageNanos) {
+        nanos.merge(stage, stageNanos, Long::sum);
+    }
+
+    public void addSeconds(Map<String, Double> secondsByStage) {
+        secondsByStage.forEach((stage, seconds) -> add(stage, Math.round(seconds * 1e9)));
+    }
+
+    public Map<String, Long> asMap() {
+        return Collections.unmodifiableMap(nanos);
+    }
+}
@@ -1,8 +1,124 @@
 package upscale_project.UpscaleSPG.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface ImageRepository extends JpaRepository<Image, Long> {
 
+    Optional<Image> findFirstByContentHashAndModelUsedAndScaleFactorAndStatusOrderByIdDesc(
+            String contentHash, UpscalingMethod modelUsed, int scaleFactor, ImageStatus status);
+
+    /**
+     * The unfinished job that later identical uploads attach to, see {@code JobCoalescingService}.
+     */
+    Optional<Image> findFirstByContentHashAndModelUsedAndScaleFactorAndCoalescedWithIsNullAndStatusInOrderByIdAsc(
+            String contentHash, UpscalingMethod modelUsed, int scaleFactor, Collection<ImageStatus> statuses);
+
+    List<Image> findByCoalescedWithAndStatusIn(Long coalescedWith, Collection<ImageStatus> statuses);
+
+    /**
+     * Attached jobs still waiting for a job that has already finished, e.g. because it finished on another node
+     * while they were being attached.
+     */
+    @Query("select f from Image f, Image l where f.coalescedWith = l.id and f.status in :waiting and l.status in :finished")
+    List<Image> findFollowersOfFinishedJobs(@Param("waiting") Collection<ImageStatus> waiting,
+                                            @Param("finished") Collection<ImageStatus> finished);
+
+    @Query("select i.id from Image i where i.id in :ids and i.status in :statuses")
+    List<Long> findIdsWithStatus(@Param("ids") Collection<Long> ids, @Param("statuses") Collection<ImageStatus> statuses);
+
+    @Query("select i.status as status, count(i) as count from Image i where i.batchId = :batchId group by i.status")
+    List<StatusCount> countByBatchIdGroupByStatus(@Param("batchId") String batchId);
+
+    /**
+     * Jobs left behind by a stopped node: uploads that were never started (or whose retry is due) and
+     * processing jobs that were owned by this node, have no lease or whose lease has expired. Paged by id, from
+     * after {@code afterId}, so requeued jobs that still match do not shift the next page.
+     */
+    @Query("select i from Image i where i.coalescedWith is null and i.id > :afterId"
+            + " and ((i.status = :uploaded and (i.nextAttemptAt is null or i.nextAttemptAt <= :now))"
+            + " or (i.status = :processing and (i.leaseOwner is null or i.leaseOwner = :nodeId or i.leaseExpiresAt < :now)))"
+            + " order by i.id")
+    List<Image> findOrphanedJobs(@Param("nodeId") String nodeId, @Param("now") LocalDateTime now,
+                                 @Param("uploaded") ImageStatus uploaded, @Param("processing") ImageStatus processing,
+                                 @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Jobs whose retry backoff has elapsed or whose processing lease has expired, paged like
+     * {@link #findOrphanedJobs}.
+     */
+    @Query("select i from Image i where i.coalescedWith is null and i.id > :afterId"
+            + " and ((i.status = :uploaded and i.nextAttemptAt <= :now)"
+            + " or (i.status = :processing and i.leaseExpiresAt < :now))"
+            + " order by i.id")
+    List<Image> findDueJobs(@Param("now") LocalDateTime now,
+                            @Param("uploaded") ImageStatus uploaded, @Param("processing") ImageStatus processing,
+                            @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Jobs any node may claim from the shared queue: uploads that are due and not leased by a live node,
+     * and processing jobs whose lease has expired. Jobs attached to an identical running job are never claimed.
+     */
+    @Query("select i from Image i where i.coalescedWith is null"
+            + " and ((i.status = :uploaded and (i.nextAttemptAt is null or i.nextAttemptAt <= :now)"
+            + " and (i.leaseOwner is null or i.leaseExpiresAt < :now))"
+            + " or (i.status = :processing and (i.leaseExpiresAt is null or i.leaseExpiresAt < :now)))"
+            + " order by i.id")
+    List<Image> findClaimableJobs(@Param("now") LocalDateTime now, @Param("uploaded") ImageStatus uploaded,
+                                  @Param("processing") ImageStatus processing, Pageable pageable);
+
+    /**
+     * Finished images whose files are still stored, oldest result first.
+     */
+    List<Image> findByStatusInAndExpiredAtIsNullOrderByProcessEndTimeAsc(Collection<ImageStatus> statuses,
+                                                                         Pageable pageable);
+
+    List<Image> findByStatusAndExpiredAtIsNullAndProcessEndTimeBefore(ImageStatus status, LocalDateTime before,
+                                                                     Pageable pageable);
+
+    /**
+     * Whether another image still uses the processed file, e.g. one served from the result cache.
+     */
+    boolean existsByProcessedFilePathAndExpiredAtIsNullAndIdNot(String processedFilePath, Long id);
+
+    List<Image> findByProcessedFilePathAndStatusAndExpiredAtIsNull(String processedFilePath, ImageStatus status);
+
+    /**
+     * Bytes of originals and processed files that are still stored. A processed file shared by several images
+     * is counted once.
+     */
+    @Query("select coalesce(sum(i.originalFileSize), 0) + coalesce(sum(case when i.processedFilePath is not null"
+            + " and not exists (select j.id from Image j where j.processedFilePath = i.processedFilePath"
+            + " and j.expiredAt is null and j.id < i.id) then i.upscaledFileSize else 0 end), 0)"
+            + " from Image i where i.expiredAt is null")
+    long sumStoredBytes();
+
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.leaseOwner = null, i.leaseExpiresAt = null where i.leaseOwner = :nodeId")
+    int releaseLeases(@Param("nodeId") String nodeId);
+
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.leaseExpiresAt = :until where i.id in :ids and i.leaseOwner = :nodeId")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("nodeId") String nodeId,
+                    @Param("until") LocalDateTime until);
+
+    interface StatusCount {
+        ImageStatus getStatus();
+
+        long getCount();
+    }
 }
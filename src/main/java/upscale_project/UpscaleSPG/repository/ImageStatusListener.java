@@ -0,0 +1,30 @@
+package upscale_project.UpscaleSPG.repository;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.service.ImageStatusCache;
+
+/**
+ * Writes every persisted, updated or loaded {@link Image} to the {@link ImageStatusCache}. The cache is looked
+ * up lazily because Hibernate creates listeners while the EntityManagerFactory the cache depends on is built.
+ * Bulk JPQL updates bypass the listener; the ones in {@link ImageRepository} only touch lease columns.
+ */
+public class ImageStatusListener {
+
+    private final ObjectProvider<ImageStatusCache> statusCache;
+
+    public ImageStatusListener(ObjectProvider<ImageStatusCache> statusCache) {
+        this.statusCache = statusCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostLoad
+    public void cache(Image image) {
+        statusCache.ifAvailable(cache -> cache.update(image));
+    }
+}
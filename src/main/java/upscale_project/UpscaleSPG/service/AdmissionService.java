@@ -0,0 +1,236 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import upscale_project.UpscaleSPG.exception.ImageTooLargeException;
+import upscale_project.UpscaleSPG.exception.JobQueueFullException;
+import upscale_project.UpscaleSPG.exception.RateLimitExceededException;
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether an upload is taken before its original is stored. Every upload request takes a token from its
+ * client's request bucket ({@code app.admission.client.requests-per-second}, {@code ...request-burst}); the
+ * upload filter does this before the multipart body is parsed. Each image then has to fit the
+ * {@code app.admission.max-file-size} and {@code app.admission.max-pixels} of its method and scale, looked up as
+ * {@code <key>.<method>.scale<N>}, then {@code <key>.<method>}, then {@code <key>}. Its cost, the input pixels
+ * times scale squared times {@link UpscalingMethod#getCostWeight()}, is taken from the client's cost bucket
+ * ({@code app.admission.client.cost-per-second}, {@code ...cost-burst}) and has to fit into what is left of
+ * {@code app.admission.max-in-flight-cost}, the cost of the admitted jobs that have not finished yet. Costs are
+ * configured in millions (weighted output megapixels).
+ * <p>
+ * Uploads without a client, made from inside the application, skip the client buckets. With the shared queue an
+ * upload node does not run the jobs, so the in-flight cost is not tracked, like the queue capacity. A rate or
+ * limit of zero disables that check.
+ */
+@Service
+public class AdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionService.class);
+
+    private static final double PIXELS_PER_MEGAPIXEL = 1_000_000.0;
+
+    private final Environment env;
+    private final JobMetrics jobMetrics;
+    private final double requestsPerSecond;
+    private final double requestBurst;
+    private final double costPerSecond;
+    private final double costBurst;
+    private final long maxInFlightCost;
+    private final boolean sharedQueue;
+    private final Map<String, TokenBucket> requestBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> costBuckets = new ConcurrentHashMap<>();
+    private final Map<Key, Limits> limits = new ConcurrentHashMap<>();
+    private final Map<Long, Long> inFlightByImageId = new ConcurrentHashMap<>();
+    private final AtomicLong inFlightCost = new AtomicLong();
+
+    @Autowired
+    public AdmissionService(Environment env, JobMetrics jobMetrics,
+                            @Value("${app.admission.client.requests-per-second}") double requestsPerSecond,
+                            @Value("${app.admission.client.request-burst}") double requestBurst,
+                            @Value("${app.admission.client.cost-per-second}") double costPerSecond,
+                            @Value("${app.admission.client.cost-burst}") double costBurst,
+                            @Value("${app.admission.max-in-flight-cost}") double maxInFlightCost,
+                            @Value("${app.jobs.shared-queue}") boolean sharedQueue) {
+        this.env = env;
+        this.jobMetrics = jobMetrics;
+        this.requestsPerSecond = requestsPerSecond;
+        this.requestBurst = requestBurst;
+        this.costPerSecond = costPerSecond;
+        this.costBurst = costBurst;
+        this.maxInFlightCost = Math.round(maxInFlightCost * PIXELS_PER_MEGAPIXEL);
+        this.sharedQueue = sharedQueue;
+        jobMetrics.registerInFlightCost(inFlightCost);
+    }
+
+    /**
+     * Takes one request token of the client, or throws {@link RateLimitExceededException}.
+     */
+    public void admitRequest(String clientId) {
+        if (clientId == null || requestsPerSecond <= 0) {
+            return;
+        }
+        long waitNanos = take(requestBuckets, clientId, requestsPerSecond, requestBurst, 1);
+        if (waitNanos > 0) {
+            jobMetrics.recordRejected("rate");
+            throw new RateLimitExceededException("Too many upload requests from " + clientId + ".",
+                    retryAfterSeconds(waitNanos));
+        }
+    }
+
+    public long getMaxFileSize(UpscalingMethod method, int scale) {
+        return limits(method, scale).maxFileSize();
+    }
+
+    /**
+     * Estimated work of upscaling the input with the method, in weighted output pixels.
+     */
+    public long estimateCost(Resolution input, UpscalingMethod method, int scale) {
+        return input.pixels() * scale * scale * method.getCostWeight();
+    }
+
+    /**
+     * Checks the limits of the method and scale, takes the cost from the client's cost bucket and reserves it
+     * in the in-flight cost. {@code fileSize} is -1 when the size is not known before the file is stored. Returns
+     * the reserved cost, which the caller passes to {@link #track} or {@link #release(long)}.
+     */
+    public long admit(String clientId, UpscalingMethod method, int scale, Resolution input, long fileSize) {
+        Limits limits = limits(method, scale);
+        if (limits.maxFileSize() > 0 && fileSize > limits.maxFileSize()) {
+            jobMetrics.recordRejected("file_size");
+            throw new ImageTooLargeException("File of " + fileSize + " bytes exceeds the limit of "
+                    + limits.maxFileSize() + " bytes for " + method + " x" + scale + ".");
+        }
+        if (limits.maxPixels() > 0 && input.pixels() > limits.maxPixels()) {
+            jobMetrics.recordRejected("pixels");
+            throw new ImageTooLargeException("Image of " + input + " exceeds the limit of " + limits.maxPixels()
+                    + " pixels for " + method + " x" + scale + ".");
+        }
+
+        long cost = estimateCost(input, method, scale);
+        double costTokens = cost / PIXELS_PER_MEGAPIXEL;
+        boolean clientLimited = clientId != null && costPerSecond > 0;
+        if (clientLimited) {
+            long waitNanos = take(costBuckets, clientId, costPerSecond, costBurst, costTokens);
+            if (waitNanos > 0) {
+                jobMetrics.recordRejected("cost");
+                throw new RateLimitExceededException("Upscaling budget of " + clientId + " is used up: "
+                        + method + " x" + scale + " of " + input + " costs "
+                        + String.format("%.2f", costTokens) + " of " + costBurst + ".",
+                        retryAfterSeconds(waitNanos));
+            }
+        }
+        if (!reserve(cost)) {
+            TokenBucket bucket = clientLimited ? costBuckets.get(clientId) : null;
+            if (bucket != null) {
+                bucket.giveBack(costTokens);
+            }
+            jobMetrics.recordRejected("capacity");
+            throw new JobQueueFullException("Upscaling capacity is used up. Please retry later.");
+        }
+        return cost;
+    }
+
+    /**
+     * Keeps the cost reserved until the image is finished.
+     */
+    public void track(Long imageId, long cost) {
+        if (sharedQueue) {
+            return;
+        }
+        inFlightByImageId.merge(imageId, cost, Long::sum);
+    }
+
+    /**
+     * Releases a reservation that did not become a job: the upload was served from the cache, attached to a
+     * running job or not stored.
+     */
+    public void release(long cost) {
+        if (sharedQueue) {
+            return;
+        }
+        inFlightCost.addAndGet(-cost);
+    }
+
+    /**
+     * Releases the cost of a finished image, if it was admitted on this node.
+     */
+    public void release(Long imageId) {
+        Long cost = inFlightByImageId.remove(imageId);
+        if (cost != null) {
+            inFlightCost.addAndGet(-cost);
+        }
+    }
+
+    /**
+     * Drops the buckets of clients that have been idle long enough to fill them up again. A request racing with
+     * the removal may take from the dropped bucket, which costs at most one burst of accuracy for that client.
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.sweep-interval}", initialDelayString = "${app.jobs.sweep-interval}")
+    public void sweepIdleClients() {
+        long now = System.nanoTime();
+        requestBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        costBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private static long take(Map<String, TokenBucket> buckets, String clientId, double tokensPerSecond,
+                             double burst, double tokens) {
+        long now = System.nanoTime();
+        return buckets.computeIfAbsent(clientId, id -> new TokenBucket(tokensPerSecond, burst, now))
+                .tryTake(tokens, now);
+    }
+
+    private boolean reserve(long cost) {
+        if (sharedQueue) {
+            return true;
+        }
+        while (true) {
+            long current = inFlightCost.get();
+            // A single job larger than the whole capacity still runs, alone.
+            if (maxInFlightCost > 0 && current > 0 && current + cost > maxInFlightCost) {
+                logger.debug("Refused cost {} with {} of {} in flight.", cost, current, maxInFlightCost);
+                return false;
+            }
+            if (inFlightCost.compareAndSet(current, current + cost)) {
+                return true;
+            }
+        }
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private Limits limits(UpscalingMethod method, int scale) {
+        return limits.computeIfAbsent(new Key(method, scale), key -> new Limits(
+                lookup("app.admission.max-file-size", key, DataSize.class).toBytes(),
+                lookup("app.admission.max-pixels", key, Long.class)));
+    }
+
+    private <T> T lookup(String property, Key key, Class<T> type) {
+        String method = property + "." + key.method().toString().toLowerCase();
+        T value = env.getProperty(method + ".scale" + key.scale(), type);
+        if (value == null) {
+            value = env.getProperty(method, type);
+        }
+        return value != null ? value : env.getRequiredProperty(property, type);
+    }
+
+    private record Key(UpscalingMethod method, int scale) {
+    }
+
+    private record Limits(long maxFileSize, long maxPixels) {
+    }
+}
@@ -7,23 +7,40 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.env.Environment;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import upscale_project.UpscaleSPG.exception.ImageNotFoundException;
 import upscale_project.UpscaleSPG.exception.ImageProcessingException;
 import upscale_project.UpscaleSPG.model.Image;
 import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.Resolution;
 import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+import upscale_project.UpscaleSPG.processing.OnnxInferenceEngine;
+import upscale_project.UpscaleSPG.processing.StageTimings;
 import upscale_project.UpscaleSPG.repository.ImageRepository;
+import upscale_project.UpscaleSPG.worker.PixelTransfer;
+import upscale_project.UpscaleSPG.worker.PythonWorkerPool;
+import upscale_project.UpscaleSPG.worker.WorkerBatchItem;
+import upscale_project.UpscaleSPG.worker.WorkerBatchJob;
+import upscale_project.UpscaleSPG.worker.WorkerBatchResult;
+import upscale_project.UpscaleSPG.worker.WorkerJob;
+import upscale_project.UpscaleSPG.worker.WorkerPlanJob;
+import upscale_project.UpscaleSPG.worker.WorkerPlanStage;
+import upscale_project.UpscaleSPG.worker.WorkerProgress;
+import upscale_project.UpscaleSPG.worker.WorkerResult;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 @Service
 public class AsyncProcessorService {
@@ -32,40 +49,207 @@ public class AsyncProcessorService {
 
     private final ImageRepository imageRepository;
     private final ImageService imageService;
+    private final PythonWorkerPool pythonWorkerPool;
+    private final InterpolationEngine interpolationEngine;
+    private final PixelTransfer pixelTransfer;
+    private final OnnxInferenceEngine onnxEngine;
+    private final TilingPolicy tilingPolicy;
+    private final ImageProgressService progressService;
+    private final JobLeaseService leaseService;
+    private final JobMetrics jobMetrics;
+    private final ThroughputEstimator throughputEstimator;
+    private final JobCancellationService cancellationService;
+    private final UpscalePlanner planner;
+    private final ResultCacheService resultCacheService;
     private final Environment env;
 
     @Value("${app.upload.path}")
     private String uploadPath;
 
-    @Value("${app.scripts.path}")
-    private String scriptsPath;
+    @Value("${app.interpolation.native.enabled}")
+    private boolean nativeInterpolationEnabled;
 
-    @Value("${app.python.executable.path}")
-    private String pythonExecutablePath;
+    @Value("${app.batch.max-batch-size}")
+    private int maxBatchSize;
 
     @Autowired
-    public AsyncProcessorService(ImageRepository imageRepository, Environment env, @Lazy ImageService imageService) {
+    public AsyncProcessorService(ImageRepository imageRepository, Environment env, @Lazy ImageService imageService,
+                                 PythonWorkerPool pythonWorkerPool, PixelTransfer pixelTransfer, InterpolationEngine interpolationEngine,
+                                 OnnxInferenceEngine onnxEngine, TilingPolicy tilingPolicy, ImageProgressService progressService,
+                                 JobLeaseService leaseService, JobMetrics jobMetrics,
+                                 ThroughputEstimator throughputEstimator, JobCancellationService cancellationService,
+                                 UpscalePlanner planner, ResultCacheService resultCacheService) {
         this.imageRepository = imageRepository;
+        this.pythonWorkerPool = pythonWorkerPool;
+        this.pixelTransfer = pixelTransfer;
+        this.interpolationEngine = interpolationEngine;
+        this.onnxEngine = onnxEngine;
+        this.tilingPolicy = tilingPolicy;
+        this.progressService = progressService;
+        this.leaseService = leaseService;
+        this.jobMetrics = jobMetrics;
+        this.throughputEstimator = throughputEstimator;
+        this.cancellationService = cancellationService;
+        this.planner = planner;
+        this.resultCacheService = resultCacheService;
         this.env = env;
         this.imageService = imageService;
     }
 
-    @Async
     public void startUpscalingProcess(Long imageId, String originalFilePathStr, UpscalingMethod model, int scale) {
         String modelWeightsPath;
         Path originalFilePath = Paths.get(originalFilePathStr);
         Path processedFilePath;
+        jobMetrics.jobsStarted(1);
+        try (JobCancellationService.RunningJob running = cancellationService.start(List.of(imageId), model)) {
+            try {
+                modelWeightsPath = getModelWeightsPath(imageId, model, scale);
+                processedFilePath = getProcessedFilePath(imageId, originalFilePathStr, model, scale);
+                doUpscaleProcess(imageId, originalFilePath, processedFilePath, modelWeightsPath, model, scale, running);
+                imageService.updateImageProcessingResult(imageId, processedFilePath.toString(), ImageStatus.PROCESSED);
+            } catch (Exception e) {
+                if (running.getOutcome(imageId) != null) {
+                    handleStopped(imageId, running.getOutcome(imageId), model, scale);
+                } else if (e instanceof CancellationException) {
+                    logger.info("Image {} skipped: {}", imageId, e.getMessage());
+                } else {
+                    logger.error("Failed to process upscaling for image ID {}: {}", imageId, e.getMessage());
+                    jobMetrics.recordFailure(model, scale, e instanceof ImageProcessingException processingException
+                            ? processingException.getExitCode() : ImageProcessingException.NO_EXIT_CODE);
+                    handleFailure(imageId, e.getMessage());
+                }
+            }
+        } finally {
+            jobMetrics.jobsFinished(1);
+        }
+    }
+
+    /**
+     * Processes a group of images that share one (model, scale) on a single Python worker, so the model is
+     * loaded once and same-size images can be stacked into one tensor. The in-JVM engines and chained plans
+     * take them one by one.
+     */
+    public void startBatchUpscalingProcess(List<UpscaleJob> jobs) {
+        UpscalingMethod model = jobs.get(0).model();
+        int scale = jobs.get(0).scale();
+
+        if ((nativeInterpolationEnabled && InterpolationEngine.supports(model)) || onnxEngine.supports(model, scale)
+                || planner.plan(model, scale).isChained()) {
+            jobs.forEach(job -> startUpscalingProcess(job.imageId(), job.originalFilePath(), model, scale));
+            return;
+        }
+
+        jobMetrics.jobsStarted(jobs.size());
+        try (JobCancellationService.RunningJob running = cancellationService.start(
+                jobs.stream().map(UpscaleJob::imageId).toList(), model)) {
+            processBatch(jobs, model, scale, running);
+        } finally {
+            jobMetrics.jobsFinished(jobs.size());
+        }
+    }
+
+    private void processBatch(List<UpscaleJob> jobs, UpscalingMethod model, int scale,
+                              JobCancellationService.RunningJob running) {
+        String modelWeightsPath = getModelWeightsPath(jobs.get(0).imageId(), model, scale);
+        StageTimings timings = new StageTimings();
+        List<StartedItem> started = new ArrayList<>();
         try {
-            modelWeightsPath = getModelWeightsPath(imageId, model, scale);
-            processedFilePath = getProcessedFilePath(imageId, originalFilePathStr, model, scale);
-            doUpscaleProcess(imageId, originalFilePath, processedFilePath, modelWeightsPath, model, scale);
-            imageService.updateImageProcessingResult(imageId, processedFilePath.toString(), ImageStatus.PROCESSED);
-        } catch (Exception e) {
-            logger.error("Failed to process upscaling for image ID {}: {}", imageId, e.getMessage());
-            updateImageStatusToError(imageId);
+            for (UpscaleJob job : jobs) {
+                try {
+                    Path processedFilePath = getProcessedFilePath(job.imageId(), job.originalFilePath(), model, scale);
+                    Image image = updateImageStatusToProcessing(job.imageId());
+                    int tileSize = tilingPolicy.chooseTileSize(image.getOriginalResolution(), model, scale);
+                    PixelTransfer.Exchange exchange = pixelTransfer.open(Paths.get(job.originalFilePath()),
+                            processedFilePath, model, scale, timings);
+                    WorkerBatchItem item = new WorkerBatchItem(
+                            exchange != null ? exchange.input().toString() : job.originalFilePath(),
+                            exchange != null ? exchange.result().toString() : processedFilePath.toString(),
+                            tileSize, tileSize > 0 ? tilingPolicy.getTilePad() : 0);
+                    started.add(new StartedItem(job, item, processedFilePath, getOutputPixels(image, scale), exchange));
+                } catch (CancellationException e) {
+                    logger.info("Image {} skipped: {}", job.imageId(), e.getMessage());
+                } catch (Exception e) {
+                    logger.error("Failed to start batch upscaling for image ID {}: {}", job.imageId(), e.getMessage());
+                    jobMetrics.recordFailure(model, scale, ImageProcessingException.NO_EXIT_CODE);
+                    updateImageStatusToError(job.imageId());
+                }
+            }
+            if (!started.isEmpty()) {
+                runBatch(started, modelWeightsPath, model, scale, timings, running);
+            }
+        } finally {
+            started.stream().map(StartedItem::exchange).filter(Objects::nonNull).forEach(PixelTransfer.Exchange::close);
         }
     }
 
+    private void runBatch(List<StartedItem> started, String modelWeightsPath, UpscalingMethod model, int scale,
+                          StageTimings timings, JobCancellationService.RunningJob running) {
+        List<WorkerBatchItem> items = started.stream().map(StartedItem::item).toList();
+        WorkerBatchResult batchResult;
+        long start = System.nanoTime();
+        try {
+            batchResult = pythonWorkerPool.execute(
+                    new WorkerBatchJob(modelWeightsPath, model.toString(), scale, maxBatchSize, items),
+                    progress -> progressService.publishProgress(started.get(progress.item()).job().imageId(), progress.percent()),
+                    running.getWorkerCancellation()
+            );
+        } catch (IOException | InterruptedException e) {
+            if (!running.isStopped()) {
+                logger.error("Error during batch upscaling of {} images: {}", items.size(), e.getMessage());
+            }
+            started.forEach(item -> {
+                Long imageId = item.job().imageId();
+                if (running.getOutcome(imageId) != null) {
+                    handleStopped(imageId, running.getOutcome(imageId), model, scale);
+                    return;
+                }
+                jobMetrics.recordFailure(model, scale, ImageProcessingException.NO_EXIT_CODE);
+                handleFailure(imageId, e.getMessage());
+            });
+            return;
+        }
+        timings.addSeconds(batchResult.timings());
+
+        List<WorkerResult> results = batchResult.results();
+        long succeededPixels = 0;
+        for (int i = 0; i < started.size(); i++) {
+            StartedItem item = started.get(i);
+            Long imageId = item.job().imageId();
+            WorkerResult result = results.get(i);
+            // A result that arrived after the deadline is still kept; a cancelled image's result is not wanted.
+            if (running.getOutcome(imageId) == ImageStatus.CANCELLED) {
+                handleStopped(imageId, ImageStatus.CANCELLED, model, scale);
+                deleteQuietly(item.processedFilePath());
+                continue;
+            }
+            if (result.exitCode() != 0) {
+                logger.error("Image {} processing failed with exit code: {} ({})", imageId, result.exitCode(), result.error());
+                jobMetrics.recordFailure(model, scale, result.exitCode());
+                handleFailure(imageId, "Upscaling script failed with exit code " + result.exitCode() + ": " + result.error());
+                continue;
+            }
+            try {
+                if (item.exchange() != null) {
+                    pixelTransfer.finish(item.exchange(), timings);
+                }
+                imageService.updateImageProcessingResult(imageId, item.processedFilePath().toString(), ImageStatus.PROCESSED);
+                succeededPixels += item.outputPixels();
+                logger.info("Image {} processing successful.", imageId);
+            } catch (Exception e) {
+                logger.error("Failed to store batch result for image ID {}: {}", imageId, e.getMessage());
+                jobMetrics.recordFailure(model, scale, ImageProcessingException.NO_EXIT_CODE);
+                handleFailure(imageId, e.getMessage());
+            }
+        }
+        jobMetrics.recordStages(timings, model, scale, started.size());
+        throughputEstimator.record(model, scale, succeededPixels, System.nanoTime() - start);
+    }
+
+    private static long getOutputPixels(Image image, int scale) {
+        Resolution resolution = Resolution.parse(image.getOriginalResolution());
+        return resolution != null ? resolution.pixels() * scale * scale : 0;
+    }
+
     private String getModelWeightsPath(Long imageId, UpscalingMethod model, int scale) {
         String modelWeightsPath;
         if (model == UpscalingMethod.BILINEAR || model == UpscalingMethod.BICUBIC) {
@@ -79,85 +263,225 @@ public class AsyncProcessorService {
     }
 
     private Path getProcessedFilePath(Long imageId, String originalFilePath, UpscalingMethod model, int scale) {
-        Path processedDir = Paths.get(uploadPath, "processed");
-        if (!Files.exists(processedDir)) {
-            try {
-                Files.createDirectories(processedDir);
-            } catch (IOException e) {
-                logger.error("Failed to create processed directory {} for image ID {}: {}", processedDir, imageId, e.getMessage());
-                throw new ImageProcessingException("Failed to create directory for processed images.", e);
-            }
-        }
         String filename = Paths.get(originalFilePath).getFileName().toString();
         int dotIndex = filename.lastIndexOf('.');
         String processedFileName = filename.substring(0, dotIndex) + "_" + model + "_" + scale + "x" + filename.substring(dotIndex);
 
-        return processedDir.resolve(processedFileName);
+        Path processedFilePath = StorageLayout.resolve(Paths.get(uploadPath, "processed"), processedFileName);
+        try {
+            Files.createDirectories(processedFilePath.getParent());
+        } catch (IOException e) {
+            logger.error("Failed to create processed directory {} for image ID {}: {}", processedFilePath.getParent(), imageId, e.getMessage());
+            throw new ImageProcessingException("Failed to create directory for processed images.", e);
+        }
+        return processedFilePath;
     }
 
     private void doUpscaleProcess(Long imageId, Path originalFilePath, Path processedFilePath, 
-                                String modelWeightsPath, UpscalingMethod model, int scale) {
+                                String modelWeightsPath, UpscalingMethod model, int scale,
+                                JobCancellationService.RunningJob running) {
         
         int exitCode;
-        
+        String error;
+        StageTimings timings = new StageTimings();
+
         try {
-            updateImageStatusToProcessing(imageId);
-
-            ProcessBuilder pb = new ProcessBuilder(
-                    pythonExecutablePath,
-                    Paths.get(scriptsPath, "upscale_image.py").toString(),
-                    originalFilePath.toString(),
-                    processedFilePath.toString(),
-                    modelWeightsPath,
-                    model.toString(),
-                    String.valueOf(scale)
-            );
+            Image image = updateImageStatusToProcessing(imageId);
+            long start = System.nanoTime();
+            UpscalePlan plan = planner.plan(model, scale);
+            running.throwIfStopped();
 
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            printProcessInput(process);
-            exitCode = process.waitFor();
-            logger.info("Python script finished with exit code: {} for image ID {}", exitCode, imageId);
+            if (plan.isChained() && upscaleFromStoredStage(image, plan, processedFilePath, timings)) {
+                throwIfStoppedMeanwhile(imageId, processedFilePath, running);
+                jobMetrics.recordStages(timings, model, scale, 1);
+                return;
+            }
+            if (!plan.isChained() && nativeInterpolationEnabled && InterpolationEngine.supports(model)
+                    && interpolationEngine.resizeFile(originalFilePath, processedFilePath, scale, model, timings)) {
+                throwIfStoppedMeanwhile(imageId, processedFilePath, running);
+                jobMetrics.recordStages(timings, model, scale, 1);
+                throughputEstimator.record(model, scale, getOutputPixels(image, scale), System.nanoTime() - start);
+                logger.info("Image {} processed in-JVM with {} interpolation.", imageId, model);
+                return;
+            }
+            // Decode time of a file the native engine could not read is not counted: OpenCV decodes it again.
+            timings = new StageTimings();
+            running.throwIfStopped();
+
+            UpscalePlan.Stage first = plan.stages().get(0);
+            int tileSize = tilingPolicy.chooseTileSize(image.getOriginalResolution(), first.method(), first.scale());
+            if (tileSize > 0) {
+                logger.info("Image {} ({}) will be processed in {}px tiles.", imageId, image.getOriginalResolution(), tileSize);
+            }
+
+            if (!plan.isChained() && onnxEngine.supports(model, scale)
+                    && onnxEngine.upscaleFile(originalFilePath, processedFilePath, model, scale, tileSize, timings,
+                            percent -> {
+                                running.throwIfStopped();
+                                progressService.publishProgress(imageId, percent);
+                            })) {
+                throwIfStoppedMeanwhile(imageId, processedFilePath, running);
+                jobMetrics.recordStages(timings, model, scale, 1);
+                throughputEstimator.record(model, scale, getOutputPixels(image, scale), System.nanoTime() - start);
+                logger.info("Image {} processed in-JVM with ONNX Runtime {} x{}.", imageId, model, scale);
+                return;
+            }
+            timings = new StageTimings();
+            running.throwIfStopped();
+
+            try (PixelTransfer.Exchange exchange = pixelTransfer.open(originalFilePath, processedFilePath, model, scale, timings)) {
+                String inputPath = exchange != null ? exchange.input().toString() : originalFilePath.toString();
+                String outputPath = exchange != null ? exchange.result().toString() : processedFilePath.toString();
+                int tilePad = tileSize > 0 ? tilingPolicy.getTilePad() : 0;
+                Consumer<WorkerProgress> progressListener = progress -> progressService.publishProgress(imageId, progress.percent());
+                WorkerResult result;
+                if (plan.isChained()) {
+                    logger.info("Image {} is upscaled in stages: {}.", imageId, plan.describe());
+                    result = pythonWorkerPool.execute(new WorkerPlanJob(inputPath, outputPath, getWorkerStages(imageId, plan),
+                            scale, tileSize, tilePad, image.getContentHash()), progressListener, running.getWorkerCancellation());
+                } else {
+                    result = pythonWorkerPool.execute(new WorkerJob(inputPath, outputPath, modelWeightsPath, model.toString(),
+                            scale, tileSize, tilePad), progressListener, running.getWorkerCancellation());
+                }
+                timings.addSeconds(result.timings());
+                exitCode = result.exitCode();
+                error = result.error();
+                if (exitCode == 0 && exchange != null) {
+                    pixelTransfer.finish(exchange, timings);
+                }
+                jobMetrics.recordStages(timings, model, scale, 1);
+                if (exitCode == 0) {
+                    throughputEstimator.record(model, scale, getOutputPixels(image, scale), System.nanoTime() - start);
+                }
+                logger.info("Python worker finished with exit code: {} for image ID {}", exitCode, imageId);
+                if (result.error() != null) {
+                    logger.error("Python worker reported an error for image ID {}: {}", imageId, result.error());
+                }
+            }
 
         } catch (IOException | InterruptedException e) {
-            logger.error("Error during Python script execution for image ID {}: {}", imageId, e.getMessage());
-            throw new ImageProcessingException("Failed to execute upscaling script.", e);
+            logger.error("Error during upscaling execution for image ID {}: {}", imageId, e.getMessage());
+            throw new ImageProcessingException("Failed to execute upscaling script: " + e.getMessage(), e);
         }
 
         if (exitCode == 0) {
             logger.info("Image {} processing successful.", imageId);
         } else {
             logger.error("Image {} processing failed with exit code: {}", imageId, exitCode);
-            throw new ImageProcessingException("Upscaling script failed with non-zero exit code: " + exitCode);
+            throw new ImageProcessingException("Upscaling script failed with non-zero exit code: " + exitCode
+                    + (error != null ? " (" + error + ")" : ""), exitCode);
+        }
+    }
+
+    /**
+     * Finishes a chained plan from the stored result of its first stage, when the same upload was already
+     * processed at that scale on its own: the model does not run again and the remaining interpolation runs in
+     * the JVM, shrinking by area like the worker when the first stage overshoots the scale. Returns {@code false}
+     * when there is no such result or the JVM cannot read or write the files.
+     */
+    private boolean upscaleFromStoredStage(Image image, UpscalePlan plan, Path processedFilePath, StageTimings timings)
+            throws IOException {
+        UpscalePlan.Stage first = plan.stages().get(0);
+        boolean restInterpolated = plan.stages().stream().skip(1).allMatch(stage -> InterpolationEngine.supports(stage.method()));
+        if (!nativeInterpolationEnabled || !restInterpolated || planner.plan(first.method(), first.scale()).isChained()) {
+            return false;
+        }
+        Optional<Image> stored = resultCacheService.findProcessed(image.getContentHash(), first.method(), first.scale());
+        if (stored.isEmpty() || !interpolationEngine.resizeFile(Paths.get(stored.get().getProcessedFilePath()),
+                processedFilePath, plan.scale(), first.scale(), UpscalingMethod.BICUBIC, timings)) {
+            return false;
         }
+        logger.info("Image {} upscaled from the {} result of image {}.", image.getId(), first, stored.get().getId());
+        return true;
+    }
+
+    private List<WorkerPlanStage> getWorkerStages(Long imageId, UpscalePlan plan) {
+        return plan.stages().stream()
+                .map(stage -> new WorkerPlanStage(stage.method().toString(), stage.scale(),
+                        getModelWeightsPath(imageId, stage.method(), stage.scale())))
+                .toList();
     }
 
-    private void updateImageStatusToProcessing(Long imageId) {
+    private Image updateImageStatusToProcessing(Long imageId) {
         Image imageToUpdate = imageRepository.findById(imageId)
                         .orElseThrow(() -> new ImageNotFoundException("Image not found for updating status to 'processing': " + imageId));
+        if (imageToUpdate.getStatus().isFinished()) {
+            throw new CancellationException("image is already " + imageToUpdate.getStatus() + ".");
+        }
         imageToUpdate.setStatus(ImageStatus.PROCESSING);
         imageToUpdate.setProcessStartTime(LocalDateTime.now());
-        imageRepository.save(imageToUpdate);
+        leaseService.acquire(imageToUpdate);
+        Image savedImage = imageRepository.save(imageToUpdate);
         logger.info("Image {} status updated to 'processing'.", imageId);
+        progressService.publishStatus(imageId, ImageStatus.PROCESSING);
+        return savedImage;
     }
 
-    private void printProcessInput(Process process) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logger.debug("Python output: {}", line);
+    /**
+     * Puts the job back for a retry with backoff while it has attempts left, otherwise marks it as ERROR.
+     */
+    private void handleFailure(Long imageId, String error) {
+        try {
+            if (leaseService.scheduleRetry(imageId, error)) {
+                progressService.publishStatus(imageId, ImageStatus.UPLOADED);
+                return;
             }
+        } catch (Exception e) {
+            logger.error("Failed to schedule a retry for image {}: {}", imageId, e.getMessage());
+        }
+        updateImageStatusToError(imageId);
+    }
+
+    /**
+     * Drops the result of an in-JVM engine that finished after its job was cancelled or ran past its deadline, so
+     * the caller finishes the image through {@link #handleStopped} instead of recording it as processed.
+     */
+    private void throwIfStoppedMeanwhile(Long imageId, Path processedFilePath, JobCancellationService.RunningJob running) {
+        ImageStatus outcome = running.getOutcome(imageId);
+        if (outcome != null) {
+            deleteQuietly(processedFilePath);
+            throw new CancellationException("Job was stopped while running: " + outcome + ".");
+        }
+    }
+
+    /**
+     * Finishes an image whose job was stopped. A cancelled image already has its status, set by the cancel
+     * request; one that ran past its deadline is not retried.
+     */
+    private void handleStopped(Long imageId, ImageStatus outcome, UpscalingMethod model, int scale) {
+        jobMetrics.recordStopped(model, scale, outcome);
+        if (outcome == ImageStatus.CANCELLED) {
+            logger.info("Image {} processing stopped: cancelled.", imageId);
+            return;
+        }
+        logger.warn("Image {} processing stopped: it ran past its deadline.", imageId);
+        updateImageStatus(imageId, outcome);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
         } catch (IOException e) {
-            logger.error("Failed to read Python script output: {}", e.getMessage());
-            throw new ImageProcessingException("Failed to read output from upscaling script.", e);
+            logger.debug("Could not delete {}: {}", path, e.getMessage());
         }
     }
 
     private void updateImageStatusToError(Long imageId) {
+        updateImageStatus(imageId, ImageStatus.ERROR);
+    }
+
+    private void updateImageStatus(Long imageId, ImageStatus status) {
         try {
-            imageService.updateImageProcessingResult(imageId, null, ImageStatus.ERROR);
+            imageService.updateImageProcessingResult(imageId, null, status);
         } catch (Exception e) {
-            logger.error("Failed to update status to error for image {}: {}", imageId, e.getMessage());
+            logger.error("Failed to update status to {} for image {}: {}", status, imageId, e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Image of a batch that was handed to the worker, with its raw files when the pixels go through shared memory.
+     */
+    private record StartedItem(UpscaleJob job, WorkerBatchItem item, Path processedFilePath, long outputPixels,
+                               PixelTransfer.Exchange exchange) {
+    }
+}
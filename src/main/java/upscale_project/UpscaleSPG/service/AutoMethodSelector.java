@@ -0,0 +1,85 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Resolves {@link UpscalingMethod#AUTO}: picks the best-quality method that can serve the scale, with its own
+ * weights, an ONNX model or a chained {@link UpscalePlan}, and whose estimated latency fits the client's budget
+ * ({@code maxLatencyMs}, {@code app.auto.default-max-latency} if not given). The estimate is the wait behind the
+ * local queue plus the processing time of each stage of the plan, both from {@link ThroughputEstimator}. When nothing fits, BICUBIC is chosen, so under load AUTO jobs get
+ * cheaper instead of piling up. With the shared queue an upload node sees no queue and only estimates processing.
+ */
+@Service
+public class AutoMethodSelector {
+
+    private static final Logger logger = LoggerFactory.getLogger(AutoMethodSelector.class);
+
+    // Best quality first; the last one is the fallback and needs no weights.
+    private static final List<UpscalingMethod> QUALITY_ORDER = List.of(
+            UpscalingMethod.EDSR, UpscalingMethod.SRGAN, UpscalingMethod.ESPCN, UpscalingMethod.BICUBIC);
+
+    private final ThroughputEstimator throughputEstimator;
+    private final UpscaleJobScheduler jobScheduler;
+    private final UpscalePlanner planner;
+    private final Duration defaultMaxLatency;
+
+    @Autowired
+    public AutoMethodSelector(ThroughputEstimator throughputEstimator, UpscaleJobScheduler jobScheduler,
+                              UpscalePlanner planner,
+                              @Value("${app.auto.default-max-latency}") Duration defaultMaxLatency) {
+        this.throughputEstimator = throughputEstimator;
+        this.jobScheduler = jobScheduler;
+        this.planner = planner;
+        this.defaultMaxLatency = defaultMaxLatency;
+    }
+
+    public Selection select(Resolution input, int scale, Long maxLatencyMs) {
+        long budgetMillis = maxLatencyMs != null ? maxLatencyMs : defaultMaxLatency.toMillis();
+        long inputPixels = input != null ? input.pixels() : 0;
+
+        UpscalingMethod fallback = QUALITY_ORDER.get(QUALITY_ORDER.size() - 1);
+        for (UpscalingMethod method : QUALITY_ORDER) {
+            if (method != fallback && !planner.isAvailable(method, scale)) {
+                continue;
+            }
+            long estimatedMillis = jobScheduler.estimateWaitMillis(method, throughputEstimator::getAverageJobMillis)
+                    + estimateProcessingMillis(planner.plan(method, scale), inputPixels);
+            if (estimatedMillis <= budgetMillis || method == fallback) {
+                logger.info("AUTO resolved to {} x{} for {}: estimated {} ms, budget {} ms.", method, scale, input,
+                        estimatedMillis, budgetMillis);
+                return new Selection(method, estimatedMillis);
+            }
+        }
+        throw new IllegalStateException("No fallback method for AUTO.");
+    }
+
+    /**
+     * Processing time of the plan: every stage at the size it outputs, and the final resize if there is one.
+     */
+    private long estimateProcessingMillis(UpscalePlan plan, long inputPixels) {
+        long pixels = inputPixels;
+        long millis = 0;
+        for (UpscalePlan.Stage stage : plan.stages()) {
+            pixels *= (long) stage.scale() * stage.scale();
+            millis += throughputEstimator.estimateMillis(stage.method(), stage.scale(), pixels);
+        }
+        if (plan.stagesScale() != plan.scale()) {
+            millis += throughputEstimator.estimateMillis(UpscalingMethod.BICUBIC, plan.scale(),
+                    inputPixels * plan.scale() * plan.scale());
+        }
+        return millis;
+    }
+
+    public record Selection(UpscalingMethod method, long estimatedMillis) {
+    }
+}
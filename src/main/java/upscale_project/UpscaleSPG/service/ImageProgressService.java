@@ -0,0 +1,135 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import upscale_project.UpscaleSPG.model.ImageMetadataResponse;
+import upscale_project.UpscaleSPG.model.ImageProgressEvent;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes status changes and processing progress of images to Server-Sent Events subscribers.
+ * Subscriptions are kept in memory only and are completed once the image reaches a finished
+ * status: PROCESSED, ERROR, CANCELLED or TIMED_OUT.
+ * Uploads attached to an identical running job receive that job's events until it finishes.
+ */
+@Service
+public class ImageProgressService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageProgressService.class);
+
+    private static final String EVENT_NAME = "progress";
+
+    private final long timeoutMillis;
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> followers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ImageProgressService(@Value("${app.progress.sse-timeout}") Duration timeout) {
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    public SseEmitter subscribe(Long imageId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        subscribers.computeIfAbsent(imageId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(imageId, emitter));
+        emitter.onTimeout(() -> unsubscribe(imageId, emitter));
+        emitter.onError(e -> unsubscribe(imageId, emitter));
+        return emitter;
+    }
+
+    /**
+     * Sends the current state to a new subscriber, so it does not depend on the next change to get started.
+     */
+    public void sendSnapshot(Long imageId, SseEmitter emitter, ImageMetadataResponse current) {
+        ImageStatus status = current.getStatus();
+        ImageProgressEvent event = new ImageProgressEvent(imageId, status, status == ImageStatus.PROCESSED ? 100 : 0,
+                current.getQueuePosition(), current.getQueueDepth());
+        event.setPreviewAvailable(current.isPreviewAvailable());
+        if (send(imageId, emitter, event) && isTerminal(status)) {
+            emitter.complete();
+        }
+    }
+
+    /**
+     * Forwards the events of a running job to the subscribers of an upload attached to it. The final event is
+     * not forwarded: the attached upload publishes its own when it is completed.
+     */
+    public void follow(Long leaderId, Long followerId) {
+        followers.computeIfAbsent(leaderId, id -> ConcurrentHashMap.newKeySet()).add(followerId);
+    }
+
+    public void publishStatus(Long imageId, ImageStatus status) {
+        publish(imageId, new ImageProgressEvent(imageId, status, status == ImageStatus.PROCESSED ? 100 : 0, -1, 0),
+                isTerminal(status));
+    }
+
+    public void publishPreview(Long imageId, ImageStatus status) {
+        ImageProgressEvent event = new ImageProgressEvent(imageId, status, 0, -1, 0);
+        event.setPreviewAvailable(true);
+        publish(imageId, event, false);
+    }
+
+    public void publishProgress(Long imageId, int progressPercent) {
+        publish(imageId, new ImageProgressEvent(imageId, ImageStatus.PROCESSING, progressPercent, -1, 0), false);
+    }
+
+    private void publish(Long imageId, ImageProgressEvent event, boolean complete) {
+        Set<Long> attached = complete ? followers.remove(imageId) : followers.get(imageId);
+        if (attached != null && !complete) {
+            attached.forEach(followerId -> publish(followerId, forImage(followerId, event), false));
+        }
+
+        List<SseEmitter> emitters = complete ? subscribers.remove(imageId) : subscribers.get(imageId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            if (send(imageId, emitter, event) && complete) {
+                emitter.complete();
+            }
+        }
+    }
+
+    private static ImageProgressEvent forImage(Long imageId, ImageProgressEvent event) {
+        ImageProgressEvent copy = new ImageProgressEvent(imageId, event.getStatus(), event.getProgressPercent(),
+                event.getQueuePosition(), event.getQueueDepth());
+        copy.setPreviewAvailable(event.isPreviewAvailable());
+        return copy;
+    }
+
+    private boolean send(Long imageId, SseEmitter emitter, ImageProgressEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping progress subscriber of image {}: {}", imageId, e.getMessage());
+            unsubscribe(imageId, emitter);
+            return false;
+        }
+    }
+
+    private void unsubscribe(Long imageId, SseEmitter emitter) {
+        subscribers.computeIfPresent(imageId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static boolean isTerminal(ImageStatus status) {
+        return status.isFinished();
+    }
+}
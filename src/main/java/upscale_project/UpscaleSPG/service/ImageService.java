@@ -4,55 +4,134 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.ContentDisposition;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import upscale_project.UpscaleSPG.exception.ImageAlreadyFinishedException;
+import upscale_project.UpscaleSPG.exception.ImageExpiredException;
 import upscale_project.UpscaleSPG.exception.ImageNotFoundException;
 import upscale_project.UpscaleSPG.exception.ImageNotProcessedException;
 import upscale_project.UpscaleSPG.exception.ImageProcessingException;
+import upscale_project.UpscaleSPG.exception.ImageTooLargeException;
 import upscale_project.UpscaleSPG.exception.InvalidImageException;
+import upscale_project.UpscaleSPG.exception.JobQueueFullException;
+import upscale_project.UpscaleSPG.exception.UploadsDisabledException;
+import upscale_project.UpscaleSPG.model.BatchStatusResponse;
+import upscale_project.UpscaleSPG.model.BatchUploadResponse;
+import upscale_project.UpscaleSPG.model.CacheStatsResponse;
+import upscale_project.UpscaleSPG.model.FileDownload;
 import upscale_project.UpscaleSPG.model.Image;
 import upscale_project.UpscaleSPG.model.ImageMetadataResponse;
+import upscale_project.UpscaleSPG.model.ImageSnapshot;
 import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.OutputFormat;
+import upscale_project.UpscaleSPG.model.Resolution;
 import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.ImageHeaderReader;
+import upscale_project.UpscaleSPG.processing.StageTimings;
 import upscale_project.UpscaleSPG.repository.ImageRepository;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 public class ImageService {
     
     private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
 
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+    // How far into an upload the header is looked for before the file is stored; the stream is rewound to store
+    // the whole file afterwards, and a header further in is read from the stored file.
+    private static final int HEADER_PEEK_LIMIT = 1024 * 1024;
+    private static final String ORIGINAL_FORMAT = "original";
+    private static final List<String> ARCHIVE_IMAGE_EXTENSIONS = List.of(".png", ".jpg", ".jpeg", ".bmp", ".webp", ".tif", ".tiff");
+
     private final ImageRepository imageRepository;
-    private final AsyncProcessorService asyncProcessorService;
+    private final UpscaleJobScheduler jobScheduler;
+    private final ResultCacheService resultCacheService;
+    private final ImageProgressService progressService;
+    private final JobLeaseService leaseService;
+    private final JobMetrics jobMetrics;
+    private final PreviewService previewService;
+    private final ResultVariantService variantService;
+    private final JobCoalescingService coalescingService;
+    private final AutoMethodSelector methodSelector;
+    private final ImageStatusCache statusCache;
+    private final AdmissionService admissionService;
+    private final JobCancellationService cancellationService;
+    private final UpscalePlanner planner;
 
     @Value("${app.upload.path}")
     private String uploadPath;
 
+    @Value("${app.jobs.shared-queue}")
+    private boolean sharedQueue;
+
+    @Value("${app.node.upload-enabled}")
+    private boolean uploadEnabled;
+
     @Value("${app.scripts.path}")
     private String scriptsPath;
 
     @Autowired
-    public ImageService(ImageRepository imageRepository, AsyncProcessorService asyncProcessorService) {
+    public ImageService(ImageRepository imageRepository, UpscaleJobScheduler jobScheduler,
+                        ResultCacheService resultCacheService, ImageProgressService progressService,
+                        JobLeaseService leaseService, JobMetrics jobMetrics, PreviewService previewService,
+                        ResultVariantService variantService, JobCoalescingService coalescingService,
+                        AutoMethodSelector methodSelector, ImageStatusCache statusCache,
+                        AdmissionService admissionService, JobCancellationService cancellationService,
+                        UpscalePlanner planner) {
         this.imageRepository = imageRepository;
-        this.asyncProcessorService = asyncProcessorService;
+        this.jobScheduler = jobScheduler;
+        this.resultCacheService = resultCacheService;
+        this.progressService = progressService;
+        this.leaseService = leaseService;
+        this.jobMetrics = jobMetrics;
+        this.previewService = previewService;
+        this.variantService = variantService;
+        this.coalescingService = coalescingService;
+        this.methodSelector = methodSelector;
+        this.statusCache = statusCache;
+        this.admissionService = admissionService;
+        this.cancellationService = cancellationService;
+        this.planner = planner;
     }
 
     public Long processImageUpload(MultipartFile file, UpscalingMethod model, int scale) {
+        return processImageUpload(file, model, scale, null, null);
+    }
+
+    /**
+     * Stores and queues an upload. {@code maxLatencyMs} is the latency budget used to resolve {@link UpscalingMethod#AUTO},
+     * {@code clientId} the client whose budgets {@link AdmissionService} charges, {@code null} for none.
+     */
+    public Long processImageUpload(MultipartFile file, UpscalingMethod model, int scale, Long maxLatencyMs,
+                                   String clientId) {
         try {
             String originalFilename = file.getOriginalFilename();
 
@@ -60,25 +139,22 @@ public class ImageService {
                 throw new InvalidImageException("Uploaded file is empty or has no name.");
             }
 
-            String savedOriginalFilePath = getSavedOriginalFilePath(file);
-            long originalFileSize = Files.size(Paths.get(savedOriginalFilePath));
-            String originalResolution = getResolution(Paths.get(savedOriginalFilePath));
+            ensureAcceptingUploads();
+            planner.checkScale(scale);
 
-            Image newImage = new Image(
-                    originalFilename,
-                    savedOriginalFilePath,
-                    ImageStatus.UPLOADED,
-                    model,
-                    scale,
-                    originalResolution,
-                    originalFileSize
-            );
-
-            Image savedImage = imageRepository.save(newImage);
+            Image savedImage = storeUpload(file.getInputStream(), file.getSize(), originalFilename,
+                    new UploadRequest(model, scale, maxLatencyMs, null, clientId));
+            if (savedImage.getStatus() == ImageStatus.PROCESSED || savedImage.getCoalescedWith() != null || sharedQueue) {
+                return savedImage.getId();
+            }
 
-            asyncProcessorService.startUpscalingProcess(savedImage.getId(),
-                    savedImage.getOriginalFilePath(),
-                    model, scale);
+            try {
+                jobScheduler.submit(new UpscaleJob(savedImage.getId(), savedImage.getOriginalFilePath(),
+                        savedImage.getModelUsed(), scale));
+            } catch (JobQueueFullException e) {
+                updateImageProcessingResult(savedImage.getId(), null, ImageStatus.ERROR);
+                throw e;
+            }
 
             return savedImage.getId();
         } catch (IOException e) {
@@ -87,24 +163,340 @@ public class ImageService {
         }
     }
 
-    private String getSavedOriginalFilePath(MultipartFile file) throws IOException {
-        Path uploadPath = Paths.get(this.uploadPath);
+    /**
+     * Stores and queues a batch. If any image is rejected, the images stored before it are marked ERROR.
+     */
+    public BatchUploadResponse processBatchUpload(List<MultipartFile> files, MultipartFile archive,
+                                                  UpscalingMethod model, int scale, Long maxLatencyMs,
+                                                  String clientId) {
+        String batchId = UUID.randomUUID().toString();
+        UploadRequest request = new UploadRequest(model, scale, maxLatencyMs, batchId, clientId);
+        List<Image> images = new ArrayList<>();
+
+        ensureAcceptingUploads();
+        planner.checkScale(scale);
+
+        try {
+            for (MultipartFile file : files) {
+                String originalFilename = file.getOriginalFilename();
+                if (file.isEmpty() || originalFilename == null || originalFilename.isBlank()) {
+                    throw new InvalidImageException("Batch contains an empty file or a file without a name.");
+                }
+                images.add(storeUpload(file.getInputStream(), file.getSize(), originalFilename, request));
+            }
+            if (archive != null && !archive.isEmpty()) {
+                storeArchive(archive, request, images);
+            }
+        } catch (IOException e) {
+            abandon(images);
+            logger.error("Failed to process batch upload {}: {}", batchId, e.getMessage());
+            throw new ImageProcessingException("Failed to save or read uploaded batch.", e);
+        } catch (RuntimeException e) {
+            abandon(images);
+            throw e;
+        }
+
+        if (images.isEmpty()) {
+            throw new InvalidImageException("Batch upload contains no images.");
+        }
+
+        List<UpscaleJob> jobs = images.stream()
+                .filter(ImageService::needsJob)
+                .map(image -> new UpscaleJob(image.getId(), image.getOriginalFilePath(), image.getModelUsed(), scale))
+                .toList();
+        try {
+            if (!sharedQueue) {
+                // AUTO may resolve to different methods within one batch; each group shares one method.
+                jobs.stream()
+                        .collect(Collectors.groupingBy(UpscaleJob::model, LinkedHashMap::new, Collectors.toList()))
+                        .values()
+                        .forEach(jobScheduler::submitBatch);
+            }
+        } catch (JobQueueFullException e) {
+            jobs.stream()
+                    .filter(job -> !jobScheduler.isQueued(job.imageId()))
+                    .forEach(job -> updateImageProcessingResult(job.imageId(), null, ImageStatus.ERROR));
+            throw e;
+        }
+
+        logger.info("Batch {} accepted: {} images, {} queued, {} served from cache or attached to running jobs.", batchId, images.size(),
+                jobs.size(), images.size() - jobs.size());
+        return new BatchUploadResponse(batchId, images.stream().map(Image::getId).toList());
+    }
+
+    /**
+     * With the shared queue uploads are only stored: processing nodes claim them from the database,
+     * so the local queue capacity does not apply.
+     */
+    private void ensureAcceptingUploads() {
+        if (!uploadEnabled) {
+            throw new UploadsDisabledException("This node does not accept uploads.");
+        }
+        if (!sharedQueue) {
+            jobScheduler.ensureCapacity();
+        }
+    }
+
+    /**
+     * Marks the images a failed batch already stored as ERROR instead of leaving them UPLOADED without a job,
+     * which also releases their admitted cost.
+     */
+    private void abandon(List<Image> images) {
+        images.stream()
+                .filter(ImageService::needsJob)
+                .forEach(image -> updateImageProcessingResult(image.getId(), null, ImageStatus.ERROR));
+    }
+
+    private static boolean needsJob(Image image) {
+        return image.getStatus() == ImageStatus.UPLOADED && image.getCoalescedWith() == null;
+    }
+
+    public BatchStatusResponse getBatchStatus(String batchId) {
+        Map<ImageStatus, Long> statusCounts = new EnumMap<>(ImageStatus.class);
+        for (ImageStatus status : ImageStatus.values()) {
+            statusCounts.put(status, 0L);
+        }
+        imageRepository.countByBatchIdGroupByStatus(batchId)
+                .forEach(count -> statusCounts.put(count.getStatus(), count.getCount()));
+
+        long total = statusCounts.values().stream().mapToLong(Long::longValue).sum();
+        if (total == 0) {
+            throw new ImageNotFoundException("Batch not found with ID: " + batchId);
+        }
+        long finished = ImageStatus.FINISHED.stream().mapToLong(statusCounts::get).sum();
+        return new BatchStatusResponse(batchId, total, statusCounts, (int) (finished * 100 / total));
+    }
+
+    private void storeArchive(MultipartFile archive, UploadRequest request, List<Image> images) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String entryName = Paths.get(entry.getName()).getFileName().toString();
+                if (entry.isDirectory() || !isImageFileName(entryName)) {
+                    continue;
+                }
+                images.add(storeUpload(StreamUtils.nonClosing(zip), entry.getSize(), entryName, request));
+            }
+        }
+    }
+
+    private static boolean isImageFileName(String filename) {
+        String lowerCaseName = filename.toLowerCase();
+        return !lowerCaseName.startsWith(".") && ARCHIVE_IMAGE_EXTENSIONS.stream().anyMatch(lowerCaseName::endsWith);
+    }
+
+    /**
+     * Reads the resolution from the header, passes admission, saves the original and either links it to a cached
+     * result (status PROCESSED), attaches it to an identical running job, or leaves it UPLOADED for the caller to
+     * queue. {@code fileSize} is -1 when it is not known before the file is stored. An upload whose header is not
+     * within {@value #HEADER_PEEK_LIMIT} bytes is stored first and its header read from the file.
+     */
+    private Image storeUpload(InputStream inputStream, long fileSize, String originalFilename, UploadRequest request)
+            throws IOException {
+        UpscalingMethod requestedModel = request.model();
+        int scale = request.scale();
+        BufferedInputStream upload = new BufferedInputStream(inputStream, UPLOAD_BUFFER_SIZE);
+        StoredFile storedFile = null;
+        Resolution resolution = peekResolution(upload, originalFilename, requestedModel, scale);
+        if (resolution == null) {
+            // AUTO has not picked the method whose size limit applies yet; admission checks the stored size.
+            storedFile = saveOriginalFile(upload, originalFilename, requestedModel == UpscalingMethod.AUTO
+                    ? 0 : admissionService.getMaxFileSize(requestedModel, scale));
+            fileSize = storedFile.size();
+            resolution = readStoredResolution(storedFile, originalFilename, requestedModel, scale);
+        }
+
+        UpscalingMethod model = requestedModel;
+        long cost;
+        try {
+            if (requestedModel == UpscalingMethod.AUTO) {
+                model = methodSelector.select(resolution, scale, request.maxLatencyMs()).method();
+            }
+            cost = admissionService.admit(request.clientId(), model, scale, resolution, fileSize);
+        } catch (RuntimeException e) {
+            if (storedFile != null) {
+                deleteQuietly(Paths.get(storedFile.path()));
+            }
+            throw e;
+        }
+
+        boolean tracked = false;
+        try {
+            Image image = storeAdmitted(upload, storedFile, originalFilename, request, model, resolution);
+            if (needsJob(image)) {
+                admissionService.track(image.getId(), cost);
+                tracked = true;
+            }
+            return image;
+        } finally {
+            if (!tracked) {
+                admissionService.release(cost);
+            }
+        }
+    }
+
+    /**
+     * Saves the original unless {@code stored} already holds it, and records the upload. The original is deleted
+     * again if the upload fails before its row is saved, since no sweep would ever find it.
+     */
+    private Image storeAdmitted(InputStream upload, StoredFile stored, String originalFilename, UploadRequest request,
+                                UpscalingMethod model, Resolution resolution) throws IOException {
+        UpscalingMethod requestedModel = request.model();
+        int scale = request.scale();
+        StoredFile storedFile = stored != null ? stored : saveOriginalFile(upload, originalFilename,
+                admissionService.getMaxFileSize(model, scale));
+        String savedOriginalFilePath = storedFile.path();
+        long originalFileSize = storedFile.size();
+        String originalResolution = resolution.toString();
+
+        Image newImage = new Image(
+                originalFilename,
+                savedOriginalFilePath,
+                ImageStatus.UPLOADED,
+                model,
+                scale,
+                originalResolution,
+                originalFileSize
+        );
+        newImage.setContentHash(storedFile.contentHash());
+        newImage.setBatchId(request.batchId());
+        newImage.setRequestedModel(requestedModel);
+        if (requestedModel == UpscalingMethod.AUTO) {
+            newImage.setMaxLatencyMs(request.maxLatencyMs());
+        }
+
+        try {
+            // The cache is checked under the same lock: a job that finished meanwhile is found there.
+            return coalescingService.withLock(newImage, () -> {
+                Optional<Image> cachedImage = resultCacheService.findProcessed(storedFile.contentHash(),
+                        newImage.getModelUsed(), scale);
+                if (cachedImage.isPresent()) {
+                    Image savedImage = imageRepository.save(linkToCachedResult(newImage, cachedImage.get()));
+                    logger.info("Image {} served from result cache (processed file of image {}).",
+                            savedImage.getId(), cachedImage.get().getId());
+                    return savedImage;
+                }
+
+                Optional<Image> attachedImage = coalescingService.attach(newImage);
+                if (attachedImage.isPresent()) {
+                    return attachedImage.get();
+                }
+
+                Image savedImage = imageRepository.save(newImage);
+                previewService.schedule(savedImage);
+                return savedImage;
+            });
+        } catch (RuntimeException e) {
+            if (newImage.getId() == null) {
+                deleteQuietly(Paths.get(savedOriginalFilePath));
+            }
+            throw e;
+        }
+    }
+
+    private Image linkToCachedResult(Image newImage, Image cachedImage) {
+        LocalDateTime now = LocalDateTime.now();
+        newImage.setStatus(ImageStatus.PROCESSED);
+        newImage.setProcessedFilePath(cachedImage.getProcessedFilePath());
+        newImage.setUpscaledResolution(cachedImage.getUpscaledResolution());
+        newImage.setUpscaledFileSize(cachedImage.getUpscaledFileSize());
+        newImage.setProcessStartTime(now);
+        newImage.setProcessEndTime(now);
+        return newImage;
+    }
 
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    /**
+     * Reads the resolution from the image header at the start of the upload and rewinds the stream, so the image
+     * can be checked before anything is stored. Returns {@code null} when the header does not end within
+     * {@value #HEADER_PEEK_LIMIT} bytes.
+     */
+    private Resolution peekResolution(BufferedInputStream upload, String originalFilename, UpscalingMethod model,
+                                      int scale) throws IOException {
+        long start = System.nanoTime();
+        upload.mark(HEADER_PEEK_LIMIT);
+        Resolution resolution = null;
+        boolean headerInWindow = true;
+        try {
+            resolution = ImageHeaderReader.readResolution(upload, HEADER_PEEK_LIMIT);
+        } catch (EOFException e) {
+            logger.debug("Image header of {} is not within the first {} KB, reading it after the upload is stored.",
+                    originalFilename, HEADER_PEEK_LIMIT / 1024);
+            headerInWindow = false;
+        }
+        upload.reset();
+        jobMetrics.recordStage(StageTimings.METADATA, model, scale, System.nanoTime() - start);
+        if (resolution == null && headerInWindow) {
+            throw new InvalidImageException("File is not a valid image: " + originalFilename);
         }
-        
-        String fileExtension = getFileExtension(file);
+        return resolution;
+    }
+
+    /**
+     * Reads the resolution of an original stored before its header was read, deleting it when it is not an image.
+     */
+    private Resolution readStoredResolution(StoredFile storedFile, String originalFilename, UpscalingMethod model,
+                                            int scale) throws IOException {
+        Path path = Paths.get(storedFile.path());
+        long start = System.nanoTime();
+        Resolution resolution;
+        try {
+            resolution = ImageHeaderReader.readResolution(path);
+        } catch (IOException e) {
+            resolution = null;
+        }
+        jobMetrics.recordStage(StageTimings.METADATA, model, scale, System.nanoTime() - start);
+        if (resolution == null) {
+            Files.deleteIfExists(path);
+            throw new InvalidImageException("File is not a valid image: " + originalFilename);
+        }
+        return resolution;
+    }
+
+    /**
+     * Streams the upload into storage, giving up and deleting the file once it exceeds {@code maxBytes}
+     * (0 for no limit).
+     */
+    private StoredFile saveOriginalFile(InputStream uploadStream, String originalFilename, long maxBytes)
+            throws IOException {
+        String fileExtension = getFileExtension(originalFilename);
         String uniqueFileName = UUID.randomUUID() + fileExtension;
-        Path filePath = uploadPath.resolve(uniqueFileName);
+        Path filePath = StorageLayout.resolve(Paths.get(this.uploadPath), uniqueFileName);
+        Files.createDirectories(filePath.getParent());
+
+        MessageDigest digest = newContentDigest();
+        long size = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(UPLOAD_BUFFER_SIZE);
+        try (ReadableByteChannel source = Channels.newChannel(uploadStream);
+             FileChannel target = FileChannel.open(filePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += target.write(buffer);
+                }
+                buffer.clear();
+                if (maxBytes > 0 && size > maxBytes) {
+                    jobMetrics.recordRejected("file_size");
+                    throw new ImageTooLargeException(originalFilename + " exceeds the limit of " + maxBytes + " bytes.");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(filePath);
+            throw e;
+        }
 
-        Files.copy(file.getInputStream(), filePath);
+        return new StoredFile(filePath.toAbsolutePath().toString(), size, HexFormat.of().formatHex(digest.digest()));
+    }
 
-        return filePath.toAbsolutePath().toString();
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
     }
 
-    private String getFileExtension(MultipartFile file) {
-        String filename = file.getOriginalFilename();
+    private String getFileExtension(String filename) {
         String fileExtension = "";
         if (filename.contains(".")) {
             fileExtension = filename.substring(filename.lastIndexOf("."));
@@ -112,31 +504,112 @@ public class ImageService {
         return fileExtension;
     }
 
+    /**
+     * Cancels the job of an image: a queued job is dropped and a running one is stopped. Uploads attached to the
+     * job are not cancelled with it, the oldest of them takes it over. Cancelling a cancelled image does nothing.
+     */
+    public ImageMetadataResponse cancelImage(Long imageId) {
+        Image image = imageRepository.findById(imageId)
+                .orElseThrow(() -> new ImageNotFoundException("Image not found with ID: " + imageId));
+        ImageStatus status = image.getStatus();
+        if (status == ImageStatus.CANCELLED) {
+            return getImageStatus(imageId);
+        }
+        if (status.isFinished()) {
+            throw new ImageAlreadyFinishedException("Image " + imageId + " is already " + status + ".");
+        }
+
+        // Under one lock, so no upload is attached to the job between the promotion and the cancel.
+        Optional<Image> successor = coalescingService.withLock(image, () -> {
+            Optional<Image> promoted = image.getCoalescedWith() == null
+                    ? coalescingService.promoteFollower(image) : Optional.empty();
+            updateImageProcessingResult(imageId, null, ImageStatus.CANCELLED);
+            return promoted;
+        });
+        jobScheduler.remove(imageId);
+        cancellationService.cancel(imageId);
+        logger.info("Image {} cancelled while {}.", imageId, status);
+        if (successor.isPresent() && !sharedQueue) {
+            submitPromoted(successor.get());
+        }
+        return getImageStatus(imageId);
+    }
+
+    private void submitPromoted(Image image) {
+        try {
+            jobScheduler.submit(new UpscaleJob(image.getId(), image.getOriginalFilePath(), image.getModelUsed(),
+                    image.getScaleFactor()));
+        } catch (JobQueueFullException e) {
+            // Due now: the recovery sweep queues it when there is room.
+            image.setNextAttemptAt(LocalDateTime.now());
+            imageRepository.save(image);
+            logger.warn("Image {} will be queued by the next sweep: {}", image.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the outcome of an image's job. An image that is already finished, cancelled or timed out while its
+     * job was running, keeps its status and the late result file is deleted.
+     */
     public void updateImageProcessingResult(Long imageId, String processedFilePath, ImageStatus status) {
-        Image image = getImageById(imageId);
+        Image image = imageRepository.findById(imageId)
+            .orElseThrow(() -> new ImageNotFoundException("Image not found with ID: " + imageId));
+        if (image.getStatus().isFinished()) {
+            logger.info("Image {} is already {}, its {} result is discarded.", imageId, image.getStatus(), status);
+            if (processedFilePath != null && !processedFilePath.equals(image.getProcessedFilePath())) {
+                deleteQuietly(Paths.get(processedFilePath));
+            }
+            return;
+        }
         image.setProcessedFilePath(processedFilePath);
         image.setStatus(status);
         image.setProcessEndTime(LocalDateTime.now());
+        leaseService.release(image);
 
         if (processedFilePath != null) {
             try {
                 Path filePath = Paths.get(processedFilePath);
-                image.setUpscaledResolution(getResolution(filePath));
+                image.setUpscaledResolution(getResolution(filePath, image.getModelUsed(), image.getScaleFactor()));
                 image.setUpscaledFileSize(Files.size(filePath));
+                resultCacheService.register(filePath);
             } catch (IOException e) {
                 logger.error("Could not get metadata for processed file {}: {}", processedFilePath, e.getMessage());
                 throw new ImageProcessingException("Could not get metadata for processed file.", e);
             }
         }
 
-        imageRepository.save(image);
+        boolean finished = status.isFinished();
+        if (finished) {
+            admissionService.release(imageId);
+        }
+        coalescingService.withLock(image, () -> {
+            imageRepository.save(image);
+            if (finished) {
+                coalescingService.completeFollowers(image);
+            }
+            return null;
+        });
+        if (finished) {
+            previewService.delete(image);
+        }
+        progressService.publishStatus(imageId, status);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}: {}", path, e.getMessage());
+        }
     }
 
-    private String getResolution(Path filePath) {
+    private String getResolution(Path filePath, UpscalingMethod model, int scale) {
         try {
-            BufferedImage bimg = ImageIO.read(filePath.toFile());
-            if (bimg != null) {
-                return bimg.getWidth() + "x" + bimg.getHeight();
+            long start = System.nanoTime();
+            Resolution resolution = ImageHeaderReader.readResolution(filePath);
+            jobMetrics.recordStage(StageTimings.METADATA, model, scale, System.nanoTime() - start);
+            if (resolution != null) {
+                return resolution.toString();
             } else {
                 throw new InvalidImageException("File is not a valid image: " + filePath.getFileName());
             }
@@ -147,50 +620,178 @@ public class ImageService {
     }
 
     public ImageMetadataResponse getImageStatus(Long imageId) {
-        Image image = getImageById(imageId);
-
-        return new ImageMetadataResponse(
-            image.getStatus(),
-            image.getOriginalResolution(),
-            image.getUpscaledResolution(),
-            image.getOriginalFileSize() != null ? image.getOriginalFileSize() : 0,
-            image.getUpscaledFileSize() != null ? image.getUpscaledFileSize() : 0,
-            image.getModelUsed(),
-            image.getScaleFactor(),
-            image.getOriginalFileName()
+        ImageSnapshot image = getSnapshot(imageId);
+        // An upload attached to an identical running job reports the progress of that job.
+        ImageSnapshot job = coalescingService.findLeader(image).orElse(image);
+
+        ImageMetadataResponse response = new ImageMetadataResponse(
+            job.status(),
+            image.originalResolution(),
+            image.upscaledResolution(),
+            image.originalFileSize() != null ? image.originalFileSize() : 0,
+            image.upscaledFileSize() != null ? image.upscaledFileSize() : 0,
+            image.modelUsed(),
+            image.scaleFactor(),
+            image.originalFileName()
         );
+        response.setQueueDepth(jobScheduler.getQueueDepth());
+        response.setQueuePosition(jobScheduler.getQueuePosition(job.id()));
+        response.setQueueWaitMs(getQueueWaitMillis(job));
+        response.setAttempts(job.attempts());
+        response.setLastError(job.lastError());
+        response.setPreviewAvailable(image.status() != ImageStatus.PROCESSED && previewService.findPreview(job).isPresent());
+        response.setRequestedModel(image.requestedModel() != null ? image.requestedModel() : image.modelUsed());
+        response.setMaxLatencyMs(image.maxLatencyMs());
+        response.setExpired(image.expiredAt() != null);
+        response.setPlan(planner.plan(image.modelUsed(), image.scaleFactor()).describe());
+        return response;
     }
 
-    public ResponseEntity<Resource> getProcessedImageFile(Long imageId) {
-        Image image = getImageById(imageId);
+    /**
+     * Opens a Server-Sent Events stream for the image. The subscription is registered before the current
+     * state is read, so a change that happens in between is not lost.
+     */
+    public SseEmitter subscribeToProgress(Long imageId) {
+        SseEmitter emitter = progressService.subscribe(imageId);
+        try {
+            progressService.sendSnapshot(imageId, emitter, getImageStatus(imageId));
+        } catch (ImageNotFoundException e) {
+            emitter.complete();
+            throw e;
+        }
+        return emitter;
+    }
 
-        if (!ImageStatus.PROCESSED.equals(image.getStatus()) || image.getProcessedFilePath() == null) {
-            throw new ImageNotProcessedException("Image with ID " + imageId + " is not processed yet. Current status: " + image.getStatus());
+    private long getQueueWaitMillis(ImageSnapshot image) {
+        long queuedMillis = jobScheduler.getQueuedMillis(image.id());
+        if (queuedMillis >= 0) {
+            return queuedMillis;
+        }
+        if (image.uploadTime() != null && image.processStartTime() != null) {
+            return Duration.between(image.uploadTime(), image.processStartTime()).toMillis();
         }
+        return 0;
+    }
 
-        try {
-            Path filePath = Paths.get(image.getProcessedFilePath());
-            if (!Files.exists(filePath)) {
-                logger.error("File not found on disk for image ID {}, path: {}", imageId, filePath);
-                throw new ImageProcessingException("Processed image file is missing on the server.");
+    public FileDownload getProcessedImageFile(Long imageId) {
+        return getProcessedImageFile(getSnapshot(imageId));
+    }
+
+    private FileDownload getProcessedImageFile(ImageSnapshot image) {
+        long imageId = image.id();
+        if (image.expiredAt() != null) {
+            throw new ImageExpiredException("Result of image with ID " + imageId + " was deleted at " + image.expiredAt() + ".");
+        }
+        if (!ImageStatus.PROCESSED.equals(image.status()) || image.processedFilePath() == null) {
+            throw new ImageNotProcessedException("Image with ID " + imageId + " is not processed yet. Current status: " + image.status());
+        }
+
+        Path filePath = Paths.get(image.processedFilePath());
+        if (!Files.exists(filePath)) {
+            logger.error("File not found on disk for image ID {}, path: {}", imageId, filePath);
+            throw new ImageProcessingException("Processed image file is missing on the server.");
+        }
+        String downloadFileName = getDownloadFilename(image.originalFileName(), image.modelUsed(), image.scaleFactor());
+        String storedName = filePath.getFileName().toString();
+        String storedEncoding = storedName.substring(storedName.lastIndexOf('.') + 1).toLowerCase();
+        return new FileDownload(filePath, getContentType(filePath), downloadFileName, true,
+                getResultEntityTag(image, storedEncoding), false);
+    }
+
+    /**
+     * Strong ETag of a result or variant: the content hash of the upload with the method, scale and encoding.
+     * Unlike size and modification time it tells the variants served under one URL apart. Null for images stored
+     * without a content hash.
+     */
+    private static String getResultEntityTag(ImageSnapshot image, String encoding) {
+        if (image.contentHash() == null) {
+            return null;
+        }
+        return "\"" + image.contentHash() + "-" + image.modelUsed() + "-" + image.scaleFactor() + "x-" + encoding + "\"";
+    }
+
+    /**
+     * Returns the result in the requested format: {@code format} ({@code original} to skip conversion) wins over the
+     * {@code Accept} header. A lossless result is only negotiated from {@code Accept} when {@code quality} is
+     * given too: browsers list WebP and AVIF on every image request, and a plain download must not silently become
+     * lossy. Variants are encoded once and cached on disk. When the format only comes from {@code Accept} and
+     * cannot be encoded, the stored result is returned instead of an error.
+     */
+    public FileDownload getProcessedImageFile(Long imageId, String format, Integer quality, String accept) {
+        ImageSnapshot image = getSnapshot(imageId);
+        FileDownload result = getProcessedImageFile(image);
+        if (ORIGINAL_FORMAT.equalsIgnoreCase(format)) {
+            return result;
+        }
+        if (quality != null && (quality < 1 || quality > 100)) {
+            throw new InvalidImageException("Quality must be between 1 and 100: " + quality);
+        }
+
+        OutputFormat storedFormat = OutputFormat.fromFileName(result.path().getFileName().toString());
+        OutputFormat targetFormat;
+        if (format != null) {
+            targetFormat = OutputFormat.fromName(format);
+            if (targetFormat == null) {
+                throw new InvalidImageException("Unsupported output format: " + format);
             }
+        } else if (quality != null || (storedFormat != null && storedFormat.isLossy())) {
+            result = result.varyingByAccept();
+            targetFormat = variantService.negotiate(accept);
+            if (targetFormat == null) {
+                targetFormat = storedFormat;
+            }
+        } else {
+            targetFormat = storedFormat;
+        }
+        if (targetFormat == null || (targetFormat == storedFormat && (quality == null || !targetFormat.isLossy()))) {
+            return result;
+        }
 
-            Resource resource = new UrlResource(filePath.toUri());
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
+        int targetQuality = quality != null && targetFormat.isLossy() ? quality : targetFormat.getDefaultQuality();
+        try {
+            Path variant = variantService.getVariant(result.path(), targetFormat, targetQuality);
+            String encoding = targetFormat.getExtension() + (targetFormat.isLossy() ? "-q" + targetQuality : "");
+            return new FileDownload(variant, targetFormat.getMediaType(),
+                    replaceExtension(result.fileName(), targetFormat.getExtension()), true,
+                    getResultEntityTag(image, encoding), result.variesByAccept());
+        } catch (RuntimeException e) {
+            if (format != null) {
+                throw e;
             }
+            logger.warn("Serving image {} as stored, {} variant is not available: {}", imageId, targetFormat, e.getMessage());
+            return result;
+        }
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(contentType));
-            String downloadFileName = getDownloadFilename(image.getOriginalFileName(), image.getModelUsed(), image.getScaleFactor());
-            headers.setContentDisposition(ContentDisposition.inline().filename(downloadFileName).build());
+    private static String replaceExtension(String fileName, String extension) {
+        int dotIndex = fileName.lastIndexOf('.');
+        return (dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName) + "." + extension;
+    }
+
+    /**
+     * Returns the bicubic preview of an image that is still being processed, or the full result once it is done.
+     */
+    public FileDownload getPreviewImageFile(Long imageId) {
+        ImageSnapshot image = getSnapshot(imageId);
+        if (ImageStatus.PROCESSED.equals(image.status())) {
+            return getProcessedImageFile(imageId);
+        }
+
+        ImageSnapshot job = coalescingService.findLeader(image).orElse(image);
+        Path previewPath = previewService.findPreview(job)
+                .orElseThrow(() -> new ImageNotProcessedException("Preview of image with ID " + imageId
+                        + " is not available. Current status: " + image.status()));
+        String downloadFileName = getDownloadFilename(image.originalFileName(), UpscalingMethod.BICUBIC, image.scaleFactor());
+        // The preview is replaced by the result at the same URL, so it must not be cached.
+        return new FileDownload(previewPath, getContentType(previewPath), downloadFileName, false);
+    }
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(resource);
+    private String getContentType(Path filePath) {
+        try {
+            String contentType = Files.probeContentType(filePath);
+            return contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
         } catch (IOException e) {
-            logger.error("Error preparing file for download for image ID {}: {}", imageId, e.getMessage());
+            logger.error("Error probing content type of {}: {}", filePath.getFileName(), e.getMessage());
             throw new ImageProcessingException("Error reading processed file from disk.", e);
         }
     }
@@ -207,8 +808,18 @@ public class ImageService {
         return downloadFileName;
     }
 
-    private Image getImageById(Long imageId) {
-        return imageRepository.findById(imageId)
+    public CacheStatsResponse getCacheStats() {
+        return resultCacheService.getStats();
+    }
+
+    private ImageSnapshot getSnapshot(Long imageId) {
+        return statusCache.find(imageId)
             .orElseThrow(() -> new ImageNotFoundException("Image not found with ID: " + imageId));
     }
+
+    private record StoredFile(String path, long size, String contentHash) {
+    }
+
+    private record UploadRequest(UpscalingMethod model, int scale, Long maxLatencyMs, String batchId, String clientId) {
+    }
 }
@@ -0,0 +1,90 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageSnapshot;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Write-through cache of image snapshots for status, preview and result requests, so polling clients do not
+ * reach the database. Every insert, update and load of an {@link Image} is written here by
+ * {@link upscale_project.UpscaleSPG.repository.ImageStatusListener}; a write never replaces a newer version.
+ * Finished images are dropped {@code app.status-cache.finished-ttl} after they were cached. With the shared
+ * queue other nodes update the rows too, so unfinished entries are re-read after
+ * {@code app.status-cache.shared-refresh}. At {@code app.status-cache.max-entries} new images are not cached.
+ */
+@Component
+public class ImageStatusCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStatusCache.class);
+
+    private final ImageRepository imageRepository;
+    private final LongKeyMap<Entry> entries;
+    private final int maxEntries;
+    private final long finishedTtlNanos;
+    private final long sharedRefreshNanos;
+
+    @Autowired
+    public ImageStatusCache(ImageRepository imageRepository,
+                            @Value("${app.status-cache.max-entries}") int maxEntries,
+                            @Value("${app.status-cache.finished-ttl}") Duration finishedTtl,
+                            @Value("${app.status-cache.shared-refresh}") Duration sharedRefresh,
+                            @Value("${app.jobs.shared-queue}") boolean sharedQueue) {
+        this.imageRepository = imageRepository;
+        this.entries = new LongKeyMap<>(Math.min(maxEntries, 1024));
+        this.maxEntries = maxEntries;
+        this.finishedTtlNanos = finishedTtl.toNanos();
+        this.sharedRefreshNanos = sharedQueue ? sharedRefresh.toNanos() : Long.MAX_VALUE;
+    }
+
+    public Optional<ImageSnapshot> find(long imageId) {
+        Entry entry = entries.get(imageId);
+        if (entry != null && !isExpired(entry, System.nanoTime())) {
+            return Optional.of(entry.snapshot());
+        }
+        // Loading the entity stores it through the listener.
+        return imageRepository.findById(imageId).map(ImageSnapshot::of);
+    }
+
+    public void update(Image image) {
+        if (image.getId() == null) {
+            return;
+        }
+        if (entries.get(image.getId()) == null && entries.size() >= maxEntries) {
+            return;
+        }
+        Entry entry = new Entry(ImageSnapshot.of(image), System.nanoTime());
+        entries.merge(image.getId(), entry,
+                (current, updated) -> updated.snapshot().version() >= current.snapshot().version() ? updated : current);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.sweep-interval}", initialDelayString = "${app.jobs.sweep-interval}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        int evicted = entries.removeIf(entry -> isExpired(entry, now));
+        if (evicted > 0) {
+            logger.debug("Evicted {} image snapshots, {} cached.", evicted, entries.size());
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        long age = now - entry.cachedAtNanos();
+        return age >= (entry.snapshot().isFinished() ? finishedTtlNanos : sharedRefreshNanos);
+    }
+
+    private record Entry(ImageSnapshot snapshot, long cachedAtNanos) {
+    }
+}
@@ -0,0 +1,169 @@
+package upscale_project.UpscaleSPG.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+import upscale_project.UpscaleSPG.worker.WorkerCancellation;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops jobs running on this node: when their images are cancelled, and when they run longer than the deadline
+ * of their method ({@code app.jobs.deadline.<method>}, zero for none). The deadline counts from the moment the job
+ * is taken from the queue; a batch group gets one deadline per image. A stopped job's Python worker is killed and
+ * replaced, the in-JVM engines stop at their next progress report. Cancelling one image of a batch group only
+ * drops its result, unless every image of the group is cancelled. With the shared queue, images cancelled through
+ * another node are picked up with the lease heartbeat.
+ */
+@Service
+public class JobCancellationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobCancellationService.class);
+
+    private final ImageRepository imageRepository;
+    private final boolean sharedQueue;
+    private final EnumMap<UpscalingMethod, Duration> deadlines = new EnumMap<>(UpscalingMethod.class);
+    private final Map<Long, RunningJob> running = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-deadline").daemon().factory());
+
+    @Autowired
+    public JobCancellationService(ImageRepository imageRepository, Environment env,
+                                  @Value("${app.jobs.shared-queue}") boolean sharedQueue) {
+        this.imageRepository = imageRepository;
+        this.sharedQueue = sharedQueue;
+        for (UpscalingMethod method : UpscalingMethod.values()) {
+            String key = "app.jobs.deadline." + method.toString().toLowerCase();
+            deadlines.put(method, env.getProperty(key, Duration.class, Duration.ZERO));
+        }
+    }
+
+    /**
+     * Registers a job that is about to run and starts its deadline. The caller closes it when the job is done.
+     */
+    public RunningJob start(List<Long> imageIds, UpscalingMethod method) {
+        RunningJob job = new RunningJob(imageIds);
+        imageIds.forEach(imageId -> running.put(imageId, job));
+        Duration deadline = deadlines.get(method).multipliedBy(imageIds.size());
+        if (!deadline.isZero()) {
+            job.deadline = timer.schedule(() -> job.timeOut(method, deadline), deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return job;
+    }
+
+    /**
+     * Stops the work for a cancelled image if it is running on this node. Returns false if it is not.
+     */
+    public boolean cancel(Long imageId) {
+        RunningJob job = running.get(imageId);
+        if (job == null) {
+            return false;
+        }
+        job.cancel(imageId);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.heartbeat-interval}", initialDelayString = "${app.jobs.heartbeat-interval}")
+    public void cancelJobsCancelledElsewhere() {
+        if (!sharedQueue || running.isEmpty()) {
+            return;
+        }
+        for (Long imageId : imageRepository.findIdsWithStatus(List.copyOf(running.keySet()),
+                List.of(ImageStatus.CANCELLED))) {
+            logger.info("Image {} was cancelled on another node, stopping its job.", imageId);
+            cancel(imageId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Images processed together by one job, and whether they have been stopped.
+     */
+    public final class RunningJob implements AutoCloseable {
+
+        private final List<Long> imageIds;
+        private final Set<Long> cancelled = ConcurrentHashMap.newKeySet();
+        private final WorkerCancellation workerCancellation = new WorkerCancellation();
+        private volatile boolean timedOut;
+        private volatile ScheduledFuture<?> deadline;
+
+        private RunningJob(List<Long> imageIds) {
+            this.imageIds = imageIds;
+        }
+
+        public WorkerCancellation getWorkerCancellation() {
+            return workerCancellation;
+        }
+
+        /**
+         * Returns CANCELLED or TIMED_OUT if the image was stopped, otherwise null.
+         */
+        public ImageStatus getOutcome(Long imageId) {
+            if (cancelled.contains(imageId)) {
+                return ImageStatus.CANCELLED;
+            }
+            return timedOut ? ImageStatus.TIMED_OUT : null;
+        }
+
+        public boolean isStopped() {
+            return workerCancellation.isCancelled();
+        }
+
+        /**
+         * Throws {@link CancellationException} once the whole job has been stopped. Called between steps of the
+         * in-JVM engines.
+         */
+        public void throwIfStopped() {
+            if (isStopped()) {
+                throw new CancellationException(timedOut ? "Job ran past its deadline." : "Job was cancelled.");
+            }
+        }
+
+        private void cancel(Long imageId) {
+            cancelled.add(imageId);
+            if (cancelled.containsAll(imageIds)) {
+                logger.info("Stopping the job of images {}: cancelled.", imageIds);
+                workerCancellation.cancel();
+            }
+        }
+
+        private void timeOut(UpscalingMethod method, Duration deadline) {
+            logger.warn("Stopping the {} job of images {}: it ran longer than {} s.", method, imageIds,
+                    deadline.toSeconds());
+            timedOut = true;
+            workerCancellation.cancel();
+        }
+
+        @Override
+        public void close() {
+            ScheduledFuture<?> pending = deadline;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            imageIds.forEach(imageId -> running.remove(imageId, this));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.exception.JobQueueFullException;
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes jobs from the database when several nodes share it ({@code app.jobs.shared-queue=true}).
+ * Each poll claims at most as many jobs as the local scheduler can start right away, so nodes with more
+ * free capacity take more work. A claim is a save of the {@link Image} version: when two nodes race for
+ * the same row, the loser gets an optimistic locking failure and moves on to the next candidate.
+ */
+@Service
+public class JobClaimService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobClaimService.class);
+
+    // Candidates fetched per free slot, so a few rows lost to other nodes do not leave slots empty.
+    private static final int CANDIDATES_PER_SLOT = 2;
+
+    private final ImageRepository imageRepository;
+    private final UpscaleJobScheduler jobScheduler;
+    private final JobLeaseService leaseService;
+    private final ImageService imageService;
+    private final boolean sharedQueue;
+    private final boolean processingEnabled;
+
+    @Autowired
+    public JobClaimService(ImageRepository imageRepository, UpscaleJobScheduler jobScheduler,
+                           JobLeaseService leaseService, ImageService imageService,
+                           @Value("${app.jobs.shared-queue}") boolean sharedQueue,
+                           @Value("${app.node.processing-enabled}") boolean processingEnabled) {
+        if (!sharedQueue && !processingEnabled) {
+            throw new IllegalStateException("app.node.processing-enabled=false requires app.jobs.shared-queue=true.");
+        }
+        this.imageRepository = imageRepository;
+        this.jobScheduler = jobScheduler;
+        this.leaseService = leaseService;
+        this.imageService = imageService;
+        this.sharedQueue = sharedQueue;
+        this.processingEnabled = processingEnabled;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.claim-interval}", initialDelayString = "${app.jobs.claim-interval}")
+    public void claimJobs() {
+        if (!sharedQueue || !processingEnabled) {
+            return;
+        }
+        int freeCapacity = jobScheduler.getFreeCapacity();
+        if (freeCapacity == 0) {
+            return;
+        }
+
+        List<Image> candidates = imageRepository.findClaimableJobs(LocalDateTime.now(),
+                ImageStatus.UPLOADED, ImageStatus.PROCESSING, PageRequest.of(0, freeCapacity * CANDIDATES_PER_SLOT));
+
+        // Jobs with the same (model, scale) are queued together, like a batch upload on a single node.
+        Map<String, List<UpscaleJob>> claimed = new LinkedHashMap<>();
+        int claimedCount = 0;
+        for (Image image : candidates) {
+            if (claimedCount == freeCapacity) {
+                break;
+            }
+            if (tryClaim(image)) {
+                claimed.computeIfAbsent(image.getModelUsed() + "x" + image.getScaleFactor(), key -> new ArrayList<>())
+                        .add(new UpscaleJob(image.getId(), image.getOriginalFilePath(),
+                                image.getModelUsed(), image.getScaleFactor()));
+                claimedCount++;
+            }
+        }
+        if (claimedCount == 0) {
+            return;
+        }
+
+        logger.info("Node {} claimed {} jobs ({} free slots).", leaseService.getNodeId(), claimedCount, freeCapacity);
+        for (List<UpscaleJob> jobs : claimed.values()) {
+            try {
+                jobScheduler.submitBatch(jobs);
+            } catch (JobQueueFullException e) {
+                List<Long> ids = jobs.stream().map(UpscaleJob::imageId).toList();
+                leaseService.abandon(ids);
+                logger.warn("Node {} could not queue {} claimed jobs: {}", leaseService.getNodeId(), ids.size(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean tryClaim(Image image) {
+        try {
+            if (image.getStatus() == ImageStatus.PROCESSING && !leaseService.hasAttemptsLeft(image)) {
+                // Same rule as the single-node recovery: a job that keeps killing its node is not retried forever.
+                image.setLastError("Processing was interrupted " + image.getAttempts() + " times.");
+                leaseService.claim(image);
+                imageRepository.save(image);
+                imageService.updateImageProcessingResult(image.getId(), null, ImageStatus.ERROR);
+                return false;
+            }
+
+            image.setStatus(ImageStatus.UPLOADED);
+            leaseService.claim(image);
+            imageRepository.save(image);
+            return true;
+        } catch (ObjectOptimisticLockingFailureException e) {
+            leaseService.release(image);
+            logger.debug("Image {} was claimed by another node.", image.getId());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageSnapshot;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates identical jobs in flight. An upload whose content hash, method and scale match an unfinished job
+ * is stored attached to that job ({@link Image#getCoalescedWith()}) instead of being queued, and is completed with
+ * the job's result or error when the job finishes. Attaching and finishing are serialized per key, so an upload is
+ * never attached to a job that has already been completed. The lock only covers this node: uploads attached while
+ * the job finished on another node are completed by the periodic sweep.
+ */
+@Service
+public class JobCoalescingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobCoalescingService.class);
+
+    private static final int LOCK_STRIPES = 64;
+    private static final List<ImageStatus> UNFINISHED = List.of(ImageStatus.UPLOADED, ImageStatus.PROCESSING);
+
+    private final ImageRepository imageRepository;
+    private final ImageProgressService progressService;
+    private final JobMetrics jobMetrics;
+    private final ImageStatusCache statusCache;
+    private final boolean enabled;
+    // ReentrantLock rather than synchronized: the lock is held across JDBC calls and must not pin virtual threads.
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    @Autowired
+    public JobCoalescingService(ImageRepository imageRepository, ImageProgressService progressService,
+                                JobMetrics jobMetrics, ImageStatusCache statusCache,
+                                @Value("${app.jobs.coalescing-enabled}") boolean enabled) {
+        this.imageRepository = imageRepository;
+        this.progressService = progressService;
+        this.jobMetrics = jobMetrics;
+        this.statusCache = statusCache;
+        this.enabled = enabled;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs {@code action} while holding the lock of the image's (content hash, method, scale) key.
+     */
+    public <T> T withLock(Image image, Supplier<T> action) {
+        int key = Objects.hash(image.getContentHash(), image.getModelUsed(), image.getScaleFactor());
+        ReentrantLock lock = locks[Math.floorMod(key, LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Saves a new upload attached to an identical unfinished job, if there is one. Must be called under
+     * {@link #withLock}; an empty result means the upload has to be processed itself.
+     */
+    public Optional<Image> attach(Image newImage) {
+        if (!enabled || newImage.getContentHash() == null) {
+            return Optional.empty();
+        }
+        Optional<Image> leader = imageRepository
+                .findFirstByContentHashAndModelUsedAndScaleFactorAndCoalescedWithIsNullAndStatusInOrderByIdAsc(
+                        newImage.getContentHash(), newImage.getModelUsed(), newImage.getScaleFactor(), UNFINISHED);
+        if (leader.isEmpty()) {
+            return Optional.empty();
+        }
+
+        newImage.setCoalescedWith(leader.get().getId());
+        Image follower = imageRepository.save(newImage);
+        progressService.follow(leader.get().getId(), follower.getId());
+        jobMetrics.recordCoalesced(follower.getModelUsed(), follower.getScaleFactor());
+        logger.info("Image {} attached to the identical running job of image {}.", follower.getId(), leader.get().getId());
+        return Optional.of(follower);
+    }
+
+    /**
+     * Returns the job an unfinished attached upload is waiting for, whose state it reports.
+     */
+    public Optional<ImageSnapshot> findLeader(ImageSnapshot image) {
+        if (image.coalescedWith() == null || image.isFinished()) {
+            return Optional.empty();
+        }
+        return statusCache.find(image.coalescedWith()).filter(leader -> !leader.isFinished());
+    }
+
+    /**
+     * Completes the uploads attached to a job that has just been saved as PROCESSED or ERROR.
+     * Must be called under {@link #withLock} together with that save.
+     */
+    public void completeFollowers(Image leader) {
+        for (Image follower : imageRepository.findByCoalescedWithAndStatusIn(leader.getId(), UNFINISHED)) {
+            complete(follower, leader);
+        }
+    }
+
+    /**
+     * Detaches the uploads waiting for a job that is being cancelled: the oldest becomes a job of its own and the
+     * others are attached to it. Must be called under {@link #withLock} together with the cancel save.
+     * Returns the new job, which the caller queues, or empty if nothing was attached.
+     */
+    public Optional<Image> promoteFollower(Image leader) {
+        List<Image> followers = imageRepository.findByCoalescedWithAndStatusIn(leader.getId(), UNFINISHED);
+        if (followers.isEmpty()) {
+            return Optional.empty();
+        }
+        Image successor = followers.stream().min(Comparator.comparing(Image::getId)).orElseThrow();
+        successor.setCoalescedWith(null);
+        successor = imageRepository.save(successor);
+        for (Image follower : followers) {
+            if (follower.getId().equals(successor.getId())) {
+                continue;
+            }
+            follower.setCoalescedWith(successor.getId());
+            imageRepository.save(follower);
+            progressService.follow(successor.getId(), follower.getId());
+        }
+        logger.info("Image {} takes over the job of cancelled image {} for {} attached uploads.",
+                successor.getId(), leader.getId(), followers.size() - 1);
+        return Optional.of(successor);
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.sweep-interval}", initialDelayString = "${app.jobs.sweep-interval}")
+    public void completeOrphanedFollowers() {
+        for (Image follower : imageRepository.findFollowersOfFinishedJobs(UNFINISHED, ImageStatus.FINISHED)) {
+            imageRepository.findById(follower.getCoalescedWith()).ifPresent(leader -> withLock(leader, () -> {
+                try {
+                    complete(follower, leader);
+                } catch (ObjectOptimisticLockingFailureException e) {
+                    logger.debug("Image {} was completed by another node.", follower.getId());
+                }
+                return null;
+            }));
+        }
+    }
+
+    private void complete(Image follower, Image leader) {
+        follower.setStatus(leader.getStatus());
+        follower.setProcessedFilePath(leader.getProcessedFilePath());
+        follower.setUpscaledResolution(leader.getUpscaledResolution());
+        follower.setUpscaledFileSize(leader.getUpscaledFileSize());
+        follower.setProcessStartTime(leader.getProcessStartTime());
+        follower.setProcessEndTime(LocalDateTime.now());
+        follower.setLastError(leader.getLastError());
+        imageRepository.save(follower);
+        progressService.publishStatus(follower.getId(), follower.getStatus());
+    }
+}
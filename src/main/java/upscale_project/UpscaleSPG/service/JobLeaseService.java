@@ -0,0 +1,137 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the durable job state on {@link Image}: attempt count, processing lease of this node and retry schedule.
+ * Leases of running jobs are renewed by a heartbeat, so a job whose lease expires belongs to a stopped node.
+ */
+@Service
+public class JobLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final ImageRepository imageRepository;
+    private final String nodeId;
+    private final Duration leaseDuration;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Set<Long> leasedImageIds = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public JobLeaseService(ImageRepository imageRepository,
+                           @Value("${app.node.id}") String nodeId,
+                           @Value("${app.jobs.lease-duration}") Duration leaseDuration,
+                           @Value("${app.jobs.max-attempts}") int maxAttempts,
+                           @Value("${app.jobs.retry-backoff}") Duration retryBackoff) {
+        this.imageRepository = imageRepository;
+        this.nodeId = nodeId;
+        this.leaseDuration = leaseDuration;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Takes the lease of a job that this node is going to queue: the caller saves the image after this call.
+     */
+    public void claim(Image image) {
+        image.setLeaseOwner(nodeId);
+        image.setLeaseExpiresAt(LocalDateTime.now().plus(leaseDuration));
+        image.setNextAttemptAt(null);
+        leasedImageIds.add(image.getId());
+    }
+
+    /**
+     * Starts a new attempt: the caller saves the image after this call.
+     */
+    public void acquire(Image image) {
+        image.setAttempts(image.getAttempts() + 1);
+        image.setProcessedBy(nodeId);
+        claim(image);
+    }
+
+    /**
+     * Ends the current attempt: the caller saves the image after this call.
+     */
+    public void release(Image image) {
+        image.setLeaseOwner(null);
+        image.setLeaseExpiresAt(null);
+        leasedImageIds.remove(image.getId());
+    }
+
+    /**
+     * Gives up leases of jobs this node has claimed but will not run: they expire now, so other nodes can claim them.
+     */
+    public void abandon(List<Long> imageIds) {
+        leasedImageIds.removeAll(imageIds);
+        imageRepository.renewLeases(imageIds, nodeId, LocalDateTime.now());
+    }
+
+    /**
+     * Records a failed attempt. Returns true if the job was put back to UPLOADED with a retry time
+     * (backoff doubles with every attempt), false if it has no attempts left and should be marked as ERROR.
+     */
+    public boolean scheduleRetry(Long imageId, String error) {
+        Image image = imageRepository.findById(imageId).orElse(null);
+        if (image == null || image.getStatus().isFinished()) {
+            return false;
+        }
+        release(image);
+        image.setLastError(truncate(error));
+
+        boolean retry = image.getAttempts() < maxAttempts;
+        if (retry) {
+            Duration delay = retryBackoff.multipliedBy(1L << Math.min(image.getAttempts() - 1, 20));
+            image.setStatus(ImageStatus.UPLOADED);
+            image.setNextAttemptAt(LocalDateTime.now().plus(delay));
+            logger.warn("Image {} failed attempt {}/{}, retrying in {} s: {}",
+                    imageId, image.getAttempts(), maxAttempts, delay.toSeconds(), error);
+        } else {
+            logger.error("Image {} failed after {} attempts: {}", imageId, image.getAttempts(), error);
+        }
+        imageRepository.save(image);
+        return retry;
+    }
+
+    public boolean hasAttemptsLeft(Image image) {
+        return image.getAttempts() < maxAttempts;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.heartbeat-interval}", initialDelayString = "${app.jobs.heartbeat-interval}")
+    public void renewLeases() {
+        if (leasedImageIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(leasedImageIds);
+        int renewed = imageRepository.renewLeases(ids, nodeId, LocalDateTime.now().plus(leaseDuration));
+        logger.debug("Renewed {} of {} job leases held by node {}.", renewed, ids.size(), nodeId);
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
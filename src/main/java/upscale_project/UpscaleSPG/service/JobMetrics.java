@@ -0,0 +1,129 @@
+package upscale_project.UpscaleSPG.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.StageTimings;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meters of the upscaling pipeline, exported at {@code /actuator/prometheus}: a {@code upscale.job.stage} timer
+ * per stage, method and scale (see {@link StageTimings}), {@code upscale.job.failures} per worker exit code,
+ * {@code upscale.jobs.coalesced} for uploads attached to an identical running job, {@code upscale.storage.expired}
+ * for images whose files were deleted, {@code upscale.admission.rejected} per reason, {@code upscale.jobs.stopped}
+ * for cancelled and timed out jobs, the {@code upscale.jobs.in.flight} gauge and the {@code upscale.admission.in.flight.cost} gauge.
+ */
+@Component
+public class JobMetrics {
+
+    private final MeterRegistry registry;
+    private final AtomicInteger jobsInFlight = new AtomicInteger();
+
+    @Autowired
+    public JobMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("upscale.jobs.in.flight", jobsInFlight, AtomicInteger::get)
+                .description("Upscaling jobs taken from the queue and not finished yet")
+                .register(registry);
+    }
+
+    public void recordStage(String stage, UpscalingMethod method, int scale, long nanos) {
+        stageTimer(stage, method, scale).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records stages measured for a group of jobs processed together, split evenly between the jobs.
+     */
+    public void recordStages(StageTimings timings, UpscalingMethod method, int scale, int jobs) {
+        timings.asMap().forEach((stage, nanos) -> {
+            Timer timer = stageTimer(stage, method, scale);
+            for (int i = 0; i < jobs; i++) {
+                timer.record(nanos / jobs, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public void recordFailure(UpscalingMethod method, int scale, int exitCode) {
+        Counter.builder("upscale.job.failures")
+                .description("Failed upscaling attempts by worker exit code, -1 when the worker did not finish")
+                .tag("method", method.toString())
+                .tag("scale", String.valueOf(scale))
+                .tag("exit_code", String.valueOf(exitCode))
+                .register(registry)
+                .increment();
+    }
+
+    public void recordCoalesced(UpscalingMethod method, int scale) {
+        Counter.builder("upscale.jobs.coalesced")
+                .description("Uploads attached to an identical running job instead of being processed")
+                .tag("method", method.toString())
+                .tag("scale", String.valueOf(scale))
+                .register(registry)
+                .increment();
+    }
+
+    public void recordStopped(UpscalingMethod method, int scale, ImageStatus outcome) {
+        Counter.builder("upscale.jobs.stopped")
+                .description("Running jobs stopped because they were cancelled or ran past their deadline")
+                .tag("method", method.toString())
+                .tag("scale", String.valueOf(scale))
+                .tag("outcome", outcome.toString())
+                .register(registry)
+                .increment();
+    }
+
+    public void recordExpired(String reason, int images, long bytes) {
+        Counter.builder("upscale.storage.expired")
+                .description("Images whose files were deleted by the retention policy or the disk quota")
+                .tag("reason", reason)
+                .register(registry)
+                .increment(images);
+        Counter.builder("upscale.storage.expired.bytes")
+                .description("Stored bytes released by deleting the files of expired images")
+                .baseUnit("bytes")
+                .tag("reason", reason)
+                .register(registry)
+                .increment(bytes);
+    }
+
+    public void recordRejected(String reason) {
+        Counter.builder("upscale.admission.rejected")
+                .description("Uploads refused by admission control")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void registerInFlightCost(AtomicLong inFlightCost) {
+        Gauge.builder("upscale.admission.in.flight.cost", inFlightCost, AtomicLong::get)
+                .description("Estimated cost of admitted jobs that have not finished, in weighted output pixels")
+                .register(registry);
+    }
+
+    public void jobsStarted(int jobs) {
+        jobsInFlight.addAndGet(jobs);
+    }
+
+    public void jobsFinished(int jobs) {
+        jobsInFlight.addAndGet(-jobs);
+    }
+
+    private Timer stageTimer(String stage, UpscalingMethod method, int scale) {
+        return Timer.builder("upscale.job.stage")
+                .description("Time spent in one stage of an upscaling job")
+                .tag("stage", stage)
+                .tag("method", method.toString())
+                .tag("scale", String.valueOf(scale))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
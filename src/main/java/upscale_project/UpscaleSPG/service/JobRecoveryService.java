@@ -0,0 +1,152 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.exception.JobQueueFullException;
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Puts jobs that exist only in the database back on the in-memory queue: orphans of a previous run at startup,
+ * and later any job whose retry is due or whose lease has expired. Both are read {@code app.jobs.recovery-batch-size}
+ * rows at a time, so a large backlog is never loaded at once.
+ */
+@Service
+public class JobRecoveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRecoveryService.class);
+
+    private final ImageRepository imageRepository;
+    private final UpscaleJobScheduler jobScheduler;
+    private final JobLeaseService leaseService;
+    private final ImageService imageService;
+    private final int batchSize;
+
+    @Value("${app.jobs.shared-queue}")
+    private boolean sharedQueue;
+
+    @Autowired
+    public JobRecoveryService(ImageRepository imageRepository, UpscaleJobScheduler jobScheduler,
+                              JobLeaseService leaseService, ImageService imageService,
+                              @Value("${app.jobs.recovery-batch-size}") int batchSize) {
+        this.imageRepository = imageRepository;
+        this.jobScheduler = jobScheduler;
+        this.leaseService = leaseService;
+        this.imageService = imageService;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOrphanedJobs() {
+        if (sharedQueue) {
+            // Leases left by the previous run of this node are dropped, so any node can claim those jobs right away.
+            int released = imageRepository.releaseLeases(leaseService.getNodeId());
+            if (released > 0) {
+                logger.info("Released {} job leases left by the previous run of node {}.", released, leaseService.getNodeId());
+            }
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int recovered = requeueInBatches(afterId -> imageRepository.findOrphanedJobs(leaseService.getNodeId(), now,
+                ImageStatus.UPLOADED, ImageStatus.PROCESSING, afterId, PageRequest.of(0, batchSize)));
+        if (recovered > 0) {
+            logger.info("Recovered {} unfinished jobs from the database.", recovered);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.sweep-interval}", initialDelayString = "${app.jobs.sweep-interval}")
+    public void requeueDueJobs() {
+        if (sharedQueue) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int due = requeueInBatches(afterId -> imageRepository.findDueJobs(now, ImageStatus.UPLOADED,
+                ImageStatus.PROCESSING, afterId, PageRequest.of(0, batchSize)));
+        if (due > 0) {
+            logger.info("Re-queued {} jobs with a due retry or an expired lease.", due);
+        }
+    }
+
+    /**
+     * Requeues every page {@code findAfter} returns for the last id of the previous one. Once the queue is full
+     * the remaining uploads are only marked due, for a later sweep. Returns the number of jobs found.
+     */
+    private int requeueInBatches(LongFunction<List<Image>> findAfter) {
+        int found = 0;
+        long afterId = 0;
+        boolean queueFull = false;
+        List<Image> page;
+        do {
+            page = findAfter.apply(afterId);
+            if (page.isEmpty()) {
+                break;
+            }
+            found += page.size();
+            afterId = page.get(page.size() - 1).getId();
+            if (queueFull) {
+                markDue(page);
+            } else {
+                queueFull = !requeue(page);
+            }
+        } while (page.size() == batchSize);
+        return found;
+    }
+
+    /**
+     * Returns {@code false} when the queue filled up, leaving the rest of {@code images} due.
+     */
+    private boolean requeue(List<Image> images) {
+        for (int i = 0; i < images.size(); i++) {
+            Image image = images.get(i);
+            if (jobScheduler.isQueued(image.getId())) {
+                continue;
+            }
+            if (image.getStatus() == ImageStatus.PROCESSING && !leaseService.hasAttemptsLeft(image)) {
+                // The attempt was interrupted by a crash: a job that keeps killing its node is not retried forever.
+                image.setLastError("Processing was interrupted " + image.getAttempts() + " times.");
+                imageRepository.save(image);
+                imageService.updateImageProcessingResult(image.getId(), null, ImageStatus.ERROR);
+                continue;
+            }
+
+            image.setStatus(ImageStatus.UPLOADED);
+            image.setLeaseOwner(null);
+            image.setLeaseExpiresAt(null);
+            image.setNextAttemptAt(null);
+            imageRepository.save(image);
+            try {
+                jobScheduler.submit(new UpscaleJob(image.getId(), image.getOriginalFilePath(),
+                        image.getModelUsed(), image.getScaleFactor()));
+            } catch (JobQueueFullException e) {
+                // Leave the rest due: the next sweep picks them up when the queue has room.
+                markDue(images.subList(i, images.size()));
+                logger.warn("Upscaling queue is full, the remaining recovered jobs will be queued later.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markDue(List<Image> images) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Image image : images) {
+            if (image.getStatus() == ImageStatus.UPLOADED) {
+                image.setNextAttemptAt(now);
+                imageRepository.save(image);
+            }
+        }
+    }
+}
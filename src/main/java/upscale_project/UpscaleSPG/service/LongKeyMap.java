@@ -0,0 +1,211 @@
+package upscale_project.UpscaleSPG.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Hash map from primitive {@code long} keys to non-null values: open addressing with linear probing and
+ * backward-shift deletion, so there are no boxed keys or entry objects. Reads are optimistic and only take
+ * the lock when they raced with a write; writes are exclusive.
+ */
+final class LongKeyMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    LongKeyMap(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        Object value = find(table, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = find(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        V result = (V) value;
+        return result;
+    }
+
+    void put(long key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            insertAndGrow(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void insertAndGrow(long key, Object value) {
+        if (insert(table, key, value)) {
+            size++;
+            if (size * 2 > table.keys.length) {
+                resize(table.keys.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Stores {@code value}, or {@code merge(current, value)} if the key is present.
+     */
+    void merge(long key, V value, BinaryOperator<V> merge) {
+        long stamp = lock.writeLock();
+        try {
+            @SuppressWarnings("unchecked")
+            V current = (V) find(table, key);
+            insertAndGrow(key, current != null ? merge.apply(current, value) : value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            if (delete(table, key)) {
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes every entry whose value matches and returns how many were removed.
+     */
+    int removeIf(Predicate<? super V> filter) {
+        long stamp = lock.writeLock();
+        try {
+            List<Long> matching = new ArrayList<>();
+            for (int i = 0; i < table.keys.length; i++) {
+                @SuppressWarnings("unchecked")
+                V value = (V) table.values[i];
+                if (value != null && filter.test(value)) {
+                    matching.add(table.keys[i]);
+                }
+            }
+            for (long key : matching) {
+                delete(table, key);
+            }
+            size -= matching.size();
+            return matching.size();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void resize(int capacity) {
+        Table resized = new Table(capacity);
+        for (int i = 0; i < table.keys.length; i++) {
+            if (table.values[i] != null) {
+                insert(resized, table.keys[i], table.values[i]);
+            }
+        }
+        table = resized;
+    }
+
+    private static Object find(Table table, long key) {
+        int mask = table.keys.length - 1;
+        // Bounded, so an optimistic read that races with a write always ends and gets validated.
+        for (int i = index(key, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            Object value = table.values[i];
+            if (value == null) {
+                return null;
+            }
+            if (table.keys[i] == key) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean insert(Table table, long key, Object value) {
+        int mask = table.keys.length - 1;
+        int i = index(key, mask);
+        while (table.values[i] != null) {
+            if (table.keys[i] == key) {
+                table.values[i] = value;
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table.keys[i] = key;
+        table.values[i] = value;
+        return true;
+    }
+
+    private static boolean delete(Table table, long key) {
+        int mask = table.keys.length - 1;
+        int hole = index(key, mask);
+        while (table.values[hole] != null && table.keys[hole] != key) {
+            hole = (hole + 1) & mask;
+        }
+        if (table.values[hole] == null) {
+            return false;
+        }
+        table.values[hole] = null;
+
+        // Shift back the following entries of the run that could not be stored at their home slot,
+        // so lookups never stop early at the new hole.
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            if (table.values[next] == null) {
+                return true;
+            }
+            int home = index(table.keys[next], mask);
+            boolean homeBetween = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!homeBetween) {
+                table.keys[hole] = table.keys[next];
+                table.values[hole] = table.values[next];
+                table.values[next] = null;
+                hole = next;
+            }
+        }
+    }
+
+    private static int index(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Keys and values are swapped together on resize, so an optimistic reader never pairs arrays of different sizes.
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+import upscale_project.UpscaleSPG.processing.OnnxInferenceEngine;
+import upscale_project.UpscaleSPG.worker.PythonWorkerPool;
+import upscale_project.UpscaleSPG.worker.WorkerWarmupJob;
+import upscale_project.UpscaleSPG.worker.WorkerWarmupModel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Startup phase of processing nodes: checks that every configured {@code app.weights.path.*} file exists, runs
+ * sample images through the in-JVM interpolation kernels and preloads the models listed in
+ * {@code app.warmup.models} into every Python worker, or into ONNX Runtime when that backend serves them. Runners finish before Spring Boot reports readiness
+ * ({@code /actuator/health/readiness}) and before jobs left in the database are queued again, so the first
+ * jobs after a deploy do not pay for loading the models.
+ */
+@Service
+public class ModelWarmupService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWarmupService.class);
+
+    private static final String WEIGHTS_PROPERTY_PREFIX = "app.weights.path.";
+    private static final int INTERPOLATION_SAMPLE_SIZE = 256;
+    // Enough passes over the band loops for the JIT to compile them.
+    private static final int INTERPOLATION_ITERATIONS = 5;
+
+    private final PythonWorkerPool pythonWorkerPool;
+    private final InterpolationEngine interpolationEngine;
+    private final OnnxInferenceEngine onnxEngine;
+    private final ConfigurableEnvironment environment;
+    private final boolean enabled;
+    private final List<String> models;
+    private final boolean requireWeights;
+    private final boolean processingEnabled;
+
+    @Autowired
+    public ModelWarmupService(PythonWorkerPool pythonWorkerPool, InterpolationEngine interpolationEngine,
+                              OnnxInferenceEngine onnxEngine, ConfigurableEnvironment environment,
+                              @Value("${app.warmup.enabled}") boolean enabled,
+                              @Value("${app.warmup.models}") List<String> models,
+                              @Value("${app.warmup.require-weights}") boolean requireWeights,
+                              @Value("${app.node.processing-enabled}") boolean processingEnabled) {
+        this.pythonWorkerPool = pythonWorkerPool;
+        this.interpolationEngine = interpolationEngine;
+        this.onnxEngine = onnxEngine;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.models = models;
+        this.requireWeights = requireWeights;
+        this.processingEnabled = processingEnabled;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (!processingEnabled) {
+            return;
+        }
+        validateWeights();
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<WorkerWarmupModel> workerModels = new ArrayList<>();
+        for (String entry : models) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalStateException("app.warmup.models entries must look like MODEL:SCALE, got: " + entry);
+            }
+            UpscalingMethod method = UpscalingMethod.valueOf(parts[0].trim().toUpperCase());
+            int scale = Integer.parseInt(parts[1].trim());
+
+            if (InterpolationEngine.supports(method)) {
+                warmUpInterpolation(method, scale);
+                continue;
+            }
+            if (onnxEngine.supports(method, scale)) {
+                onnxEngine.warmUp(method, scale);
+                continue;
+            }
+            String weightsPath = environment.getProperty(WEIGHTS_PROPERTY_PREFIX + method.toString().toLowerCase() + ".scale" + scale);
+            if (weightsPath == null || !Files.isRegularFile(Paths.get(weightsPath))) {
+                logger.warn("Not preloading {} x{}: no weights file configured or found ({}).", method, scale, weightsPath);
+                continue;
+            }
+            workerModels.add(new WorkerWarmupModel(method.toString(), scale, weightsPath));
+        }
+
+        if (!workerModels.isEmpty()) {
+            try {
+                int workers = pythonWorkerPool.warmUp(new WorkerWarmupJob(workerModels));
+                logger.info("Preloaded {} models into {} Python workers.", workerModels.size(), workers);
+            } catch (IOException e) {
+                logger.warn("Python workers could not be warmed up, the first jobs will load their models: {}",
+                        e.getMessage());
+            }
+        }
+        logger.info("Warm-up finished in {} ms.", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void validateWeights() {
+        Set<String> propertyNames = new TreeSet<>();
+        for (PropertySource<?> source : environment.getPropertySources()) {
+            if (source instanceof EnumerablePropertySource<?> enumerable) {
+                for (String name : enumerable.getPropertyNames()) {
+                    if (name.startsWith(WEIGHTS_PROPERTY_PREFIX)) {
+                        propertyNames.add(name);
+                    }
+                }
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String name : propertyNames) {
+            String path = environment.getProperty(name);
+            if (path == null || !Files.isRegularFile(Paths.get(path))) {
+                missing.add(name + "=" + path);
+            }
+        }
+        if (missing.isEmpty()) {
+            logger.info("All {} configured weight files are present.", propertyNames.size());
+        } else if (requireWeights) {
+            throw new IllegalStateException("Missing model weight files: " + String.join(", ", missing));
+        } else {
+            logger.warn("Missing model weight files, jobs using them will fail: {}", String.join(", ", missing));
+        }
+    }
+
+    private void warmUpInterpolation(UpscalingMethod method, int scale) {
+        BufferedImage sample = new BufferedImage(INTERPOLATION_SAMPLE_SIZE, INTERPOLATION_SAMPLE_SIZE,
+                BufferedImage.TYPE_3BYTE_BGR);
+        new Random(0).nextBytes(((DataBufferByte) sample.getRaster().getDataBuffer()).getData());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < INTERPOLATION_ITERATIONS; i++) {
+            interpolationEngine.resize(sample, scale, method);
+        }
+        logger.info("Warmed up in-JVM {} x{} in {} ms.", method, scale, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,136 @@
+package upscale_project.UpscaleSPG.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageSnapshot;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+import upscale_project.UpscaleSPG.processing.StageTimings;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders an in-JVM bicubic upscale of every deep-model job right after upload, so a client has something to
+ * show while the model runs. The preview lives at a fixed path derived from the image ID, next to the uploads,
+ * and is deleted once the job reaches PROCESSED or ERROR.
+ */
+@Service
+public class PreviewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewService.class);
+
+    private final InterpolationEngine interpolationEngine;
+    private final ImageRepository imageRepository;
+    private final ImageProgressService progressService;
+    private final JobMetrics jobMetrics;
+    private final boolean enabled;
+    private final ExecutorService executor;
+
+    @Value("${app.upload.path}")
+    private String uploadPath;
+
+    @Autowired
+    public PreviewService(InterpolationEngine interpolationEngine, ImageRepository imageRepository,
+                          ImageProgressService progressService, JobMetrics jobMetrics,
+                          @Value("${app.preview.enabled}") boolean enabled,
+                          @Value("${app.preview.threads}") int threads) {
+        this.interpolationEngine = interpolationEngine;
+        this.imageRepository = imageRepository;
+        this.progressService = progressService;
+        this.jobMetrics = jobMetrics;
+        this.enabled = enabled;
+        this.executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("preview-", 1).factory());
+    }
+
+    /**
+     * Starts rendering the preview of a freshly uploaded image. Interpolation jobs get none: their result is
+     * as cheap as the preview would be.
+     */
+    public void schedule(Image image) {
+        if (!enabled || InterpolationEngine.supports(image.getModelUsed())) {
+            return;
+        }
+        Long imageId = image.getId();
+        Path original = Paths.get(image.getOriginalFilePath());
+        UpscalingMethod model = image.getModelUsed();
+        int scale = image.getScaleFactor();
+        executor.execute(() -> render(imageId, original, model, scale));
+    }
+
+    public Optional<Path> findPreview(ImageSnapshot image) {
+        Path preview = getPreviewPath(image.id(), image.originalFilePath());
+        return Files.exists(preview) ? Optional.of(preview) : Optional.empty();
+    }
+
+    public void delete(Image image) {
+        try {
+            Files.deleteIfExists(getPreviewPath(image.getId(), image.getOriginalFilePath()));
+        } catch (IOException e) {
+            logger.warn("Could not delete preview of image {}: {}", image.getId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void render(Long imageId, Path original, UpscalingMethod model, int scale) {
+        Path preview = getPreviewPath(imageId, original.toString());
+        // Written under a temporary name with the same extension, so a half-written file is never served.
+        Path partial = preview.resolveSibling("partial_" + preview.getFileName());
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(preview.getParent());
+            if (!interpolationEngine.resizeFile(original, partial, scale, UpscalingMethod.BICUBIC, new StageTimings())) {
+                logger.info("No preview for image {}: the format is not supported by the in-JVM engine.", imageId);
+                return;
+            }
+            Files.move(partial, preview, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to render preview of image {}: {}", imageId, e.getMessage());
+            deleteQuietly(partial);
+            return;
+        }
+        jobMetrics.recordStage(StageTimings.PREVIEW, model, scale, System.nanoTime() - start);
+
+        // A fast job may have finished while the preview was rendered: its result replaces the preview.
+        Optional<Image> image = imageRepository.findById(imageId);
+        if (image.isEmpty() || image.get().getStatus().isFinished()) {
+            deleteQuietly(preview);
+            return;
+        }
+        logger.info("Preview of image {} ready in {} ms.", imageId, (System.nanoTime() - start) / 1_000_000);
+        progressService.publishPreview(imageId, image.get().getStatus());
+    }
+
+    private Path getPreviewPath(Long imageId, String originalFilePath) {
+        String fileName = Paths.get(originalFilePath).getFileName().toString();
+        int dotIndex = fileName.lastIndexOf('.');
+        String extension = dotIndex >= 0 ? fileName.substring(dotIndex) : "";
+        return Paths.get(uploadPath, "preview", imageId + extension);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+}
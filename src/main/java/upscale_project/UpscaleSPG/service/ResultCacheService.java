@@ -0,0 +1,196 @@
+package upscale_project.UpscaleSPG.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import upscale_project.UpscaleSPG.model.CacheStatsResponse;
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Finds stored results of identical uploads and keeps the processed files within {@code app.cache.max-size},
+ * least recently used first. The cache does not delete files itself: evicted files are handed to
+ * {@link StorageLifecycleService}, which expires the images that use them, so every such image reports 410 and
+ * a shared file is deleted with the last of them. A hit on an evicted file before that brings it back.
+ */
+@Service
+public class ResultCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultCacheService.class);
+
+    private static final String VARIANTS_DIRECTORY = "variants";
+
+    private final ImageRepository imageRepository;
+    private final boolean enabled;
+    private final long maxSizeBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Access-ordered: the first entry is the least recently used processed file.
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Evicted files whose images have not been expired yet.
+    private final LinkedHashMap<Path, Entry> evicted = new LinkedHashMap<>();
+    private long totalSizeBytes;
+
+    @Value("${app.upload.path}")
+    private String uploadPath;
+
+    @Autowired
+    public ResultCacheService(ImageRepository imageRepository,
+                              @Value("${app.cache.enabled}") boolean enabled,
+                              @Value("${app.cache.max-size}") DataSize maxSize) {
+        this.imageRepository = imageRepository;
+        this.enabled = enabled;
+        this.maxSizeBytes = maxSize.toBytes();
+    }
+
+    @PostConstruct
+    public void loadExistingResults() {
+        Path processedDir = Paths.get(uploadPath, "processed");
+        if (!enabled || !Files.isDirectory(processedDir)) {
+            return;
+        }
+
+        // Results live in shard subdirectories; re-encoded variants next to them are not cache entries.
+        try (Stream<Path> files = Files.walk(processedDir)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !VARIANTS_DIRECTORY.equals(file.getParent().getFileName().toString()))
+                    .sorted(Comparator.comparing(ResultCacheService::lastAccessTime))
+                    .forEach(this::register);
+            logger.info("Result cache initialized with {} files ({} bytes).", entries.size(), totalSizeBytes);
+        } catch (IOException e) {
+            logger.error("Failed to scan processed directory {}: {}", processedDir, e.getMessage());
+        }
+    }
+
+    public Optional<Image> findProcessed(String contentHash, UpscalingMethod model, int scale) {
+        if (!enabled || contentHash == null) {
+            return Optional.empty();
+        }
+
+        Optional<Image> cached = imageRepository
+                .findFirstByContentHashAndModelUsedAndScaleFactorAndStatusOrderByIdDesc(
+                        contentHash, model, scale, ImageStatus.PROCESSED)
+                .filter(image -> image.getProcessedFilePath() != null
+                        && Files.exists(Paths.get(image.getProcessedFilePath())));
+
+        if (cached.isPresent()) {
+            hits.incrementAndGet();
+            touch(Paths.get(cached.get().getProcessedFilePath()));
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    public synchronized void register(Path processedFile) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            long size = Files.size(processedFile);
+            Path key = processedFile.toAbsolutePath();
+            evicted.remove(key);
+            Entry previous = entries.put(key, new Entry(processedFile.toString(), size));
+            totalSizeBytes += size - (previous != null ? previous.size() : 0);
+        } catch (IOException e) {
+            logger.warn("Could not add {} to the result cache: {}", processedFile, e.getMessage());
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Drops a processed file whose images have expired.
+     */
+    public synchronized void forget(Path processedFile) {
+        Path key = processedFile.toAbsolutePath();
+        evicted.remove(key);
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalSizeBytes -= entry.size();
+        }
+    }
+
+    /**
+     * Returns the processed files evicted since the last call, as stored in {@link Image#getProcessedFilePath()}.
+     */
+    public synchronized List<String> takeEvicted() {
+        List<String> processedFilePaths = new ArrayList<>();
+        evicted.values().forEach(entry -> processedFilePaths.add(entry.processedFilePath()));
+        evicted.clear();
+        return processedFilePaths;
+    }
+
+    /**
+     * Whether the processed file is in the cache again, e.g. after a hit on it following its eviction.
+     */
+    public synchronized boolean isCached(String processedFilePath) {
+        return entries.containsKey(Paths.get(processedFilePath).toAbsolutePath());
+    }
+
+    public synchronized CacheStatsResponse getStats() {
+        return new CacheStatsResponse(hits.get(), misses.get(), entries.size(), totalSizeBytes, maxSizeBytes);
+    }
+
+    private synchronized void touch(Path processedFile) {
+        Path key = processedFile.toAbsolutePath();
+        if (entries.get(key) != null) {
+            return;
+        }
+        Entry entry = evicted.remove(key);
+        if (entry != null) {
+            entries.put(key, entry);
+            totalSizeBytes += entry.size();
+            logger.info("Processed file {} was used again before its images expired, kept in the result cache.", key);
+            evictIfNeeded();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+        while (totalSizeBytes > maxSizeBytes && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Path, Entry> eldest = iterator.next();
+            iterator.remove();
+            totalSizeBytes -= eldest.getValue().size();
+            evicted.put(eldest.getKey(), eldest.getValue());
+            logger.info("Evicted processed file {} ({} bytes) from the result cache.", eldest.getKey(),
+                    eldest.getValue().size());
+        }
+    }
+
+    private static long lastAccessTime(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastAccessTime().toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private record Entry(String processedFilePath, long size) {
+    }
+}
@@ -0,0 +1,274 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.exception.ImageProcessingException;
+import upscale_project.UpscaleSPG.exception.InvalidImageException;
+import upscale_project.UpscaleSPG.model.OutputFormat;
+import upscale_project.UpscaleSPG.worker.PythonEncoderPool;
+import upscale_project.UpscaleSPG.worker.WorkerEncodeJob;
+import upscale_project.UpscaleSPG.worker.WorkerResult;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Re-encodes processed results into other formats and keeps every (format, quality) variant on disk in a
+ * {@code variants} directory next to the result, so a variant is encoded once no matter how often it is requested.
+ * Formats ImageIO can write (PNG, JPEG) are encoded in the JVM; WebP and AVIF go to the OpenCV of a dedicated
+ * {@link PythonEncoderPool}. At most {@code app.variants.encoders} variants are encoded in the JVM at once, and as
+ * many by the encoder pool, so downloads neither flood the CPU nor take the workers of upscaling jobs.
+ */
+@Service
+public class ResultVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultVariantService.class);
+
+    // A format that failed to encode is not picked by Accept negotiation for a while, so views keep working.
+    private static final Duration NEGOTIATION_BACKOFF = Duration.ofMinutes(10);
+
+    private static final String VARIANTS_DIRECTORY = "variants";
+
+    private final PythonEncoderPool encoderPool;
+    private final Semaphore jvmEncoders;
+    private final Map<Path, CompletableFuture<Path>> encoding = new ConcurrentHashMap<>();
+    private final Set<OutputFormat> unsupportedFormats = ConcurrentHashMap.newKeySet();
+    private final Map<OutputFormat, Instant> failedAt = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ResultVariantService(PythonEncoderPool encoderPool, @Value("${app.variants.encoders}") int encoders) {
+        this.encoderPool = encoderPool;
+        this.jvmEncoders = new Semaphore(encoders, true);
+    }
+
+    /**
+     * Returns the format the client prefers among the image types listed explicitly in its {@code Accept} header,
+     * or null if it names none of them. Wildcards say nothing about a preference and are ignored.
+     */
+    public OutputFormat negotiate(String accept) {
+        if (accept == null) {
+            return null;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+
+        OutputFormat best = null;
+        double bestQuality = 0;
+        for (MediaType mediaType : mediaTypes) {
+            OutputFormat format = mediaType.isWildcardType() || mediaType.isWildcardSubtype()
+                    ? null : OutputFormat.fromMediaType(mediaType.getType() + "/" + mediaType.getSubtype());
+            double quality = mediaType.getQualityValue();
+            if (format == null || quality == 0 || !isNegotiable(format)) {
+                continue;
+            }
+            if (best == null || quality > bestQuality || (quality == bestQuality && format.ordinal() < best.ordinal())) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the variant of {@code result} in the given format, encoding it first if it does not exist yet.
+     * Concurrent requests for the same variant wait for a single encoding.
+     */
+    public Path getVariant(Path result, OutputFormat format, int quality) {
+        Path variant = getVariantPath(result, format, quality);
+        if (Files.exists(variant)) {
+            return variant;
+        }
+
+        CompletableFuture<Path> encoded = new CompletableFuture<>();
+        CompletableFuture<Path> running = encoding.putIfAbsent(variant, encoded);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause
+                        : new ImageProcessingException("Failed to encode " + format + " variant.", e.getCause());
+            }
+        }
+
+        try {
+            if (!Files.exists(variant)) {
+                encode(result, variant, format, quality);
+            }
+            encoded.complete(variant);
+            return variant;
+        } catch (RuntimeException e) {
+            failedAt.put(format, Instant.now());
+            encoded.completeExceptionally(e);
+            throw e;
+        } finally {
+            encoding.remove(variant);
+        }
+    }
+
+    /**
+     * Deletes all encoded variants of a result that is being removed.
+     */
+    public void deleteVariants(Path result) {
+        Path variantsDir = result.resolveSibling(VARIANTS_DIRECTORY);
+        if (!Files.isDirectory(variantsDir)) {
+            return;
+        }
+        String baseName = getBaseName(result);
+        try (Stream<Path> variants = Files.list(variantsDir)) {
+            variants.filter(variant -> baseName.equals(getBaseName(variant))
+                            || variant.getFileName().toString().startsWith(baseName + "_q"))
+                    .forEach(ResultVariantService::deleteQuietly);
+        } catch (IOException e) {
+            logger.warn("Could not delete variants of {}: {}", result.getFileName(), e.getMessage());
+        }
+    }
+
+    private boolean isNegotiable(OutputFormat format) {
+        Instant failed = failedAt.get(format);
+        return !unsupportedFormats.contains(format)
+                && (failed == null || failed.plus(NEGOTIATION_BACKOFF).isBefore(Instant.now()));
+    }
+
+    private static Path getVariantPath(Path result, OutputFormat format, int quality) {
+        String suffix = format.isLossy() ? "_q" + quality : "";
+        return result.resolveSibling(VARIANTS_DIRECTORY).resolve(getBaseName(result) + suffix + "." + format.getExtension());
+    }
+
+    private static String getBaseName(Path file) {
+        String fileName = file.getFileName().toString();
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+    }
+
+    private void encode(Path result, Path variant, OutputFormat format, int quality) {
+        if (unsupportedFormats.contains(format)) {
+            throw new InvalidImageException("Format " + format + " is not supported by this server.");
+        }
+        // Written under a temporary name with the same extension, so a half-written variant is never served.
+        Path partial = variant.resolveSibling("partial_" + variant.getFileName());
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(variant.getParent());
+            if (ImageIO.getImageWritersByMIMEType(format.getMediaType()).hasNext()) {
+                encodeInJvmBounded(result, partial, format, quality);
+            } else {
+                encodeWithWorker(result, partial, format, quality);
+            }
+            Files.move(partial, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new ImageProcessingException("Failed to encode " + format + " variant: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+        logger.info("Encoded {} variant {} in {} ms.", format, variant.getFileName(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void encodeInJvmBounded(Path result, Path output, OutputFormat format, int quality) throws IOException {
+        try {
+            jvmEncoders.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingException("Interrupted while encoding " + format + " variant.", e);
+        }
+        try {
+            encodeInJvm(result, output, format, quality);
+        } finally {
+            jvmEncoders.release();
+        }
+    }
+
+    private static void encodeInJvm(Path result, Path output, OutputFormat format, int quality) throws IOException {
+        BufferedImage image = ImageIO.read(result.toFile());
+        if (image == null) {
+            throw new IOException("ImageIO cannot read " + result.getFileName());
+        }
+        if (format == OutputFormat.JPEG && image.getColorModel().hasAlpha()) {
+            image = withoutAlpha(image);
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(format.getMediaType());
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (format.isLossy() && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+        }
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output.toFile())) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void encodeWithWorker(Path result, Path output, OutputFormat format, int quality) throws IOException {
+        WorkerResult workerResult;
+        try {
+            workerResult = encoderPool.execute(new WorkerEncodeJob(result.toString(), output.toString(),
+                    format.name().toLowerCase(), quality));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingException("Interrupted while encoding " + format + " variant.", e);
+        }
+
+        if (workerResult.exitCode() == WorkerEncodeJob.UNSUPPORTED_FORMAT_EXIT_CODE) {
+            unsupportedFormats.add(format);
+            throw new InvalidImageException("Format " + format + " is not supported by this server: " + workerResult.error());
+        }
+        if (workerResult.exitCode() != 0) {
+            throw new ImageProcessingException("Failed to encode " + format + " variant: " + workerResult.error(),
+                    workerResult.exitCode());
+        }
+    }
+
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        BufferedImage bgr = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = bgr.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return bgr;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package upscale_project.UpscaleSPG.service;
+
+import java.nio.file.Path;
+
+/**
+ * Spreads stored files over two levels of subdirectories named after the start of the file name, e.g.
+ * {@code 3f/a2/3fa2c1...png}. Stored file names start with a random UUID, so the 65536 directories fill evenly
+ * and none of them holds millions of entries. Full paths are kept in the database, so files stored before
+ * sharding are still found.
+ */
+final class StorageLayout {
+
+    private static final int SHARD_LENGTH = 2;
+
+    private StorageLayout() {
+    }
+
+    static Path resolve(Path directory, String fileName) {
+        if (fileName.length() < 2 * SHARD_LENGTH) {
+            return directory.resolve(fileName);
+        }
+        return directory.resolve(fileName.substring(0, SHARD_LENGTH))
+                .resolve(fileName.substring(SHARD_LENGTH, 2 * SHARD_LENGTH))
+                .resolve(fileName);
+    }
+}
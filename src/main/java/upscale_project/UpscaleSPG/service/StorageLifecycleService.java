@@ -0,0 +1,245 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Deletes the files of finished images: PROCESSED images once they are older than
+ * {@code app.retention.processed-ttl}, ERROR, CANCELLED and TIMED_OUT ones once they are older than
+ * {@code app.retention.error-ttl}, and the oldest results first while the stored originals and results exceed
+ * {@code app.storage.quota}. Results evicted by {@link ResultCacheService} are expired here too, so this is the
+ * only place stored files are deleted. Rows are kept and marked with {@link Image#getExpiredAt()}, so clients get
+ * 410 instead of 404. A processed file shared with images served from the result cache is deleted with the last
+ * of them. Unfinished jobs are never touched. A zero TTL or quota disables that rule.
+ */
+@Service
+public class StorageLifecycleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageLifecycleService.class);
+
+    private static final String REASON_TTL = "ttl";
+    private static final String REASON_QUOTA = "quota";
+    private static final String REASON_CACHE = "cache";
+
+    private final ImageRepository imageRepository;
+    private final JobCoalescingService coalescingService;
+    private final ResultCacheService resultCacheService;
+    private final ResultVariantService variantService;
+    private final PreviewService previewService;
+    private final JobMetrics jobMetrics;
+    private final Duration processedTtl;
+    private final Duration errorTtl;
+    private final long quotaBytes;
+    private final int batchSize;
+
+    @Autowired
+    public StorageLifecycleService(ImageRepository imageRepository, JobCoalescingService coalescingService,
+                                   ResultCacheService resultCacheService, ResultVariantService variantService,
+                                   PreviewService previewService, JobMetrics jobMetrics,
+                                   @Value("${app.retention.processed-ttl}") Duration processedTtl,
+                                   @Value("${app.retention.error-ttl}") Duration errorTtl,
+                                   @Value("${app.storage.quota}") DataSize quota,
+                                   @Value("${app.storage.sweep-batch-size}") int batchSize) {
+        this.imageRepository = imageRepository;
+        this.coalescingService = coalescingService;
+        this.resultCacheService = resultCacheService;
+        this.variantService = variantService;
+        this.previewService = previewService;
+        this.jobMetrics = jobMetrics;
+        this.processedTtl = processedTtl;
+        this.errorTtl = errorTtl;
+        this.quotaBytes = quota.toBytes();
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.sweep-interval}", initialDelayString = "${app.storage.sweep-interval}")
+    public void sweep() {
+        expireOlderThan(ImageStatus.PROCESSED, processedTtl);
+        expireOlderThan(ImageStatus.ERROR, errorTtl);
+        expireOlderThan(ImageStatus.CANCELLED, errorTtl);
+        expireOlderThan(ImageStatus.TIMED_OUT, errorTtl);
+        enforceQuota();
+    }
+
+    /**
+     * Expires every image that uses a processed file evicted from the result cache, under their coalescing lock,
+     * unless a new upload was served from the file in the meantime. A file no image uses is deleted directly.
+     */
+    @Scheduled(fixedDelayString = "${app.cache.eviction-interval}", initialDelayString = "${app.cache.eviction-interval}")
+    public void expireEvictedResults() {
+        int images = 0;
+        long bytes = 0;
+        for (String processedFilePath : resultCacheService.takeEvicted()) {
+            List<Image> users = imageRepository.findByProcessedFilePathAndStatusAndExpiredAtIsNull(processedFilePath,
+                    ImageStatus.PROCESSED);
+            if (users.isEmpty()) {
+                deleteProcessedFile(Paths.get(processedFilePath));
+                continue;
+            }
+            // Every image of one processed file has the same content hash, method and scale, hence the same lock.
+            long[] released = coalescingService.withLock(users.get(0), () -> {
+                long[] total = {0, 0};
+                if (resultCacheService.isCached(processedFilePath)) {
+                    return total;
+                }
+                for (Image image : imageRepository.findByProcessedFilePathAndStatusAndExpiredAtIsNull(
+                        processedFilePath, ImageStatus.PROCESSED)) {
+                    long imageBytes = expire(image);
+                    if (imageBytes >= 0) {
+                        total[0]++;
+                        total[1] += imageBytes;
+                    }
+                }
+                return total;
+            });
+            images += (int) released[0];
+            bytes += released[1];
+        }
+
+        if (images > 0) {
+            jobMetrics.recordExpired(REASON_CACHE, images, bytes);
+            logger.info("Result cache: deleted files of {} images whose results were evicted ({} bytes).", images, bytes);
+        }
+    }
+
+    private void expireOlderThan(ImageStatus status, Duration ttl) {
+        if (ttl.isZero()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        int images = 0;
+        long bytes = 0;
+        List<Image> expired;
+        int expiredInPass;
+        do {
+            // Expired rows drop out of the query, so the first page is always the next one. A page of rows that
+            // were all skipped would come back unchanged, so the sweep stops there and retries next time.
+            expired = imageRepository.findByStatusAndExpiredAtIsNullAndProcessEndTimeBefore(status, cutoff,
+                    PageRequest.of(0, batchSize));
+            expiredInPass = 0;
+            for (Image image : expired) {
+                long released = expire(image);
+                if (released >= 0) {
+                    expiredInPass++;
+                    bytes += released;
+                }
+            }
+            images += expiredInPass;
+        } while (expired.size() == batchSize && expiredInPass > 0);
+
+        if (images > 0) {
+            jobMetrics.recordExpired(REASON_TTL, images, bytes);
+            logger.info("Retention: deleted files of {} {} images older than {} ({} bytes).", images, status, ttl, bytes);
+        }
+    }
+
+    private void enforceQuota() {
+        if (quotaBytes <= 0) {
+            return;
+        }
+        long storedBytes = imageRepository.sumStoredBytes();
+        if (storedBytes <= quotaBytes) {
+            return;
+        }
+
+        long initialBytes = storedBytes;
+        int images = 0;
+        while (storedBytes > quotaBytes) {
+            List<Image> oldest = imageRepository.findByStatusInAndExpiredAtIsNullOrderByProcessEndTimeAsc(ImageStatus.FINISHED,
+                    PageRequest.of(0, batchSize));
+            if (oldest.isEmpty()) {
+                logger.warn("Storage quota of {} bytes exceeded by unfinished jobs: {} bytes stored.", quotaBytes, storedBytes);
+                break;
+            }
+            int expiredInPass = 0;
+            for (Image image : oldest) {
+                long released = expire(image);
+                if (released >= 0) {
+                    expiredInPass++;
+                    storedBytes -= released;
+                }
+                if (storedBytes <= quotaBytes) {
+                    break;
+                }
+            }
+            images += expiredInPass;
+            // Skipped rows stay at the head of the query: a pass that expired none of them would repeat forever.
+            if (expiredInPass == 0) {
+                logger.warn("Storage quota of {} bytes still exceeded ({} bytes stored): the oldest {} images could"
+                        + " not be expired now, retrying at the next sweep.", quotaBytes, storedBytes, oldest.size());
+                break;
+            }
+        }
+
+        if (images > 0) {
+            jobMetrics.recordExpired(REASON_QUOTA, images, initialBytes - storedBytes);
+            logger.info("Quota: deleted files of the {} oldest finished images, {} of {} bytes stored.", images,
+                    storedBytes, quotaBytes);
+        }
+    }
+
+    /**
+     * Deletes the files of one image and marks it expired. Runs under the coalescing lock of the image, so an
+     * identical upload is not linked to the result while it is deleted. Returns the bytes released as counted by
+     * {@link ImageRepository#sumStoredBytes()}, or -1 if the image was changed concurrently and has been left alone.
+     */
+    private long expire(Image image) {
+        return coalescingService.withLock(image, () -> {
+            String processedFilePath = image.getProcessedFilePath();
+            boolean processedFileShared = processedFilePath != null
+                    && imageRepository.existsByProcessedFilePathAndExpiredAtIsNullAndIdNot(processedFilePath, image.getId());
+
+            image.setExpiredAt(LocalDateTime.now());
+            try {
+                imageRepository.save(image);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                logger.debug("Image {} changed while expiring it, skipped.", image.getId());
+                return -1L;
+            }
+
+            long released = image.getOriginalFileSize() != null ? image.getOriginalFileSize() : 0;
+            if (image.getOriginalFilePath() != null) {
+                deleteFile(Paths.get(image.getOriginalFilePath()));
+            }
+            if (processedFilePath != null && !processedFileShared) {
+                released += image.getUpscaledFileSize() != null ? image.getUpscaledFileSize() : 0;
+                deleteProcessedFile(Paths.get(processedFilePath));
+            }
+            previewService.delete(image);
+            return released;
+        });
+    }
+
+    private void deleteProcessedFile(Path processedFile) {
+        deleteFile(processedFile);
+        variantService.deleteVariants(processedFile);
+        resultCacheService.forget(processedFile);
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measured processing speed of each (method, scale) in milliseconds per output megapixel, and the average job
+ * duration of each method. Both are exponentially weighted averages over jobs finished on this node. Until a
+ * (method, scale) has been measured, {@code app.auto.prior-ms-per-megapixel.<method>} is used instead.
+ */
+@Component
+public class ThroughputEstimator {
+
+    // Weight of the newest measurement: recent jobs dominate after a handful of samples.
+    private static final double SMOOTHING = 0.2;
+    private static final double PIXELS_PER_MEGAPIXEL = 1_000_000.0;
+    // Job size assumed for the average duration of a method nobody has measured yet.
+    private static final double PRIOR_JOB_MEGAPIXELS = 4.0;
+
+    private final EnumMap<UpscalingMethod, Double> priorMillisPerMegapixel = new EnumMap<>(UpscalingMethod.class);
+    private final Map<Key, Double> millisPerMegapixel = new ConcurrentHashMap<>();
+    private final Map<UpscalingMethod, Double> jobMillis = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ThroughputEstimator(Environment env) {
+        for (UpscalingMethod method : UpscalingMethod.values()) {
+            String key = "app.auto.prior-ms-per-megapixel." + method.toString().toLowerCase();
+            Double prior = env.getProperty(key, Double.class);
+            if (prior != null) {
+                priorMillisPerMegapixel.put(method, prior);
+            }
+        }
+    }
+
+    public void record(UpscalingMethod method, int scale, long outputPixels, long nanos) {
+        if (outputPixels <= 0) {
+            return;
+        }
+        double millis = nanos / 1e6;
+        millisPerMegapixel.merge(new Key(method, scale), millis / (outputPixels / PIXELS_PER_MEGAPIXEL),
+                ThroughputEstimator::smooth);
+        jobMillis.merge(method, millis, ThroughputEstimator::smooth);
+    }
+
+    public double getMillisPerMegapixel(UpscalingMethod method, int scale) {
+        Double measured = millisPerMegapixel.get(new Key(method, scale));
+        return measured != null ? measured : priorMillisPerMegapixel.getOrDefault(method, 0.0);
+    }
+
+    public long estimateMillis(UpscalingMethod method, int scale, long outputPixels) {
+        return Math.round(getMillisPerMegapixel(method, scale) * outputPixels / PIXELS_PER_MEGAPIXEL);
+    }
+
+    /**
+     * Average duration of one job of the method, used to estimate how long queued jobs will take.
+     */
+    public long getAverageJobMillis(UpscalingMethod method) {
+        Double measured = jobMillis.get(method);
+        return Math.round(measured != null ? measured
+                : priorMillisPerMegapixel.getOrDefault(method, 0.0) * PRIOR_JOB_MEGAPIXELS);
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+
+    private record Key(UpscalingMethod method, int scale) {
+    }
+}
@@ -0,0 +1,47 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.model.Resolution;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+/**
+ * Picks the tile size for EDSR/SRGAN inference so that one tile's output stays within
+ * {@code app.tiling.max-tile-output-pixels}. Images up to {@code app.tiling.max-untiled-pixels} are not tiled.
+ */
+@Component
+public class TilingPolicy {
+
+    private static final int MIN_TILE_SIZE = 64;
+
+    private final long maxUntiledPixels;
+    private final long maxTileOutputPixels;
+    private final int tilePad;
+
+    public TilingPolicy(@Value("${app.tiling.max-untiled-pixels}") long maxUntiledPixels,
+                        @Value("${app.tiling.max-tile-output-pixels}") long maxTileOutputPixels,
+                        @Value("${app.tiling.pad}") int tilePad) {
+        this.maxUntiledPixels = maxUntiledPixels;
+        this.maxTileOutputPixels = maxTileOutputPixels;
+        this.tilePad = tilePad;
+    }
+
+    public int chooseTileSize(String originalResolution, UpscalingMethod model, int scale) {
+        if (model != UpscalingMethod.EDSR && model != UpscalingMethod.SRGAN) {
+            return 0;
+        }
+        Resolution resolution = Resolution.parse(originalResolution);
+        if (resolution == null || resolution.pixels() <= maxUntiledPixels) {
+            return 0;
+        }
+
+        int tileSize = (int) Math.sqrt((double) maxTileOutputPixels / ((long) scale * scale));
+        tileSize = Math.max(MIN_TILE_SIZE, tileSize - tileSize % 8);
+        return tileSize >= Math.max(resolution.width(), resolution.height()) ? 0 : tileSize;
+    }
+
+    public int getTilePad() {
+        return tilePad;
+    }
+}
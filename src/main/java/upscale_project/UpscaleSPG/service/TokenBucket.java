@@ -0,0 +1,57 @@
+package upscale_project.UpscaleSPG.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single timestamp, the time at which it is full again (the generic cell rate
+ * algorithm). Taking tokens moves that time forward by their refill time and is refused when it would end up
+ * more than the burst ahead of now, so a take is one compare-and-set and needs no lock. A take larger than the
+ * burst empties a full bucket instead of never succeeding.
+ */
+final class TokenBucket {
+
+    private final double nanosPerToken;
+    private final double burst;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(double tokensPerSecond, double burst, long now) {
+        this.nanosPerToken = 1e9 / tokensPerSecond;
+        this.burst = burst;
+        this.burstNanos = refillNanos(burst);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes {@code tokens} and returns 0, or takes nothing and returns the nanoseconds until they are available.
+     */
+    long tryTake(double tokens, long now) {
+        long refill = refillNanos(Math.min(tokens, burst));
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + refill;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back tokens taken for a request that was refused by a later check.
+     */
+    void giveBack(double tokens) {
+        fullAt.addAndGet(-refillNanos(Math.min(tokens, burst)));
+    }
+
+    boolean isFull(long now) {
+        return fullAt.get() <= now;
+    }
+
+    private long refillNanos(double tokens) {
+        return (long) Math.ceil(tokens * nanosPerToken);
+    }
+}
@@ -0,0 +1,6 @@
+package upscale_project.UpscaleSPG.service;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+public record UpscaleJob(Long imageId, String originalFilePath, UpscalingMethod model, int scale) {
+}
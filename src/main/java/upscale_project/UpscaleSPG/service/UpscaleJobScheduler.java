@@ -0,0 +1,271 @@
+package upscale_project.UpscaleSPG.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.exception.JobQueueFullException;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.StageTimings;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs upscaling jobs with a bounded queue, a global concurrency limit and a separate concurrency
+ * budget per {@link UpscalingMethod}. Queued jobs are dispatched cheapest method first
+ * ({@link UpscalingMethod#getCostWeight()}), FIFO within a method. Waiting jobs age: every
+ * {@code app.scheduler.aging} of waiting counts as one unit of cost less, so an EDSR job queued before a stream of
+ * cheap jobs starts after at most (60 - 1) times that instead of never. A zero aging keeps the strict cost order.
+ */
+@Component
+public class UpscaleJobScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpscaleJobScheduler.class);
+
+    private static final Comparator<QueuedJob> DISPATCH_ORDER = Comparator
+            .comparingLong(QueuedJob::rank)
+            .thenComparingInt((QueuedJob queued) -> queued.model().getCostWeight())
+            .thenComparingLong(QueuedJob::sequence);
+
+    private final AsyncProcessorService asyncProcessorService;
+    private final JobMetrics jobMetrics;
+    private final int queueCapacity;
+    private final int batchGroupSize;
+    private final int maxConcurrentJobs;
+    private final long agingNanos;
+    private final EnumMap<UpscalingMethod, Integer> budgets = new EnumMap<>(UpscalingMethod.class);
+    private final EnumMap<UpscalingMethod, Integer> running = new EnumMap<>(UpscalingMethod.class);
+    private final EnumMap<UpscalingMethod, WaitStats> waitStats = new EnumMap<>(UpscalingMethod.class);
+    private final TreeSet<QueuedJob> queue = new TreeSet<>(DISPATCH_ORDER);
+    private final Map<Long, QueuedJob> queuedByImageId = new HashMap<>();
+    private final ExecutorService executor;
+    private long sequence;
+    private int runningTotal;
+
+    @Autowired
+    public UpscaleJobScheduler(AsyncProcessorService asyncProcessorService, JobMetrics jobMetrics, Environment env,
+                               @Value("${app.scheduler.queue-capacity}") int queueCapacity,
+                               @Value("${app.scheduler.max-concurrent-jobs}") int maxConcurrentJobs,
+                               @Value("${app.batch.group-size}") int batchGroupSize,
+                               @Value("${app.scheduler.aging}") Duration aging) {
+        this.asyncProcessorService = asyncProcessorService;
+        this.jobMetrics = jobMetrics;
+        this.queueCapacity = queueCapacity;
+        this.batchGroupSize = batchGroupSize;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.agingNanos = aging.toNanos();
+        for (UpscalingMethod method : UpscalingMethod.values()) {
+            String key = "app.scheduler.concurrency." + method.toString().toLowerCase();
+            budgets.put(method, env.getProperty(key, Integer.class, maxConcurrentJobs));
+            running.put(method, 0);
+            waitStats.put(method, new WaitStats());
+        }
+        this.executor = Executors.newFixedThreadPool(maxConcurrentJobs,
+                Thread.ofPlatform().name("upscale-job-", 1).factory());
+    }
+
+    public synchronized void ensureCapacity() {
+        ensureCapacity(1);
+    }
+
+    public synchronized void submit(UpscaleJob job) {
+        ensureCapacity(1);
+        enqueue(List.of(job));
+        logger.info("Image {} queued for {} x{} (queue depth {}).", job.imageId(), job.model(), job.scale(), queue.size());
+        dispatch();
+    }
+
+    /**
+     * Queues jobs that share one (model, scale) in groups of {@code app.batch.group-size}. Each group takes
+     * one queue slot and one concurrency permit and is processed back to back by a single worker.
+     */
+    public synchronized void submitBatch(List<UpscaleJob> jobs) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        int groups = (jobs.size() + batchGroupSize - 1) / batchGroupSize;
+        ensureCapacity(groups);
+        for (int from = 0; from < jobs.size(); from += batchGroupSize) {
+            enqueue(List.copyOf(jobs.subList(from, Math.min(from + batchGroupSize, jobs.size()))));
+        }
+        logger.info("Queued {} images in {} groups for {} x{} (queue depth {}).", jobs.size(), groups,
+                jobs.get(0).model(), jobs.get(0).scale(), queue.size());
+        dispatch();
+    }
+
+    /**
+     * Takes a cancelled image out of the queue. The rest of its group keeps its place. Returns false if the image
+     * is not queued.
+     */
+    public synchronized boolean remove(Long imageId) {
+        QueuedJob queued = queuedByImageId.remove(imageId);
+        if (queued == null) {
+            return false;
+        }
+        queue.remove(queued);
+        List<UpscaleJob> rest = queued.jobs().stream().filter(job -> !job.imageId().equals(imageId)).toList();
+        if (!rest.isEmpty()) {
+            QueuedJob remaining = new QueuedJob(rest, queued.sequence(), queued.enqueuedAt(), queued.rank());
+            queue.add(remaining);
+            rest.forEach(job -> queuedByImageId.put(job.imageId(), remaining));
+        }
+        logger.info("Image {} removed from the queue (queue depth {}).", imageId, queue.size());
+        return true;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of jobs that will be dispatched before this one, or -1 if the image is not queued.
+     */
+    public synchronized int getQueuePosition(Long imageId) {
+        QueuedJob queued = queuedByImageId.get(imageId);
+        return queued != null ? queue.headSet(queued).size() : -1;
+    }
+
+    /**
+     * Returns how many more jobs this node can take without any of them waiting behind another.
+     */
+    public synchronized int getFreeCapacity() {
+        return Math.max(0, Math.min(maxConcurrentJobs - runningTotal - queue.size(), queueCapacity - queue.size()));
+    }
+
+    public synchronized boolean isQueued(Long imageId) {
+        return queuedByImageId.containsKey(imageId);
+    }
+
+    /**
+     * Returns how long the image has been waiting in the queue so far, or -1 if it is not queued.
+     */
+    public synchronized long getQueuedMillis(Long imageId) {
+        QueuedJob queued = queuedByImageId.get(imageId);
+        return queued != null ? (System.nanoTime() - queued.enqueuedAt()) / 1_000_000 : -1;
+    }
+
+    public synchronized long getAverageWaitMillis(UpscalingMethod method) {
+        return waitStats.get(method).averageMillis();
+    }
+
+    /**
+     * Rough time before a new job of the method would start: the queued work dispatched ahead of it, spread over
+     * all job slots, plus part of a job of the method when no slot is free right now. {@code jobMillis} gives
+     * the expected duration of one job of a method.
+     */
+    public synchronized long estimateWaitMillis(UpscalingMethod method, ToLongFunction<UpscalingMethod> jobMillis) {
+        long queuedMillis = 0;
+        long rank = rank(method, System.nanoTime());
+        for (QueuedJob queued : queue) {
+            if (queued.rank() < rank
+                    || (queued.rank() == rank && queued.model().getCostWeight() <= method.getCostWeight())) {
+                queuedMillis += jobMillis.applyAsLong(queued.model()) * queued.jobs().size();
+            }
+        }
+        long waitMillis = queuedMillis / maxConcurrentJobs;
+        if (runningTotal >= maxConcurrentJobs || running.get(method) >= budgets.get(method)) {
+            waitMillis += jobMillis.applyAsLong(method) / Math.max(1, budgets.get(method));
+        }
+        return waitMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void ensureCapacity(int slots) {
+        if (queue.size() + slots > queueCapacity) {
+            throw new JobQueueFullException("Upscaling queue is full (" + queueCapacity + " jobs). Please retry later.");
+        }
+    }
+
+    private void enqueue(List<UpscaleJob> jobs) {
+        long now = System.nanoTime();
+        QueuedJob queued = new QueuedJob(jobs, sequence++, now, rank(jobs.get(0).model(), now));
+        queue.add(queued);
+        for (UpscaleJob job : jobs) {
+            queuedByImageId.put(job.imageId(), queued);
+        }
+    }
+
+    private void dispatch() {
+        Iterator<QueuedJob> iterator = queue.iterator();
+        while (runningTotal < maxConcurrentJobs && iterator.hasNext()) {
+            QueuedJob queued = iterator.next();
+            UpscalingMethod method = queued.model();
+            if (running.get(method) >= budgets.get(method)) {
+                continue;
+            }
+            iterator.remove();
+            queued.jobs().forEach(job -> queuedByImageId.remove(job.imageId()));
+            running.merge(method, 1, Integer::sum);
+            runningTotal++;
+            long waitNanos = System.nanoTime() - queued.enqueuedAt();
+            waitStats.get(method).record(waitNanos);
+            queued.jobs().forEach(job -> jobMetrics.recordStage(StageTimings.QUEUE_WAIT, method, job.scale(), waitNanos));
+            executor.execute(() -> run(queued));
+        }
+    }
+
+    /**
+     * Dispatch rank of a job queued at {@code enqueuedAt}, lower first. Ordering by enqueue time plus cost times
+     * the aging step is the same as ordering by cost minus the time waited, at any moment, so the order in the
+     * queue never has to change while jobs wait.
+     */
+    private long rank(UpscalingMethod method, long enqueuedAt) {
+        return agingNanos > 0 ? enqueuedAt + method.getCostWeight() * agingNanos : 0;
+    }
+
+    private void run(QueuedJob queued) {
+        try {
+            if (queued.jobs().size() == 1) {
+                UpscaleJob job = queued.jobs().get(0);
+                asyncProcessorService.startUpscalingProcess(job.imageId(), job.originalFilePath(), job.model(), job.scale());
+            } else {
+                asyncProcessorService.startBatchUpscalingProcess(queued.jobs());
+            }
+        } finally {
+            synchronized (this) {
+                running.merge(queued.model(), -1, Integer::sum);
+                runningTotal--;
+                dispatch();
+            }
+        }
+    }
+
+    private record QueuedJob(List<UpscaleJob> jobs, long sequence, long enqueuedAt, long rank) {
+
+        UpscalingMethod model() {
+            return jobs.get(0).model();
+        }
+    }
+
+    private static final class WaitStats {
+        private long count;
+        private long totalNanos;
+
+        void record(long waitNanos) {
+            count++;
+            totalNanos += waitNanos;
+        }
+
+        long averageMillis() {
+            return count == 0 ? 0 : totalNanos / count / 1_000_000;
+        }
+    }
+}
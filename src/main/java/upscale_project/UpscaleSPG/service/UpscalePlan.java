@@ -0,0 +1,68 @@
+package upscale_project.UpscaleSPG.service;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * How an image is upscaled by {@code method} at {@code scale}: the stages run one after another, each on the
+ * output of the previous one, and the output is resized to exactly {@code scale} times the input when the
+ * stages reach a different scale. Built by {@link UpscalePlanner}.
+ */
+public record UpscalePlan(UpscalingMethod method, int scale, List<Stage> stages) {
+
+    /**
+     * Plans a method given the scales it has weights for. Interpolation and trained scales run in one stage.
+     * Otherwise the largest trained scale that divides the target runs first and bicubic does the rest
+     * (ESPCN x8 = ESPCN x4, BICUBIC x2); without one, the smallest trained scale above the target is
+     * downsampled (SRGAN x3 = SRGAN x4, then down to x3), and failing that the largest trained scale is
+     * resized up. A method without any weights keeps its single stage.
+     */
+    static UpscalePlan of(UpscalingMethod method, int scale, NavigableSet<Integer> trainedScales) {
+        if (InterpolationEngine.supports(method) || trainedScales.isEmpty() || trainedScales.contains(scale)) {
+            return new UpscalePlan(method, scale, List.of(new Stage(method, scale)));
+        }
+        for (int trained : trainedScales.descendingSet()) {
+            if (trained < scale && scale % trained == 0) {
+                return new UpscalePlan(method, scale,
+                        List.of(new Stage(method, trained), new Stage(UpscalingMethod.BICUBIC, scale / trained)));
+            }
+        }
+        Integer above = trainedScales.higher(scale);
+        return new UpscalePlan(method, scale, List.of(new Stage(method, above != null ? above : trainedScales.last())));
+    }
+
+    public boolean isChained() {
+        return stages.size() > 1 || stagesScale() != scale;
+    }
+
+    /**
+     * Scale the stages reach before the final resize.
+     */
+    public int stagesScale() {
+        return stages.stream().mapToInt(Stage::scale).reduce(1, (a, b) -> a * b);
+    }
+
+    /**
+     * The stages as shown in the status response, with the final resize if there is one.
+     */
+    public List<String> describe() {
+        List<String> steps = new ArrayList<>();
+        stages.forEach(stage -> steps.add(stage.toString()));
+        if (stagesScale() != scale) {
+            steps.add((stagesScale() > scale ? "DOWNSAMPLE" : "RESIZE") + " to x" + scale);
+        }
+        return steps;
+    }
+
+    public record Stage(UpscalingMethod method, int scale) {
+
+        @Override
+        public String toString() {
+            return method + " x" + scale;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import upscale_project.UpscaleSPG.exception.InvalidImageException;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+import upscale_project.UpscaleSPG.processing.OnnxInferenceEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every (method, scale) up to {@code app.plans.max-scale} an {@link UpscalePlan}, so scales without
+ * trained weights are served by chaining the ones that exist. A scale is trained when its weights file
+ * ({@code app.weights.path.<method>.scale<N>}) exists; one with only an ONNX model runs in one stage on the ONNX
+ * engine but is not used as a stage of other plans. Plans are made once, so weights added later are picked up
+ * after a restart.
+ */
+@Service
+public class UpscalePlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpscalePlanner.class);
+
+    public static final int MIN_SCALE = 2;
+
+    private final Environment env;
+    private final OnnxInferenceEngine onnxEngine;
+    private final int maxScale;
+    private final Map<Key, UpscalePlan> plans = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UpscalePlanner(Environment env, OnnxInferenceEngine onnxEngine,
+                          @Value("${app.plans.max-scale}") int maxScale) {
+        this.env = env;
+        this.onnxEngine = onnxEngine;
+        this.maxScale = maxScale;
+    }
+
+    /**
+     * Rejects scales no plan is made for: below {@value #MIN_SCALE} the image would not be upscaled at all.
+     */
+    public void checkScale(int scale) {
+        if (scale < MIN_SCALE || scale > maxScale) {
+            throw new InvalidImageException("Scale must be between " + MIN_SCALE + " and " + maxScale + ": " + scale);
+        }
+    }
+
+    public UpscalePlan plan(UpscalingMethod method, int scale) {
+        return plans.computeIfAbsent(new Key(method, scale), key -> createPlan(method, scale));
+    }
+
+    /**
+     * Whether the plan of (method, scale) runs the method's model: its first stage has weights or an ONNX model.
+     * Interpolation methods are always available.
+     */
+    public boolean isAvailable(UpscalingMethod method, int scale) {
+        UpscalePlan.Stage first = plan(method, scale).stages().get(0);
+        return InterpolationEngine.supports(method) || hasWeights(first.method(), first.scale())
+                || onnxEngine.supports(first.method(), first.scale());
+    }
+
+    public boolean hasWeights(UpscalingMethod method, int scale) {
+        String weightsPath = getWeightsPath(method, scale);
+        return weightsPath != null && Files.isRegularFile(Paths.get(weightsPath));
+    }
+
+    public String getWeightsPath(UpscalingMethod method, int scale) {
+        return env.getProperty("app.weights.path." + method.toString().toLowerCase() + ".scale" + scale);
+    }
+
+    private UpscalePlan createPlan(UpscalingMethod method, int scale) {
+        TreeSet<Integer> trainedScales = new TreeSet<>();
+        if (onnxEngine.supports(method, scale)) {
+            trainedScales.add(scale);
+        }
+        for (int trained = 1; trained <= maxScale; trained++) {
+            if (hasWeights(method, trained)) {
+                trainedScales.add(trained);
+            }
+        }
+        UpscalePlan plan = UpscalePlan.of(method, scale, trainedScales);
+        if (plan.isChained()) {
+            logger.info("{} x{} has no weights of its own, planned as {}.", method, scale, plan.describe());
+        }
+        return plan;
+    }
+
+    private record Key(UpscalingMethod method, int scale) {
+    }
+}
@@ -0,0 +1,184 @@
+package upscale_project.UpscaleSPG.worker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.ImageCodec;
+import upscale_project.UpscaleSPG.processing.InterpolationEngine;
+import upscale_project.UpscaleSPG.processing.LumaPlane;
+import upscale_project.UpscaleSPG.processing.StageTimings;
+
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hands pixels to the Python workers as {@link RawImageFile}s when {@code app.worker.transfer=shared-memory}. The
+ * original is decoded once in the JVM into a raw file in {@code app.worker.transfer-path} ({@code /dev/shm} by
+ * default, a tmpfs so nothing reaches the disk), the worker maps it and writes the result into a second raw file,
+ * and the JVM encodes that result once into the processed file. The worker does no codec work at all, and the
+ * decode and encode run before and after a worker is taken from the pool instead of inside its time. Originals
+ * ImageIO cannot read and outputs it cannot write (WebP, for example) keep the file transfer.
+ * <p>
+ * ESPCN only upscales luma, so only the Y plane goes to the worker and back. The bicubic upscale that supplies the
+ * chroma runs on the {@link InterpolationEngine} pool while the worker infers, and {@link LumaPlane#replace} puts
+ * the upscaled Y into it.
+ */
+@Component
+public class PixelTransfer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PixelTransfer.class);
+
+    public static final String SHARED_MEMORY = "shared-memory";
+
+    private static final String FILE_PREFIX = "upscale-";
+    private static final String SHARED_MEMORY_PATH = "/dev/shm";
+
+    private final InterpolationEngine interpolationEngine;
+    private final boolean enabled;
+    private final Path directory;
+
+    @Autowired
+    public PixelTransfer(InterpolationEngine interpolationEngine,
+                         @Value("${app.worker.transfer}") String mode,
+                         @Value("${app.worker.transfer-path}") String directory) {
+        this.interpolationEngine = interpolationEngine;
+        this.enabled = SHARED_MEMORY.equalsIgnoreCase(mode);
+        this.directory = chooseDirectory(directory);
+        if (enabled && !isTmpfs(this.directory)) {
+            logger.warn("Pixel transfer directory {} is not a tmpfs, decoded pixels will be written to disk.",
+                    this.directory);
+        }
+    }
+
+    /**
+     * The configured directory if it exists, otherwise {@value #SHARED_MEMORY_PATH} and then the temporary
+     * directory.
+     */
+    private static Path chooseDirectory(String directory) {
+        Path tmpdir = Paths.get(System.getProperty("java.io.tmpdir"));
+        Path fallback = Files.isDirectory(Paths.get(SHARED_MEMORY_PATH)) ? Paths.get(SHARED_MEMORY_PATH) : tmpdir;
+        if (directory == null || directory.isBlank()) {
+            return fallback;
+        }
+        Path path = Paths.get(directory);
+        if (Files.isDirectory(path)) {
+            return path;
+        }
+        logger.warn("Pixel transfer directory {} does not exist, using {} instead.", path, fallback);
+        return fallback;
+    }
+
+    private static boolean isTmpfs(Path directory) {
+        try {
+            return "tmpfs".equals(Files.getFileStore(directory).type());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes {@code original} into a raw input file and allocates the raw result for {@code scale}, adding the
+     * decode time to {@code timings}. For ESPCN also starts the bicubic upscale of the original. Returns
+     * {@code null} when the job should use the file transfer.
+     */
+    public Exchange open(Path original, Path output, UpscalingMethod model, int scale, StageTimings timings)
+            throws IOException {
+        if (!enabled || !ImageCodec.canWrite(output)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        BufferedImage source = ImageCodec.readBgr(original);
+        timings.add(StageTimings.DECODE, System.nanoTime() - start);
+        if (source == null) {
+            return null;
+        }
+
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Path input = Files.createTempFile(directory, FILE_PREFIX, RawImageFile.SUFFIX);
+        Path result = null;
+        try {
+            result = Files.createTempFile(directory, FILE_PREFIX, RawImageFile.SUFFIX);
+            if (model != UpscalingMethod.ESPCN) {
+                RawImageFile.write(source, input);
+                RawImageFile.allocate(result, width * scale, height * scale, RawImageFile.BGR);
+                return new Exchange(input, result, output, null);
+            }
+
+            start = System.nanoTime();
+            RawImageFile.writeLuma(LumaPlane.extract(pixels(source)), width, height, input);
+            RawImageFile.allocate(result, width * scale, height * scale, RawImageFile.LUMA);
+            timings.add(StageTimings.CHROMA, System.nanoTime() - start);
+            return new Exchange(input, result, output,
+                    interpolationEngine.resizeAsync(source, scale, UpscalingMethod.BICUBIC));
+        } catch (IOException | RuntimeException e) {
+            new Exchange(input, result, output, null).close();
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes the result the worker wrote into the processed file, adding the encode time to {@code timings}.
+     */
+    public void finish(Exchange exchange, StageTimings timings) throws IOException {
+        ImageWriter writer = ImageCodec.findWriter(exchange.output());
+        if (writer == null) {
+            throw new IOException("No ImageIO writer for " + exchange.output().getFileName());
+        }
+        BufferedImage image;
+        long start = System.nanoTime();
+        if (exchange.bicubic() != null) {
+            image = exchange.bicubic().join();
+            LumaPlane.replace(pixels(image), RawImageFile.readLuma(exchange.result()));
+            timings.add(StageTimings.CHROMA, System.nanoTime() - start);
+        } else {
+            image = RawImageFile.read(exchange.result());
+        }
+
+        start = System.nanoTime();
+        ImageCodec.write(writer, image, exchange.output());
+        timings.add(StageTimings.ENCODE, System.nanoTime() - start);
+    }
+
+    private static byte[] pixels(BufferedImage bgr) {
+        return ((DataBufferByte) bgr.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Raw input and result of one image, the processed file the result is encoded into and, for ESPCN, the bicubic
+     * upscale of the original. Closing deletes the raw files.
+     */
+    public record Exchange(Path input, Path result, Path output, CompletableFuture<BufferedImage> bicubic)
+            implements AutoCloseable {
+
+        @Override
+        public void close() {
+            if (bicubic != null) {
+                bicubic.cancel(false);
+            }
+            deleteQuietly(input);
+            deleteQuietly(result);
+        }
+
+        private static void deleteQuietly(Path file) {
+            if (file == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete raw image {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
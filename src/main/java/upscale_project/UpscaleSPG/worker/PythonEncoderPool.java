@@ -0,0 +1,40 @@
+package upscale_project.UpscaleSPG.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+
+/**
+ * Python workers that only re-encode results into formats ImageIO cannot write (WebP, AVIF). They are separate
+ * from the inference {@link PythonWorkerPool}, so a burst of downloads waits for the {@code app.variants.encoders}
+ * encoders instead of taking the workers upscaling jobs need. Workers start on the first encoding.
+ */
+@Component
+public class PythonEncoderPool {
+
+    private final PythonWorkerPool workers;
+
+    @Autowired
+    public PythonEncoderPool(ObjectMapper objectMapper,
+                             @Value("${app.python.executable.path}") String pythonExecutablePath,
+                             @Value("${app.scripts.path}") String scriptsPath,
+                             @Value("${app.variants.encoders}") int encoders,
+                             @Value("${app.python.workers.max-jobs-per-worker}") int maxJobsPerWorker) {
+        this.workers = new PythonWorkerPool(objectMapper, pythonExecutablePath, scriptsPath, encoders,
+                maxJobsPerWorker, DataSize.ofBytes(0));
+    }
+
+    public WorkerResult execute(WorkerEncodeJob job) throws IOException, InterruptedException {
+        return workers.execute(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,190 @@
+package upscale_project.UpscaleSPG.worker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import upscale_project.UpscaleSPG.processing.StageTimings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class PythonWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PythonWorker.class);
+
+    private final int workerId;
+    private final Process process;
+    private final BufferedWriter stdin;
+    private final BufferedReader stdout;
+    private final ObjectMapper objectMapper;
+    private int jobsCompleted;
+    // Startup time, reported with the first job this worker runs.
+    private double spawnSeconds;
+
+    private PythonWorker(int workerId, Process process, ObjectMapper objectMapper) {
+        this.workerId = workerId;
+        this.process = process;
+        this.objectMapper = objectMapper;
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts the process and waits for its {@code {"ready": true}} line, so the returned worker has its
+     * Python imports done.
+     */
+    public static PythonWorker start(int workerId, List<String> command, ObjectMapper objectMapper) throws IOException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).start();
+        PythonWorker worker = new PythonWorker(workerId, process, objectMapper);
+        worker.startErrorStreamReader();
+        try {
+            worker.awaitReady();
+        } catch (IOException e) {
+            worker.destroy();
+            throw e;
+        }
+        worker.spawnSeconds = (System.nanoTime() - start) / 1e9;
+        logger.info("Started Python worker {} (pid {}) in {} ms.", workerId, process.pid(),
+                Math.round(worker.spawnSeconds * 1000));
+        return worker;
+    }
+
+    public WorkerResult execute(WorkerJob job, Consumer<WorkerProgress> progressListener) throws IOException {
+        WorkerResult result = exchange(job, WorkerResult.class, progressListener);
+        jobsCompleted++;
+        return new WorkerResult(result.exitCode(), result.error(), withSpawnTime(result.timings()));
+    }
+
+    public WorkerResult execute(WorkerPlanJob job, Consumer<WorkerProgress> progressListener) throws IOException {
+        WorkerResult result = exchange(job, WorkerResult.class, progressListener);
+        jobsCompleted++;
+        return new WorkerResult(result.exitCode(), result.error(), withSpawnTime(result.timings()));
+    }
+
+    public WorkerBatchResult execute(WorkerBatchJob job, Consumer<WorkerProgress> progressListener) throws IOException {
+        WorkerBatchResult result = exchange(job, WorkerBatchResult.class, progressListener);
+        if (result.results() == null || result.results().size() != job.items().size()) {
+            throw new IOException("Python worker " + workerId + " returned a malformed batch response.");
+        }
+        jobsCompleted += job.items().size();
+        return new WorkerBatchResult(result.results(), withSpawnTime(result.timings()));
+    }
+
+    public WorkerResult execute(WorkerEncodeJob job) throws IOException {
+        WorkerResult result = exchange(job, WorkerResult.class, progress -> { });
+        jobsCompleted++;
+        return new WorkerResult(result.exitCode(), result.error(), withSpawnTime(result.timings()));
+    }
+
+    /**
+     * Runs a warm-up job. It is not counted as a job, and the startup time it absorbed is not reported.
+     */
+    public WorkerResult execute(WorkerWarmupJob job) throws IOException {
+        WorkerResult result = exchange(job, WorkerResult.class, progress -> { });
+        spawnSeconds = 0;
+        return result;
+    }
+
+    private void awaitReady() throws IOException {
+        String line = stdout.readLine();
+        if (line == null) {
+            throw new IOException("Python worker " + workerId + " exited during startup"
+                    + (process.isAlive() ? "." : " with code " + process.exitValue() + "."));
+        }
+        JsonNode ready = objectMapper.readTree(line).get("ready");
+        if (ready == null || !ready.asBoolean()) {
+            throw new IOException("Python worker " + workerId + " sent an unexpected startup line: " + line);
+        }
+    }
+
+    private Map<String, Double> withSpawnTime(Map<String, Double> timings) {
+        if (spawnSeconds == 0) {
+            return timings;
+        }
+        Map<String, Double> merged = new HashMap<>(timings);
+        merged.put(StageTimings.SPAWN, spawnSeconds);
+        spawnSeconds = 0;
+        return merged;
+    }
+
+    private <T> T exchange(Object request, Class<T> responseType, Consumer<WorkerProgress> progressListener)
+            throws IOException {
+        stdin.write(objectMapper.writeValueAsString(request));
+        stdin.newLine();
+        stdin.flush();
+
+        while (true) {
+            String line = stdout.readLine();
+            if (line == null) {
+                throw new IOException("Python worker " + workerId + " exited unexpectedly"
+                        + (process.isAlive() ? "." : " with code " + process.exitValue() + "."));
+            }
+
+            JsonNode message = objectMapper.readTree(line);
+            JsonNode progress = message.get("progress");
+            if (progress == null) {
+                return objectMapper.treeToValue(message, responseType);
+            }
+            try {
+                progressListener.accept(objectMapper.treeToValue(progress, WorkerProgress.class));
+            } catch (RuntimeException e) {
+                logger.warn("Progress listener of Python worker {} failed: {}", workerId, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    public int getJobsCompleted() {
+        return jobsCompleted;
+    }
+
+    public void destroy() {
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close stdin of Python worker {}: {}", workerId, e.getMessage());
+        }
+        process.destroy();
+        logger.info("Stopped Python worker {} after {} jobs.", workerId, jobsCompleted);
+    }
+
+    /**
+     * Kills the process of a worker that is stuck or running a cancelled job.
+     */
+    public void kill() {
+        process.destroyForcibly();
+        logger.info("Killed Python worker {} (pid {}).", workerId, process.pid());
+    }
+
+    private void startErrorStreamReader() {
+        Thread.ofVirtual().name("python-worker-" + workerId + "-stderr").start(() -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    logger.debug("Python worker {} output: {}", workerId, line);
+                }
+            } catch (IOException e) {
+                logger.debug("Stopped reading output of Python worker {}: {}", workerId, e.getMessage());
+            }
+        });
+    }
+}
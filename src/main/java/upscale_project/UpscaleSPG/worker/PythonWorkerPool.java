@@ -0,0 +1,256 @@
+package upscale_project.UpscaleSPG.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@Component
+public class PythonWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(PythonWorkerPool.class);
+
+    private final ObjectMapper objectMapper;
+    private final int poolSize;
+    private final int maxJobsPerWorker;
+    private final long stageCacheBytes;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<PythonWorker> idleWorkers = new ConcurrentLinkedQueue<>();
+    // Every running worker, idle or borrowed, so shutdown stops the ones still running a job too.
+    private final Set<PythonWorker> startedWorkers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workerIds = new AtomicInteger();
+    private volatile WorkerWarmupJob warmupJob;
+    private volatile boolean shutDown;
+    private final String pythonExecutablePath;
+    private final String scriptsPath;
+
+    @Autowired
+    public PythonWorkerPool(ObjectMapper objectMapper,
+                            @Value("${app.python.executable.path}") String pythonExecutablePath,
+                            @Value("${app.scripts.path}") String scriptsPath,
+                            @Value("${app.python.workers.pool-size}") int poolSize,
+                            @Value("${app.python.workers.max-jobs-per-worker}") int maxJobsPerWorker,
+                            @Value("${app.python.workers.stage-cache-size}") DataSize stageCacheSize) {
+        this.objectMapper = objectMapper;
+        this.pythonExecutablePath = pythonExecutablePath;
+        this.scriptsPath = scriptsPath;
+        this.poolSize = poolSize;
+        this.maxJobsPerWorker = maxJobsPerWorker;
+        this.stageCacheBytes = stageCacheSize.toBytes();
+        this.permits = new Semaphore(poolSize, true);
+    }
+
+    public WorkerResult execute(WorkerJob job, Consumer<WorkerProgress> progressListener)
+            throws IOException, InterruptedException {
+        return execute(job, progressListener, new WorkerCancellation());
+    }
+
+    /**
+     * Runs the job on a worker that {@code cancellation} can kill while the job is running.
+     */
+    public WorkerResult execute(WorkerJob job, Consumer<WorkerProgress> progressListener,
+                                WorkerCancellation cancellation) throws IOException, InterruptedException {
+        return withWorker(worker -> worker.execute(job, progressListener), cancellation);
+    }
+
+    public WorkerResult execute(WorkerPlanJob job, Consumer<WorkerProgress> progressListener,
+                                WorkerCancellation cancellation) throws IOException, InterruptedException {
+        return withWorker(worker -> worker.execute(job, progressListener), cancellation);
+    }
+
+    public WorkerBatchResult execute(WorkerBatchJob job, Consumer<WorkerProgress> progressListener,
+                                     WorkerCancellation cancellation) throws IOException, InterruptedException {
+        return withWorker(worker -> worker.execute(job, progressListener), cancellation);
+    }
+
+    public WorkerResult execute(WorkerEncodeJob job) throws IOException, InterruptedException {
+        return withWorker(worker -> worker.execute(job), new WorkerCancellation());
+    }
+
+    /**
+     * Runs {@code job} on the idle workers and starts the ones the pool is missing in parallel, so the pool never
+     * grows past its size. Workers started later to replace a dead or recycled one run it too, so the models stay
+     * preloaded. Returns the number of workers that were warmed up; the first failure is rethrown once the
+     * others are done.
+     */
+    public int warmUp(WorkerWarmupJob job) throws IOException, InterruptedException {
+        this.warmupJob = job;
+        List<PythonWorker> idle = new ArrayList<>();
+        PythonWorker idleWorker;
+        while ((idleWorker = idleWorkers.poll()) != null) {
+            idle.add(idleWorker);
+        }
+        int missing = poolSize - startedWorkers.size();
+        List<Future<PythonWorker>> starts = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (PythonWorker worker : idle) {
+                starts.add(executor.submit(() -> warmUp(worker, job)));
+            }
+            for (int i = 0; i < missing; i++) {
+                starts.add(executor.submit(this::startWorker));
+            }
+        }
+
+        int started = 0;
+        IOException failure = null;
+        for (Future<PythonWorker> start : starts) {
+            try {
+                offerIdle(start.get());
+                started++;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return started;
+    }
+
+    private <T> T withWorker(WorkerCall<T> call, WorkerCancellation cancellation)
+            throws IOException, InterruptedException {
+        permits.acquire();
+        PythonWorker worker = null;
+        try {
+            worker = borrowWorker();
+            if (!cancellation.attach(worker)) {
+                idleWorkers.offer(worker);
+                worker = null;
+                throw new IOException("Job was cancelled before it started.");
+            }
+            T result;
+            try {
+                result = call.execute(worker);
+            } finally {
+                cancellation.detach();
+            }
+            returnWorker(worker);
+            return result;
+        } catch (IOException e) {
+            if (worker != null) {
+                logger.warn("Python worker {} failed, it will be replaced: {}", worker.getWorkerId(), e.getMessage());
+                destroy(worker);
+            }
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Stops every worker the pool has started, including workers borrowed by jobs that are still running: those
+     * jobs fail instead of leaving their Python processes behind.
+     */
+    @PreDestroy
+    public void shutdown() {
+        shutDown = true;
+        idleWorkers.clear();
+        startedWorkers.forEach(this::destroy);
+    }
+
+    @FunctionalInterface
+    private interface WorkerCall<T> {
+        T execute(PythonWorker worker) throws IOException;
+    }
+
+    private PythonWorker borrowWorker() throws IOException {
+        PythonWorker worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            logger.warn("Python worker {} has died, starting a replacement.", worker.getWorkerId());
+            destroy(worker);
+        }
+        return startWorker();
+    }
+
+    private PythonWorker startWorker() throws IOException {
+        PythonWorker worker = PythonWorker.start(workerIds.incrementAndGet(), List.of(
+                pythonExecutablePath,
+                Paths.get(scriptsPath, "upscale_worker.py").toString(),
+                "--stage-cache-bytes", String.valueOf(stageCacheBytes)
+        ), objectMapper);
+        startedWorkers.add(worker);
+        if (shutDown) {
+            destroy(worker);
+            throw new IOException("Python worker pool is shut down.");
+        }
+
+        WorkerWarmupJob job = warmupJob;
+        return job != null ? warmUp(worker, job) : worker;
+    }
+
+    private PythonWorker warmUp(PythonWorker worker, WorkerWarmupJob job) throws IOException {
+        long start = System.nanoTime();
+        WorkerResult result;
+        try {
+            result = worker.execute(job);
+        } catch (IOException e) {
+            destroy(worker);
+            throw e;
+        }
+        if (result.exitCode() != 0) {
+            logger.warn("Python worker {} failed to warm up: {}", worker.getWorkerId(), result.error());
+        } else {
+            logger.info("Python worker {} warmed up {} models in {} ms.", worker.getWorkerId(), job.warmup().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return worker;
+    }
+
+    private void returnWorker(PythonWorker worker) {
+        if (shutDown) {
+            destroy(worker);
+        } else if (worker.getJobsCompleted() >= maxJobsPerWorker) {
+            logger.info("Recycling Python worker {} after {} jobs.", worker.getWorkerId(), worker.getJobsCompleted());
+            destroy(worker);
+        } else {
+            offerIdle(worker);
+        }
+    }
+
+    /**
+     * Keeps the worker for the next job unless the pool has more workers than its size, which happens when jobs
+     * start workers while the idle ones are being warmed up.
+     */
+    private void offerIdle(PythonWorker worker) {
+        if (startedWorkers.size() > poolSize) {
+            logger.info("Stopping Python worker {}, the pool already has {} workers.", worker.getWorkerId(), poolSize);
+            destroy(worker);
+        } else {
+            idleWorkers.offer(worker);
+        }
+    }
+
+    private void destroy(PythonWorker worker) {
+        if (startedWorkers.remove(worker)) {
+            worker.destroy();
+        }
+    }
+}
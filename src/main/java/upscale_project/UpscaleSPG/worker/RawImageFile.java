@@ -0,0 +1,128 @@
+package upscale_project.UpscaleSPG.worker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Uncompressed image exchanged with the Python workers: a {@value #HEADER_SIZE}-byte header (magic {@code UPX1},
+ * then width, height and channel count as little-endian ints) followed by interleaved 8-bit rows: BGR, or a single
+ * luma plane for ESPCN. That is the layout of a {@link BufferedImage#TYPE_3BYTE_BGR} raster and of an OpenCV
+ * {@code uint8} image, so the worker maps the file with {@code np.memmap} and neither side converts pixels. See
+ * {@code _map_raw} in {@code upscale_image.py}; the worker recognises these files by the {@value #SUFFIX} suffix.
+ */
+public final class RawImageFile {
+
+    public static final String SUFFIX = ".bgr";
+    public static final int BGR = 3;
+    public static final int LUMA = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x31585055; // "UPX1" read as a little-endian int
+
+    private RawImageFile() {
+    }
+
+    /**
+     * Writes a {@link BufferedImage#TYPE_3BYTE_BGR} image with one positional write of its raster.
+     */
+    public static void write(BufferedImage bgr, Path file) throws IOException {
+        write(((DataBufferByte) bgr.getRaster().getDataBuffer()).getData(), bgr.getWidth(), bgr.getHeight(), BGR, file);
+    }
+
+    public static void writeLuma(byte[] luma, int width, int height, Path file) throws IOException {
+        write(luma, width, height, LUMA, file);
+    }
+
+    /**
+     * Creates a file for a {@code width} x {@code height} result that the worker fills in place.
+     */
+    public static void allocate(Path file, int width, int height, int channels) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(width, height, channels), 0);
+            // Writing the last byte sizes the file; the pages in between stay unallocated until the worker writes.
+            writeFully(channel, ByteBuffer.allocate(1), HEADER_SIZE + dataSize(width, height, channels) - 1);
+        }
+    }
+
+    /**
+     * Reads a BGR file back into a {@link BufferedImage#TYPE_3BYTE_BGR} image.
+     */
+    public static BufferedImage read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] size = readHeader(channel, file, BGR);
+            BufferedImage image = new BufferedImage(size[0], size[1], BufferedImage.TYPE_3BYTE_BGR);
+            readFully(channel, ByteBuffer.wrap(((DataBufferByte) image.getRaster().getDataBuffer()).getData()), HEADER_SIZE);
+            return image;
+        }
+    }
+
+    /**
+     * Reads a luma file back, one byte per pixel.
+     */
+    public static byte[] readLuma(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] size = readHeader(channel, file, LUMA);
+            byte[] luma = new byte[size[0] * size[1]];
+            readFully(channel, ByteBuffer.wrap(luma), HEADER_SIZE);
+            return luma;
+        }
+    }
+
+    private static void write(byte[] pixels, int width, int height, int channels, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(width, height, channels), 0);
+            writeFully(channel, ByteBuffer.wrap(pixels), HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Checks the header against the expected channel count and the file size, and returns {width, height}.
+     */
+    private static int[] readHeader(FileChannel channel, Path file, int expectedChannels) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.flip();
+        int magic = header.getInt();
+        int width = header.getInt();
+        int height = header.getInt();
+        int channels = header.getInt();
+        if (magic != MAGIC || channels != expectedChannels || width <= 0 || height <= 0
+                || channel.size() != HEADER_SIZE + dataSize(width, height, channels)) {
+            throw new IOException("Not a raw image with " + expectedChannels + " channels: " + file.getFileName());
+        }
+        return new int[]{width, height};
+    }
+
+    private static long dataSize(int width, int height, int channels) {
+        return (long) width * height * channels;
+    }
+
+    private static ByteBuffer header(int width, int height, int channels) {
+        return ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(width).putInt(height).putInt(channels)
+                .flip();
+    }
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of raw image");
+            }
+            position += read;
+        }
+    }
+}
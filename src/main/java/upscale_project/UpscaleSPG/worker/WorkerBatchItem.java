@@ -0,0 +1,4 @@
+package upscale_project.UpscaleSPG.worker;
+
+public record WorkerBatchItem(String inputPath, String outputPath, int tileSize, int tilePad) {
+}
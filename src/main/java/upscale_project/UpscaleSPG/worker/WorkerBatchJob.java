@@ -0,0 +1,7 @@
+package upscale_project.UpscaleSPG.worker;
+
+import java.util.List;
+
+public record WorkerBatchJob(String weightsPath, String model, int scale, int maxBatchSize,
+                             List<WorkerBatchItem> items) {
+}
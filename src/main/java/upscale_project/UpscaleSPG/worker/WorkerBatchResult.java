@@ -0,0 +1,14 @@
+package upscale_project.UpscaleSPG.worker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reply of the Python worker for a batch: one result per item and the stage timings of the whole batch in seconds.
+ */
+public record WorkerBatchResult(List<WorkerResult> results, Map<String, Double> timings) {
+
+    public WorkerBatchResult {
+        timings = timings != null ? timings : Map.of();
+    }
+}
@@ -0,0 +1,39 @@
+package upscale_project.UpscaleSPG.worker;
+
+/**
+ * Stops a job running on a Python worker from another thread. {@link #cancel()} kills the worker process, which
+ * fails the pending call with an {@link java.io.IOException}, and the pool starts a replacement. The pool attaches
+ * the worker only for the duration of the call, so a late cancel never reaches a worker that is already running
+ * the next job.
+ */
+public final class WorkerCancellation {
+
+    private PythonWorker worker;
+    private boolean cancelled;
+
+    public synchronized void cancel() {
+        cancelled = true;
+        if (worker != null) {
+            worker.kill();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns false if the job was cancelled before it got a worker.
+     */
+    synchronized boolean attach(PythonWorker worker) {
+        if (cancelled) {
+            return false;
+        }
+        this.worker = worker;
+        return true;
+    }
+
+    synchronized void detach() {
+        worker = null;
+    }
+}
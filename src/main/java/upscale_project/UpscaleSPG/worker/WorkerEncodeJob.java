@@ -0,0 +1,10 @@
+package upscale_project.UpscaleSPG.worker;
+
+/**
+ * Re-encodes an existing image into {@code format} (png, jpeg, webp, avif). The worker answers with exit code
+ * {@link #UNSUPPORTED_FORMAT_EXIT_CODE} when its OpenCV build cannot write the format.
+ */
+public record WorkerEncodeJob(String inputPath, String outputPath, String format, int quality) {
+
+    public static final int UNSUPPORTED_FORMAT_EXIT_CODE = 2;
+}
@@ -0,0 +1,5 @@
+package upscale_project.UpscaleSPG.worker;
+
+public record WorkerJob(String inputPath, String outputPath, String weightsPath, String model, int scale,
+                        int tileSize, int tilePad) {
+}
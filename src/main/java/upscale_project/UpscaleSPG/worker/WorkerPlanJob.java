@@ -0,0 +1,12 @@
+package upscale_project.UpscaleSPG.worker;
+
+import java.util.List;
+
+/**
+ * Chained upscaling of one image: the worker runs the stages in memory and writes only the result, resized to
+ * {@code scale} times the input. Stage outputs are kept in the worker's stage cache under {@code cacheKey} (the
+ * content hash of the original), so a later plan with the same first stages starts after them.
+ */
+public record WorkerPlanJob(String inputPath, String outputPath, List<WorkerPlanStage> stages, int scale,
+                            int tileSize, int tilePad, String cacheKey) {
+}
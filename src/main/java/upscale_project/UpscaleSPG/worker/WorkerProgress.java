@@ -0,0 +1,12 @@
+package upscale_project.UpscaleSPG.worker;
+
+/**
+ * Intermediate progress line sent by the Python worker before the final response.
+ * {@code item} is the index within a batch job, 0 for single jobs.
+ */
+public record WorkerProgress(int item, int done, int total) {
+
+    public int percent() {
+        return total > 0 ? (int) (done * 100L / total) : 0;
+    }
+}
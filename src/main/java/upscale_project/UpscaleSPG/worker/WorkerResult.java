@@ -0,0 +1,14 @@
+package upscale_project.UpscaleSPG.worker;
+
+import java.util.Map;
+
+/**
+ * Reply of the Python worker for one image. {@code timings} holds seconds per stage of the job, see
+ * {@link upscale_project.UpscaleSPG.processing.StageTimings}.
+ */
+public record WorkerResult(int exitCode, String error, Map<String, Double> timings) {
+
+    public WorkerResult {
+        timings = timings != null ? timings : Map.of();
+    }
+}
@@ -0,0 +1,9 @@
+package upscale_project.UpscaleSPG.worker;
+
+import java.util.List;
+
+/**
+ * Loads the listed models into the worker's model cache and runs a small sample image through each of them.
+ */
+public record WorkerWarmupJob(List<WorkerWarmupModel> warmup) {
+}
@@ -0,0 +1,4 @@
+package upscale_project.UpscaleSPG.worker;
+
+public record WorkerWarmupModel(String model, int scale, String weightsPath) {
+}
@@ -25,6 +25,31 @@ window.api.getImageStatus = async function(imageId) {
     return response.json(); // ИЗМЕНЕНИЕ: Парсим ответ как JSON
 };
 
-window.api.getProcessedImageUrl = function(imageId) {
-    return `${window.api.API_BASE_URL}/${imageId}/result`;
+/**
+ * Подписывается на события обработки изображения (Server-Sent Events).
+ * onEvent получает объект {imageId, status, progressPercent, queuePosition, queueDepth, previewAvailable}.
+ */
+window.api.subscribeToImageEvents = function(imageId, onEvent, onError) {
+    const eventSource = new EventSource(`${window.api.API_BASE_URL}/${imageId}/events`);
+    eventSource.addEventListener('progress', (event) => onEvent(JSON.parse(event.data)));
+    eventSource.onerror = () => {
+        // EventSource переподключается сам; ошибка окончательная только если соединение закрыто.
+        if (eventSource.readyState === EventSource.CLOSED) {
+            onError(new Error('Соединение с сервером потеряно'));
+        }
+    };
+    return eventSource;
+};
+
+/**
+ * URL результата. Без format сервер выбирает формат по заголовку Accept (например, WebP для браузера),
+ * format=original отдаёт файл в исходном формате, также можно указать png, jpeg, webp или avif.
+ */
+window.api.getProcessedImageUrl = function(imageId, format) {
+    const url = `${window.api.API_BASE_URL}/${imageId}/result`;
+    return format ? `${url}?format=${encodeURIComponent(format)}` : url;
+};
+
+window.api.getPreviewImageUrl = function(imageId) {
+    return `${window.api.API_BASE_URL}/${imageId}/preview`;
 };
\ No newline at end of file
@@ -1,6 +1,10 @@
 // js/main.js
-let pollingInterval;
+let eventSource;
 let currentDots = 0;
+let previewShown = false;
+
+// Статусы, после которых сервер больше не присылает событий.
+const FINISHED_STATUSES = ['PROCESSED', 'ERROR', 'CANCELLED', 'TIMED_OUT'];
 
 document.addEventListener('DOMContentLoaded', () => {
     if (window.ui && window.ui.initDOMElements) {
@@ -51,28 +55,22 @@ async function handleFormSubmit(event) {
     window.ui.hideImageInfo();
     window.ui.showProcessingCard('Изображение загружается...');
 
-    if (pollingInterval) {
-        clearInterval(pollingInterval);
-    }
+    closeEventSource();
     currentDots = 0;
+    previewShown = false;
 
     try {
         const imageId = await window.api.uploadImage(formData);
 
         window.ui.updateStatusMessage(`Изображение загружено. ID: ${imageId}. Инициализация обработки...`, 'blue');
 
-        pollingInterval = setInterval(() => checkImageStatusAndDisplay(imageId, {
-            originalFileName,
-            originalFileSize,
-            model: selectedModel,
-            scale: selectedScale
-        }), 1000);
-        checkImageStatusAndDisplay(imageId, {
-            originalFileName,
-            originalFileSize,
-            model: selectedModel,
-            scale: selectedScale
-        });
+        eventSource = window.api.subscribeToImageEvents(imageId,
+            (event) => handleImageEvent(imageId, event),
+            (error) => {
+                closeEventSource();
+                window.ui.showErrorMessage(`Ошибка получения статуса: ${error.message}`);
+                window.ui.toggleFormState(true);
+            });
 
     } catch (error) {
         console.error('Ошибка загрузки:', error);
@@ -81,18 +79,29 @@ async function handleFormSubmit(event) {
     }
 }
 
-async function checkImageStatusAndDisplay(imageId, initialInfo) {
-    try {
-        const responseData = await window.api.getImageStatus(imageId);
-        const status = responseData.status;
+function closeEventSource() {
+    if (eventSource) {
+        eventSource.close();
+        eventSource = null;
+    }
+}
+
+async function handleImageEvent(imageId, event) {
+    const status = event.status;
 
-        console.log(`Статус изображения ${imageId}: ${status}`);
+    console.log(`Статус изображения ${imageId}: ${status} (${event.progressPercent}%)`);
 
-        const baseMessage = `Текущий статус: ${status.toUpperCase()}`;
+    const baseMessage = `Текущий статус: ${status.toUpperCase()}`;
 
+    if (FINISHED_STATUSES.includes(status)) {
+        closeEventSource();
+        currentDots = 0;
+    }
+
+    try {
         if (status === 'PROCESSED') {
-            clearInterval(pollingInterval);
-            currentDots = 0;
+            // Метаданные результата запрашиваются один раз, после завершения обработки.
+            const responseData = await window.api.getImageStatus(imageId);
             window.ui.updateStatusMessage(`${baseMessage}. Обработка завершена!`, 'green', false);
 
             const processedImageUrl = window.api.getProcessedImageUrl(imageId);
@@ -104,24 +113,40 @@ async function checkImageStatusAndDisplay(imageId, initialInfo) {
                 upscaledFileSize: responseData.upscaledFileSize,
                 model: responseData.model,
                 scale: responseData.scale,
-                originalFileName: responseData.originalFileName
+                originalFileName: responseData.originalFileName,
+                // Скачивается файл в исходном формате, чтобы расширение в имени совпадало с содержимым.
+                downloadUrl: window.api.getProcessedImageUrl(imageId, 'original')
             };
 
             window.ui.displayProcessedImageResult(processedImageUrl, finalInfo);
             window.ui.toggleFormState(true);
             window.ui.DOMElements.fileNameSpan.textContent = 'Выберите файл...';
         } else if (status === 'ERROR') {
-            clearInterval(pollingInterval);
-            currentDots = 0;
             window.ui.showErrorMessage(`${baseMessage}. Ошибка обработки! Пожалуйста, проверьте логи сервера.`);
             window.ui.toggleFormState(true);
+        } else if (status === 'CANCELLED') {
+            window.ui.showErrorMessage(`${baseMessage}. Обработка отменена.`);
+            window.ui.toggleFormState(true);
+        } else if (status === 'TIMED_OUT') {
+            window.ui.showErrorMessage(`${baseMessage}. Превышено время обработки, попробуйте меньший масштаб или другую модель.`);
+            window.ui.toggleFormState(true);
         } else if (status === 'UPLOADED' || status === 'PROCESSING') {
+            if (event.previewAvailable && !previewShown) {
+                previewShown = true;
+                window.ui.displayPreviewImage(window.api.getPreviewImageUrl(imageId));
+            }
             currentDots = (currentDots % 3) + 1;
             const dotsString = '.'.repeat(currentDots);
-            window.ui.updateStatusMessage(`${baseMessage}${dotsString}`, 'blue', true);
+            const queueInfo = event.queuePosition >= 0
+                ? ` (в очереди: ${event.queuePosition + 1} из ${event.queueDepth})`
+                : '';
+            const progressInfo = status === 'PROCESSING' && event.progressPercent > 0
+                ? ` ${event.progressPercent}%`
+                : '';
+            window.ui.updateStatusMessage(`${baseMessage}${queueInfo}${progressInfo}${dotsString}`, 'blue', true);
         }
     } catch (error) {
-        clearInterval(pollingInterval);
+        closeEventSource();
         currentDots = 0;
         window.ui.showErrorMessage(`Ошибка проверки статуса: ${error.message}`);
         window.ui.toggleFormState(true);
@@ -89,7 +89,7 @@ window.ui.displayProcessedImageResult = function(imageUrl, info) {
 
     window.ui.DOMElements.imageResultsContainer.classList.remove('hidden'); // Показываем контейнер результатов
     window.ui.DOMElements.processedImage.src = imageUrl;
-    window.ui.DOMElements.downloadLink.href = imageUrl;
+    window.ui.DOMElements.downloadLink.href = info.downloadUrl || imageUrl;
 
     window.ui.DOMElements.originalResolutionSpan.textContent = info.originalResolution || 'Неизвестно';
     window.ui.DOMElements.upscaledResolutionSpan.textContent = info.upscaledResolution || 'Неизвестно';
@@ -104,6 +104,17 @@ window.ui.displayProcessedImageResult = function(imageUrl, info) {
     window.ui.DOMElements.downloadLink.setAttribute('download', downloadFileName);
 };
 
+/**
+ * Показывает быстрый предварительный результат (бикубическое увеличение), пока модель ещё работает.
+ * Текстовый статус остаётся видимым, полный результат позже заменяет превью.
+ * @param {string} imageUrl - URL превью.
+ */
+window.ui.displayPreviewImage = function(imageUrl) {
+    window.ui.DOMElements.imageResultsContainer.classList.remove('hidden');
+    window.ui.DOMElements.processedImage.src = imageUrl;
+    window.ui.DOMElements.downloadLink.href = imageUrl;
+};
+
 /**
  * Показывает сообщение об ошибке.
  * @param {string} message - Текст ошибки.
@@ -3,7 +3,7 @@ package upscale_project.UpscaleSPG;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:upscale-test")
 class UpscaleSpgApplicationTests {
 
 	@Test
@@ -0,0 +1,116 @@
+package upscale_project.UpscaleSPG.processing;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InterpolationEngineTests {
+
+    private static InterpolationEngine engine;
+
+    @BeforeAll
+    static void setUp() {
+        OpenCV.loadLocally();
+        engine = new InterpolationEngine(4, 16);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        engine.shutdown();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "BILINEAR, 2", "BILINEAR, 3", "BILINEAR, 4",
+            "BICUBIC, 2", "BICUBIC, 3", "BICUBIC, 4"
+    })
+    void matchesOpenCvResize(UpscalingMethod method, int scale) {
+        BufferedImage source = createTestImage(97, 61);
+        byte[] sourcePixels = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+
+        BufferedImage actual = engine.resize(source, scale, method);
+        byte[] actualPixels = ((DataBufferByte) actual.getRaster().getDataBuffer()).getData();
+
+        Mat sourceMat = new Mat(source.getHeight(), source.getWidth(), CvType.CV_8UC3);
+        sourceMat.put(0, 0, sourcePixels);
+        Mat expectedMat = new Mat();
+        int interpolation = method == UpscalingMethod.BILINEAR ? Imgproc.INTER_LINEAR : Imgproc.INTER_CUBIC;
+        Imgproc.resize(sourceMat, expectedMat,
+                new Size(source.getWidth() * scale, source.getHeight() * scale), 0, 0, interpolation);
+        byte[] expectedPixels = new byte[(int) (expectedMat.total() * expectedMat.channels())];
+        expectedMat.get(0, 0, expectedPixels);
+
+        assertEquals(expectedMat.cols(), actual.getWidth());
+        assertEquals(expectedMat.rows(), actual.getHeight());
+
+        int tolerance = method == UpscalingMethod.BILINEAR
+                ? InterpolationEngine.BILINEAR_TOLERANCE
+                : InterpolationEngine.BICUBIC_TOLERANCE;
+        int maxDifference = 0;
+        for (int i = 0; i < expectedPixels.length; i++) {
+            int difference = Math.abs((expectedPixels[i] & 0xFF) - (actualPixels[i] & 0xFF));
+            maxDifference = Math.max(maxDifference, difference);
+        }
+        assertTrue(maxDifference <= tolerance,
+                method + " x" + scale + " differs from OpenCV by " + maxDifference + " (tolerance " + tolerance + ")");
+    }
+
+    @ParameterizedTest
+    @CsvSource({"3, 4", "1, 2", "2, 3", "5, 8", "1, 3"})
+    void shrinkingMatchesOpenCvAreaResize(int scale, int divisor) {
+        BufferedImage source = createTestImage(97, 61);
+        byte[] sourcePixels = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+
+        BufferedImage actual = engine.resize(source, scale, divisor, UpscalingMethod.BICUBIC);
+        byte[] actualPixels = ((DataBufferByte) actual.getRaster().getDataBuffer()).getData();
+
+        Mat sourceMat = new Mat(source.getHeight(), source.getWidth(), CvType.CV_8UC3);
+        sourceMat.put(0, 0, sourcePixels);
+        Mat expectedMat = new Mat();
+        Imgproc.resize(sourceMat, expectedMat, new Size(actual.getWidth(), actual.getHeight()), 0, 0,
+                Imgproc.INTER_AREA);
+        byte[] expectedPixels = new byte[(int) (expectedMat.total() * expectedMat.channels())];
+        expectedMat.get(0, 0, expectedPixels);
+
+        assertEquals(97 * scale / divisor, actual.getWidth());
+        assertEquals(61 * scale / divisor, actual.getHeight());
+        int maxDifference = 0;
+        for (int i = 0; i < expectedPixels.length; i++) {
+            int difference = Math.abs((expectedPixels[i] & 0xFF) - (actualPixels[i] & 0xFF));
+            maxDifference = Math.max(maxDifference, difference);
+        }
+        assertTrue(maxDifference <= InterpolationEngine.AREA_TOLERANCE,
+                "x" + scale + "/" + divisor + " differs from OpenCV INTER_AREA by " + maxDifference);
+    }
+
+    private static BufferedImage createTestImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int offset = (y * width + x) * 3;
+                boolean noisy = (x / 8 + y / 8) % 2 == 0;
+                pixels[offset] = (byte) (noisy ? random.nextInt(256) : x * 255 / width);
+                pixels[offset + 1] = (byte) (noisy ? random.nextInt(256) : y * 255 / height);
+                pixels[offset + 2] = (byte) ((x * y) % 256);
+            }
+        }
+        return image;
+    }
+}
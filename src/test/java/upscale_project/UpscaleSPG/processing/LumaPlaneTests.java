@@ -0,0 +1,51 @@
+package upscale_project.UpscaleSPG.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the Vector API kernels against the scalar loops on random pixels, for sizes around the eight-pixel step
+ * so the scalar remainder is covered too. Surefire starts the JVM with {@code jdk.incubator.vector}.
+ */
+class LumaPlaneTests {
+
+    private static final int[] PIXEL_COUNTS = {0, 1, 7, 8, 9, 10, 11, 17, 1000, 4099};
+
+    @Test
+    void vectorKernelsMatchScalarCode() {
+        assertTrue(LumaPlane.isVectorized());
+        Random random = new Random(42);
+        for (int pixels : PIXEL_COUNTS) {
+            byte[] bgr = new byte[pixels * 3];
+            byte[] luma = new byte[pixels];
+            random.nextBytes(bgr);
+            random.nextBytes(luma);
+
+            byte[] expectedLuma = new byte[pixels];
+            LumaPlane.extract(bgr, expectedLuma, 0);
+            assertArrayEquals(expectedLuma, LumaPlane.extract(bgr), "extract of " + pixels + " pixels");
+
+            byte[] expected = bgr.clone();
+            LumaPlane.replace(expected, luma, 0);
+            byte[] actual = bgr.clone();
+            LumaPlane.replace(actual, luma);
+            assertArrayEquals(expected, actual, "replace of " + pixels + " pixels");
+        }
+    }
+
+    @Test
+    void replacingLumaWithItsOwnValueKeepsPixels() {
+        byte[] bgr = new byte[4099 * 3];
+        new Random(7).nextBytes(bgr);
+        byte[] result = bgr.clone();
+        LumaPlane.replace(result, LumaPlane.extract(bgr));
+        for (int i = 0; i < bgr.length; i++) {
+            // Only the rounding of Y to 8 bits is left.
+            assertTrue(Math.abs((bgr[i] & 0xFF) - (result[i] & 0xFF)) <= 1, "byte " + i);
+        }
+    }
+}
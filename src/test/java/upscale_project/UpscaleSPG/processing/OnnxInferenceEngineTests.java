@@ -0,0 +1,210 @@
+package upscale_project.UpscaleSPG.processing;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link OnnxInferenceEngine} on tiny nearest-neighbour models (a single ONNX Resize node written here as
+ * protobuf), whose exact output is known: the result must have the full size and the same pixels for every tile
+ * size, so tiles are cropped and placed without seams.
+ */
+class OnnxInferenceEngineTests {
+
+    private static final int PAD = 3;
+
+    @TempDir
+    static Path models;
+
+    private static InterpolationEngine interpolationEngine;
+    private static OnnxInferenceEngine engine;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        for (UpscalingMethod method : new UpscalingMethod[]{UpscalingMethod.ESPCN, UpscalingMethod.EDSR}) {
+            for (int scale = 2; scale <= 3; scale++) {
+                Files.write(models.resolve(method + "_" + scale + "x.onnx"), nearestResizeModel(scale));
+            }
+        }
+        interpolationEngine = new InterpolationEngine(2, 16);
+        engine = new OnnxInferenceEngine(interpolationEngine, OnnxInferenceEngine.BACKEND, models.toString(), 1, 512, PAD);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        engine.shutdown();
+        interpolationEngine.shutdown();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"2, 0", "2, 7", "2, 16", "3, 5", "3, 32"})
+    void tiledRgbModelMatchesWholeImage(int scale, int tileSize, @TempDir Path dir) throws IOException {
+        BufferedImage source = createTestImage(37, 23);
+        BufferedImage result = upscale(source, UpscalingMethod.EDSR, scale, tileSize, dir);
+
+        assertEquals(37 * scale, result.getWidth());
+        assertEquals(23 * scale, result.getHeight());
+        assertArrayEquals(pixels(nearest(source, scale)), pixels(result));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"2, 0", "2, 6", "3, 9"})
+    void espcnReplacesLumaOfBicubicUpscale(int scale, int tileSize, @TempDir Path dir) throws IOException {
+        BufferedImage source = createTestImage(29, 19);
+        BufferedImage result = upscale(source, UpscalingMethod.ESPCN, scale, tileSize, dir);
+
+        assertEquals(29 * scale, result.getWidth());
+        assertEquals(19 * scale, result.getHeight());
+        byte[] expected = pixels(nearest(source, scale));
+        byte[] actual = pixels(result);
+        for (int p = 0; p < actual.length; p += 3) {
+            double difference = luma(actual, p) - luma(expected, p);
+            assertTrue(Math.abs(difference) <= 1.0, "luma differs by " + difference + " at " + p / 3);
+        }
+    }
+
+    private static BufferedImage upscale(BufferedImage source, UpscalingMethod method, int scale, int tileSize,
+                                         Path dir) throws IOException {
+        Path input = dir.resolve("input.png");
+        Path output = dir.resolve("output.png");
+        ImageIO.write(source, "png", input.toFile());
+        assertTrue(engine.supports(method, scale));
+        assertTrue(engine.upscaleFile(input, output, method, scale, tileSize, new StageTimings(), percent -> {
+        }));
+        return ImageCodec.readBgr(output);
+    }
+
+    private static BufferedImage createTestImage(int width, int height) {
+        // Mid-range values, so shifting the luma of the bicubic base never clips a channel.
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] data = pixels(image);
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (64 + random.nextInt(128));
+        }
+        return image;
+    }
+
+    private static BufferedImage nearest(BufferedImage source, int scale) {
+        int width = source.getWidth() * scale;
+        int height = source.getHeight() * scale;
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] src = pixels(source);
+        byte[] dst = pixels(result);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                System.arraycopy(src, ((y / scale) * source.getWidth() + x / scale) * 3, dst, (y * width + x) * 3, 3);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] pixels(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static double luma(byte[] bgr, int p) {
+        return 0.299 * (bgr[p + 2] & 0xFF) + 0.587 * (bgr[p + 1] & 0xFF) + 0.114 * (bgr[p] & 0xFF);
+    }
+
+    /**
+     * ONNX model {@code y = Resize(x, scales=[1, 1, scale, scale])} in nearest/floor mode with dynamic NCHW shape.
+     */
+    private static byte[] nearestResizeModel(int scale) {
+        byte[] scales = ByteBuffer.allocate(4 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putFloat(1).putFloat(1).putFloat(scale).putFloat(scale).array();
+        Proto node = new Proto()
+                .string(1, "x").string(1, "").string(1, "scales")
+                .string(2, "y")
+                .string(4, "Resize")
+                .message(5, stringAttribute("mode", "nearest"))
+                .message(5, stringAttribute("coordinate_transformation_mode", "asymmetric"))
+                .message(5, stringAttribute("nearest_mode", "floor"));
+        Proto initializer = new Proto().varint(1, 4).varint(2, 1).string(8, "scales").bytes(9, scales);
+        Proto graph = new Proto()
+                .message(1, node)
+                .string(2, "nearest")
+                .message(5, initializer)
+                .message(11, tensorValueInfo("x"))
+                .message(12, tensorValueInfo("y"));
+        return new Proto()
+                .varint(1, 7)
+                .message(7, graph)
+                .message(8, new Proto().string(1, "").varint(2, 13))
+                .toByteArray();
+    }
+
+    private static Proto stringAttribute(String name, String value) {
+        return new Proto().string(1, name).string(4, value).varint(20, 3);
+    }
+
+    private static Proto tensorValueInfo(String name) {
+        Proto shape = new Proto();
+        for (String dim : new String[]{"n", "c", "h", "w"}) {
+            shape.message(1, new Proto().string(2, name + "_" + dim));
+        }
+        Proto tensorType = new Proto().varint(1, 1).message(2, shape);
+        return new Proto().string(1, name).message(2, new Proto().message(1, tensorType));
+    }
+
+    /**
+     * Just enough of the protobuf wire format to write an ONNX model.
+     */
+    private static final class Proto {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto varint(int field, long value) {
+            writeVarint((long) field << 3);
+            writeVarint(value);
+            return this;
+        }
+
+        Proto bytes(int field, byte[] value) {
+            writeVarint(((long) field << 3) | 2);
+            writeVarint(value.length);
+            out.writeBytes(value);
+            return this;
+        }
+
+        Proto string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Proto message(int field, Proto value) {
+            return bytes(field, value.toByteArray());
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+}
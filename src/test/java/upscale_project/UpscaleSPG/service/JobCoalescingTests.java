@@ -0,0 +1,134 @@
+package upscale_project.UpscaleSPG.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import upscale_project.UpscaleSPG.UpscaleSpgApplication;
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.processing.StageTimings;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Submits the same image many times at once for two scales, with the result cache disabled, and checks that
+ * each (image, method, scale) runs a single inference whose result completes every upload.
+ */
+class JobCoalescingTests {
+
+    private static final int UPLOADS_PER_SCALE = 12;
+
+    @TempDir
+    static Path storage;
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void startApplication() {
+        context = new SpringApplicationBuilder(UpscaleSpgApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:coalescing;DB_CLOSE_DELAY=-1",
+                "--app.upload.path=" + storage,
+                "--app.cache.enabled=false",
+                "--app.preview.enabled=false");
+    }
+
+    @AfterAll
+    static void stopApplication() {
+        context.close();
+    }
+
+    @Test
+    void concurrentIdenticalUploadsRunOneInferencePerScale() throws Exception {
+        ImageService imageService = context.getBean(ImageService.class);
+        // Large enough that the first job is still running when the last upload is stored.
+        byte[] png = png(800, 600);
+
+        ExecutorService clients = Executors.newFixedThreadPool(2 * UPLOADS_PER_SCALE);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> uploads = new ArrayList<>();
+        for (int i = 0; i < 2 * UPLOADS_PER_SCALE; i++) {
+            int scale = i % 2 == 0 ? 2 : 4;
+            String name = "same" + i + ".png";
+            uploads.add(clients.submit(() -> {
+                start.await();
+                return imageService.processImageUpload(new MockMultipartFile("file", name, "image/png", png),
+                        UpscalingMethod.BICUBIC, scale);
+            }));
+        }
+        start.countDown();
+        List<Long> ids = new ArrayList<>();
+        for (Future<Long> upload : uploads) {
+            ids.add(upload.get());
+        }
+        clients.shutdown();
+
+        ImageRepository repository = context.getBean(ImageRepository.class);
+        long deadline = System.currentTimeMillis() + 120_000;
+        List<Image> images = repository.findAllById(ids);
+        while (images.stream().anyMatch(image -> image.getStatus() != ImageStatus.PROCESSED)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            images = repository.findAllById(ids);
+        }
+
+        for (int scale : new int[]{2, 4}) {
+            int s = scale;
+            List<Image> sameScale = images.stream().filter(image -> image.getScaleFactor() == s).toList();
+            sameScale.forEach(image -> assertEquals(ImageStatus.PROCESSED, image.getStatus(), "image " + image.getId()));
+
+            List<Image> processed = sameScale.stream().filter(image -> image.getCoalescedWith() == null).toList();
+            assertEquals(1, processed.size(), "jobs processed for scale " + scale);
+            Image leader = processed.get(0);
+            assertEquals(1, leader.getAttempts());
+            assertEquals(List.of(leader.getProcessedFilePath()),
+                    sameScale.stream().map(Image::getProcessedFilePath).distinct().collect(Collectors.toList()));
+            sameScale.stream().filter(image -> image != leader)
+                    .forEach(image -> assertEquals(leader.getId(), image.getCoalescedWith(), "image " + image.getId()));
+
+            assertEquals(1, inferenceTimer(scale).count(), "inferences for scale " + scale);
+        }
+    }
+
+    private static Timer inferenceTimer(int scale) {
+        Timer timer = context.getBean(MeterRegistry.class).find("upscale.job.stage")
+                .tags("stage", StageTimings.INFERENCE, "method", UpscalingMethod.BICUBIC.toString(),
+                        "scale", String.valueOf(scale))
+                .timer();
+        assertNotNull(timer, "no inference recorded for scale " + scale);
+        return timer;
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        new Random(42).nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks {@link LongKeyMap} against {@link HashMap} over random operations on a small key range, so that probe
+ * runs collide, wrap around the table and get shifted back by deletions.
+ */
+class LongKeyMapTests {
+
+    private static final int OPERATIONS = 200_000;
+    private static final int KEY_RANGE = 2_000;
+
+    @Test
+    void behavesLikeHashMap() {
+        LongKeyMap<Long> map = new LongKeyMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            long key = random.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            long value = random.nextLong();
+            switch (random.nextInt(5)) {
+                case 0, 1 -> {
+                    map.put(key, value);
+                    expected.put(key, value);
+                }
+                case 2 -> {
+                    map.merge(key, value, Math::max);
+                    expected.merge(key, value, Math::max);
+                }
+                case 3 -> {
+                    map.remove(key);
+                    expected.remove(key);
+                }
+                default -> assertEquals(expected.get(key), map.get(key), "key " + key);
+            }
+            if (i % 20_000 == 0) {
+                long bound = random.nextLong();
+                long removed = expected.values().stream().filter(v -> v < bound).count();
+                expected.values().removeIf(v -> v < bound);
+                assertEquals(removed, map.removeIf(v -> v < bound));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = -KEY_RANGE / 2; key < KEY_RANGE / 2; key++) {
+            assertEquals(expected.get(key), map.get(key), "key " + key);
+        }
+    }
+}
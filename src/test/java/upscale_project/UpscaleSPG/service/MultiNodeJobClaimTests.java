@@ -0,0 +1,114 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import upscale_project.UpscaleSPG.UpscaleSpgApplication;
+import upscale_project.UpscaleSPG.exception.UploadsDisabledException;
+import upscale_project.UpscaleSPG.model.Image;
+import upscale_project.UpscaleSPG.model.ImageStatus;
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+import upscale_project.UpscaleSPG.repository.ImageRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs one upload-only node and two inference-only nodes as separate application contexts on a shared
+ * in-memory database and upload directory, and checks that every job is claimed and processed exactly once.
+ */
+class MultiNodeJobClaimTests {
+
+    private static final int JOBS = 12;
+
+    @TempDir
+    static Path storage;
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static ConfigurableApplicationContext uploadNode;
+    private static ConfigurableApplicationContext inferenceNode;
+
+    @BeforeAll
+    static void startNodes() {
+        uploadNode = startNode("upload-node", "app.node.processing-enabled=false");
+        inferenceNode = startNode("node-a", "app.node.upload-enabled=false");
+        startNode("node-b", "app.node.upload-enabled=false");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void inferenceNodeRejectsUploads() {
+        ImageService imageService = inferenceNode.getBean(ImageService.class);
+        assertThrows(UploadsDisabledException.class,
+                () -> imageService.processImageUpload(png("rejected.png", 0), UpscalingMethod.BILINEAR, 2));
+    }
+
+    @Test
+    void jobsAreClaimedOnceAndSpreadOverInferenceNodes() throws Exception {
+        ImageService imageService = uploadNode.getBean(ImageService.class);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < JOBS; i++) {
+            ids.add(imageService.processImageUpload(png("image" + i + ".png", i + 1), UpscalingMethod.BILINEAR, 4));
+        }
+
+        ImageRepository repository = uploadNode.getBean(ImageRepository.class);
+        long deadline = System.currentTimeMillis() + 60_000;
+        List<Image> images = repository.findAllById(ids);
+        while (images.stream().anyMatch(image -> image.getStatus() != ImageStatus.PROCESSED)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            images = repository.findAllById(ids);
+        }
+
+        for (Image image : images) {
+            assertEquals(ImageStatus.PROCESSED, image.getStatus(), "image " + image.getId());
+            assertEquals(1, image.getAttempts(), "image " + image.getId() + " was processed more than once");
+        }
+        Set<String> processedBy = images.stream().map(Image::getProcessedBy).collect(Collectors.toSet());
+        assertEquals(Set.of("node-a", "node-b"), processedBy);
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, String role) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(UpscaleSpgApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:multi-node;DB_CLOSE_DELAY=-1",
+                "--app.upload.path=" + storage,
+                "--app.node.id=" + nodeId,
+                "--app.jobs.shared-queue=true",
+                "--app.jobs.claim-interval=50ms",
+                "--app.scheduler.max-concurrent-jobs=1",
+                "--app.cache.enabled=false",
+                "--" + role);
+        contexts.add(context);
+        return context;
+    }
+
+    private static MockMultipartFile png(String name, long seed) throws IOException {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_3BYTE_BGR);
+        new Random(seed).nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("file", name, "image/png", out.toByteArray());
+    }
+}
@@ -0,0 +1,72 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link TokenBucket} on a fixed clock: the burst is available at once, then tokens come back at the
+ * refill rate, and concurrent takes never get more than the burst.
+ */
+class TokenBucketTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 10, 0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.tryTake(1, 0), "token " + i);
+        }
+        assertEquals(SECOND / 2, bucket.tryTake(1, 0));
+        assertEquals(0, bucket.tryTake(1, SECOND / 2));
+        assertTrue(bucket.tryTake(1, SECOND / 2) > 0);
+
+        bucket.giveBack(1);
+        assertEquals(0, bucket.tryTake(1, SECOND / 2));
+        assertTrue(bucket.isFull(6 * SECOND));
+    }
+
+    @Test
+    void takeLargerThanBurstEmptiesFullBucket() {
+        TokenBucket bucket = new TokenBucket(1, 5, 0);
+        assertEquals(0, bucket.tryTake(50, 0));
+        assertEquals(SECOND, bucket.tryTake(1, 0));
+        assertTrue(bucket.tryTake(50, 4 * SECOND) > 0);
+        assertEquals(0, bucket.tryTake(50, 5 * SECOND));
+    }
+
+    @Test
+    void concurrentTakesStayWithinBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(1e-3, 1000, 0);
+        AtomicInteger taken = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            threads.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (bucket.tryTake(1, 0) == 0) {
+                        taken.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, taken.get());
+    }
+}
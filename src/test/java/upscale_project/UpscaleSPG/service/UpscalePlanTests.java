@@ -0,0 +1,46 @@
+package upscale_project.UpscaleSPG.service;
+
+import org.junit.jupiter.api.Test;
+
+import upscale_project.UpscaleSPG.model.UpscalingMethod;
+
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how {@link UpscalePlan#of} chains trained scales: a trained divisor followed by bicubic, otherwise a
+ * larger trained scale downsampled, and single stages where no chain is needed.
+ */
+class UpscalePlanTests {
+
+    private static final TreeSet<Integer> ESPCN_SCALES = new TreeSet<>(List.of(2, 3, 4));
+    private static final TreeSet<Integer> SRGAN_SCALES = new TreeSet<>(List.of(2, 4));
+
+    @Test
+    void trainedDivisorIsFollowedByBicubic() {
+        assertEquals(List.of("ESPCN x4", "BICUBIC x2"), UpscalePlan.of(UpscalingMethod.ESPCN, 8, ESPCN_SCALES).describe());
+        assertEquals(List.of("ESPCN x3", "BICUBIC x2"), UpscalePlan.of(UpscalingMethod.ESPCN, 6, ESPCN_SCALES).describe());
+        assertEquals(List.of("SRGAN x4", "BICUBIC x2"), UpscalePlan.of(UpscalingMethod.SRGAN, 8, SRGAN_SCALES).describe());
+    }
+
+    @Test
+    void largerTrainedScaleIsDownsampled() {
+        UpscalePlan plan = UpscalePlan.of(UpscalingMethod.SRGAN, 3, SRGAN_SCALES);
+        assertTrue(plan.isChained());
+        assertEquals(4, plan.stagesScale());
+        assertEquals(List.of("SRGAN x4", "DOWNSAMPLE to x3"), plan.describe());
+
+        assertEquals(List.of("ESPCN x4", "RESIZE to x5"), UpscalePlan.of(UpscalingMethod.ESPCN, 5, ESPCN_SCALES).describe());
+    }
+
+    @Test
+    void trainedScalesAndInterpolationRunInOneStage() {
+        assertFalse(UpscalePlan.of(UpscalingMethod.ESPCN, 3, ESPCN_SCALES).isChained());
+        assertFalse(UpscalePlan.of(UpscalingMethod.BICUBIC, 8, new TreeSet<>()).isChained());
+        assertFalse(UpscalePlan.of(UpscalingMethod.EDSR, 8, new TreeSet<>()).isChained());
+    }
+}